@@ -0,0 +1,58 @@
+package com.example.E_comeerse.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché en memoria del catálogo (Caffeine)
+ * Cada caché está acotada por tamaño y por TTL, y registra estadísticas
+ * que Actuator publica como métricas cache.gets / cache.evictions
+ */
+@Configuration
+@EnableCaching
+@ConfigurationProperties(prefix = "catalogo.cache")
+@Data
+public class CacheConfig {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String PRODUCTOS_POR_CATEGORIA = "productosPorCategoria";
+    public static final String PRODUCTOS_DESTACADOS = "productosDestacados";
+    public static final String PRODUCTOS_TOP3 = "productosTop3";
+    public static final String CATEGORIAS = "categorias";
+    public static final String CATEGORIA = "categoria";
+
+    private long productosTamanoMaximo = 10000;
+    private Duration productosTtl = Duration.ofMinutes(10);
+    private long listasTamanoMaximo = 500;
+    private Duration listasTtl = Duration.ofMinutes(5);
+    private long categoriasTamanoMaximo = 1000;
+    private Duration categoriasTtl = Duration.ofMinutes(30);
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(PRODUCTOS, construir(productosTamanoMaximo, productosTtl));
+        cacheManager.registerCustomCache(PRODUCTOS_POR_CATEGORIA, construir(listasTamanoMaximo, listasTtl));
+        cacheManager.registerCustomCache(PRODUCTOS_DESTACADOS, construir(1, listasTtl));
+        cacheManager.registerCustomCache(PRODUCTOS_TOP3, construir(1, listasTtl));
+        cacheManager.registerCustomCache(CATEGORIAS, construir(1, categoriasTtl));
+        cacheManager.registerCustomCache(CATEGORIA, construir(categoriasTamanoMaximo, categoriasTtl));
+        return cacheManager;
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> construir(long tamanoMaximo, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+}
@@ -4,6 +4,7 @@ import com.example.E_comeerse.security.CustomUserDetailsService;
 import com.example.E_comeerse.security.JwtAuthenticationEntryPoint;
 import com.example.E_comeerse.security.JwtAuthenticationFilter;
 import lombok.RequiredArgsConstructor;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -50,6 +51,9 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // El redespacho de respuestas asíncronas (exportaciones) ya fue autorizado en la petición original
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // OPTIONS requests para CORS preflight
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                 
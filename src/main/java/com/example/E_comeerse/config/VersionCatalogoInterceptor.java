@@ -0,0 +1,41 @@
+package com.example.E_comeerse.config;
+
+import com.example.E_comeerse.service.VersionCatalogo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Responde las lecturas del catálogo con ETag y Last-Modified derivados de la
+ * versión del catálogo. Si el cliente ya tiene la versión actual (If-None-Match
+ * o If-Modified-Since) se responde 304 antes de llegar al controlador, sin
+ * consultar la base de datos ni serializar la respuesta.
+ */
+@Component
+@RequiredArgsConstructor
+public class VersionCatalogoInterceptor implements HandlerInterceptor {
+
+    private final VersionCatalogo versionCatalogo;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+
+        // La versión se toma antes de leer: si cambia durante la lectura, el ETag
+        // emitido queda viejo y la siguiente petición descarga de nuevo
+        String etag = versionCatalogo.etag();
+        long ultimaModificacion = versionCatalogo.ultimaModificacion().toEpochMilli();
+
+        // Sin max-age: el navegador guarda la respuesta pero revalida en cada uso
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        return !new ServletWebRequest(request, response).checkNotModified(etag, ultimaModificacion);
+    }
+}
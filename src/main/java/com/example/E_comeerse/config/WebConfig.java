@@ -14,6 +14,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * Configuración web que registra interceptors y habilita características adicionales
  * Incluye el interceptor de validación JWT como hook adicional
  * Configuración de archivos estáticos para imágenes de productos
+ * Registra el GET condicional de las lecturas del catálogo
  */
 @Configuration
 @EnableScheduling
@@ -21,6 +22,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final JwtValidationInterceptor jwtValidationInterceptor;
+    private final VersionCatalogoInterceptor versionCatalogoInterceptor;
 
     @Value("${upload.path:uploads/productos}")
     private String uploadPath;
@@ -40,6 +42,18 @@ public class WebConfig implements WebMvcConfigurer {
                     "/api/files/**",
                     "/uploads/**"  // Permitir acceso público a las imágenes
                 );
+
+        // GET condicional (ETag / Last-Modified) para las lecturas del catálogo
+        registry.addInterceptor(versionCatalogoInterceptor)
+                .addPathPatterns(
+                    "/api/productos",
+                    "/api/productos/**",
+                    "/api/categorias",
+                    "/api/categorias/**"
+                )
+                .excludePathPatterns(
+                    "/api/productos/*/validate-image"  // Depende del sistema de archivos, no del catálogo
+                );
     }
 
     @Override
@@ -1,24 +1,42 @@
 package com.example.E_comeerse.controller;
 
 import com.example.E_comeerse.dto.AdminUsuarioDto;
+import com.example.E_comeerse.dto.ConsultaCatalogoDto;
 import com.example.E_comeerse.dto.EstadisticasDto;
+import com.example.E_comeerse.dto.PaginaCursorDto;
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.ResultadoImportacionDto;
+import com.example.E_comeerse.dto.VentaRelampagoDto;
 import com.example.E_comeerse.model.Usuario;
 import com.example.E_comeerse.model.Producto;
 import com.example.E_comeerse.model.Pedido;
 import com.example.E_comeerse.model.Role;
+import com.example.E_comeerse.service.ExportacionService;
+import com.example.E_comeerse.service.FormatoArchivo;
+import com.example.E_comeerse.service.ImportacionProductosService;
 import com.example.E_comeerse.service.UsuarioService;
 import com.example.E_comeerse.service.ProductoService;
 import com.example.E_comeerse.service.PedidoService;
+import com.example.E_comeerse.service.VentasRelampago;
 import com.example.E_comeerse.repository.CategoriaRepository;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
 
 import java.util.List;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -30,14 +48,23 @@ public class AdminController {
     private final ProductoService productoService;
     private final PedidoService pedidoService;
     private final CategoriaRepository categoriaRepository;
+    private final ImportacionProductosService importacionProductosService;
+    private final ExportacionService exportacionService;
+    private final VentasRelampago ventasRelampago;
 
     @Autowired
     public AdminController(UsuarioService usuarioService, ProductoService productoService, 
-                          PedidoService pedidoService, CategoriaRepository categoriaRepository) {
+                          PedidoService pedidoService, CategoriaRepository categoriaRepository,
+                          ImportacionProductosService importacionProductosService,
+                          ExportacionService exportacionService,
+                          VentasRelampago ventasRelampago) {
         this.usuarioService = usuarioService;
         this.productoService = productoService;
         this.pedidoService = pedidoService;
         this.categoriaRepository = categoriaRepository;
+        this.importacionProductosService = importacionProductosService;
+        this.exportacionService = exportacionService;
+        this.ventasRelampago = ventasRelampago;
     }
 
     @GetMapping("/usuarios")
@@ -146,12 +173,18 @@ public class AdminController {
     // === GESTIÓN DE PRODUCTOS ===
 
     /**
-     * Obtener todos los productos para el panel de administrador
+     * Obtener los productos para el panel de administrador, paginados por cursor
      */
     @GetMapping("/productos")
-    public ResponseEntity<List<Producto>> listarProductosAdmin() {
-        List<Producto> productos = productoService.listarProductos();
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<?> listarProductosAdmin(ConsultaCatalogoDto consulta) {
+        try {
+            PaginaCursorDto<ProductoResumenDto> pagina = productoService.listarProductosPaginados(consulta);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ErrorResponse("Consulta inválida", e.getMessage())
+            );
+        }
     }
 
     /**
@@ -173,6 +206,98 @@ public class AdminController {
         }
     }
 
+    /**
+     * Importar productos en bloque desde un archivo CSV o NDJSON.
+     * Crea o actualiza por código de producto; el formato se toma del parámetro
+     * formato o de la extensión del archivo (.csv, .ndjson, .jsonl)
+     */
+    @PostMapping("/productos/importar")
+    public ResponseEntity<?> importarProductos(@RequestParam("archivo") MultipartFile archivo,
+                                               @RequestParam(required = false) String formato) {
+        try {
+            if (archivo.isEmpty()) {
+                throw new IllegalArgumentException("El archivo está vacío");
+            }
+            FormatoArchivo formatoArchivo =
+                ImportacionProductosService.resolverFormato(formato, archivo.getOriginalFilename());
+            ResultadoImportacionDto resultado =
+                importacionProductosService.importar(archivo.getInputStream(), formatoArchivo);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ErrorResponse("Error al importar productos", e.getMessage())
+            );
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                new ErrorResponse("Error interno", "Error al leer el archivo de importación")
+            );
+        }
+    }
+
+    /**
+     * Exportar el catálogo en CSV o NDJSON, opcionalmente filtrado por categoría
+     * y por fecha de modificación. La respuesta se escribe a medida que se leen
+     * las filas y se comprime con gzip si el cliente lo acepta. Los parámetros
+     * inválidos se responden con 400 desde manejarParametroInvalido
+     */
+    @GetMapping("/productos/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarProductos(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) Long idCategoria,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String aceptaCodificacion) {
+        FormatoArchivo formatoArchivo = FormatoArchivo.desde(formato);
+        ExportacionService.validarRangoFechas(desde, hasta);
+        return respuestaExportacion("productos", formatoArchivo, aceptaCodificacion, salida ->
+            exportacionService.exportarProductos(idCategoria, desde, hasta, formatoArchivo, salida));
+    }
+
+    /**
+     * Exportar pedidos en CSV o NDJSON, opcionalmente filtrados por fecha de
+     * creación y por estado del pedido o del pago
+     */
+    @GetMapping("/pedidos/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarPedidos(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Pedido.EstadoPedido estadoPedido,
+            @RequestParam(required = false) Pedido.EstadoPago estadoPago,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String aceptaCodificacion) {
+        FormatoArchivo formatoArchivo = FormatoArchivo.desde(formato);
+        ExportacionService.validarRangoFechas(desde, hasta);
+        return respuestaExportacion("pedidos", formatoArchivo, aceptaCodificacion, salida ->
+            exportacionService.exportarPedidos(desde, hasta, estadoPedido, estadoPago, formatoArchivo, salida));
+    }
+
+    private ResponseEntity<StreamingResponseBody> respuestaExportacion(String nombre, FormatoArchivo formato,
+                                                                       String aceptaCodificacion,
+                                                                       StreamingResponseBody exportacion) {
+        boolean gzip = aceptaCodificacion != null && aceptaCodificacion.toLowerCase().contains("gzip");
+        String archivo = nombre + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+            + "." + formato.getExtension();
+
+        StreamingResponseBody cuerpo = salida -> {
+            if (!gzip) {
+                exportacion.writeTo(salida);
+                return;
+            }
+            GZIPOutputStream comprimida = new GZIPOutputStream(salida, 64 * 1024);
+            exportacion.writeTo(comprimida);
+            comprimida.finish();
+        };
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, formato.getTipoContenido() + ";charset=UTF-8")
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo + "\"")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
     /**
      * Actualizar un producto existente desde el panel de administrador
      */
@@ -262,14 +387,11 @@ public class AdminController {
                 );
             }
 
-            Optional<Producto> productoOpt = productoService.buscarPorId(id);
-            if (productoOpt.isEmpty()) {
+            if (productoService.buscarPorId(id).isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            Producto producto = productoOpt.get();
-            producto.setCantidadStock(nuevoStock);
-            Producto productoActualizado = productoService.actualizarProducto(id, producto);
+            Producto productoActualizado = productoService.actualizarStock(id, nuevoStock);
 
             return ResponseEntity.ok(new StockResponse(
                 "Stock actualizado correctamente",
@@ -277,6 +399,10 @@ public class AdminController {
                 productoActualizado.getNombre(),
                 nuevoStock
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ErrorResponse("Error al actualizar stock", e.getMessage())
+            );
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
                 new ErrorResponse("Error interno", "Error al actualizar stock")
@@ -284,6 +410,52 @@ public class AdminController {
         }
     }
 
+    /**
+     * Activar la venta relámpago de un producto: su stock se reparte en fracciones
+     * en memoria y se concilia periódicamente con la base de datos
+     */
+    @PostMapping("/productos/{id}/venta-relampago")
+    public ResponseEntity<?> activarVentaRelampago(@PathVariable Long id,
+                                                   @RequestParam(required = false) Integer fracciones) {
+        try {
+            return ResponseEntity.ok(ventasRelampago.activar(id, fracciones));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ErrorResponse("Error al activar la venta relámpago", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Desactivar la venta relámpago de un producto, conciliando las unidades vendidas
+     */
+    @DeleteMapping("/productos/{id}/venta-relampago")
+    public ResponseEntity<?> desactivarVentaRelampago(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(ventasRelampago.desactivar(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ErrorResponse("Error al desactivar la venta relámpago", e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Productos en venta relámpago con sus unidades disponibles
+     */
+    @GetMapping("/ventas-relampago")
+    public ResponseEntity<List<VentaRelampagoDto>> listarVentasRelampago() {
+        return ResponseEntity.ok(ventasRelampago.listar());
+    }
+
+    /**
+     * Parámetros inválidos de los endpoints que no devuelven JSON (exportaciones)
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> manejarParametroInvalido(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(new ErrorResponse("Solicitud inválida", e.getMessage()));
+    }
+
     // Clases auxiliares para respuestas
     public static class ErrorResponse {
         private final String error;
@@ -5,16 +5,23 @@ import com.example.E_comeerse.dto.AgregarProductoRequest;
 import com.example.E_comeerse.dto.CarritoDto;
 import com.example.E_comeerse.dto.CheckoutRequest;
 import com.example.E_comeerse.dto.FacturaDto;
+import com.example.E_comeerse.dto.OperacionesCarritoRequest;
+import com.example.E_comeerse.dto.ResultadoOperacionesCarritoDto;
+import com.example.E_comeerse.exception.StockInsuficienteException;
 import com.example.E_comeerse.security.UserPrincipal;
 import com.example.E_comeerse.service.CarritoService;
+import com.example.E_comeerse.service.ContadorCarrito;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,11 +46,17 @@ public class CarritoController {
 
     private static final Logger logger = LoggerFactory.getLogger(CarritoController.class);
 
+    // El carrito se modificó al mismo tiempo desde otra pestaña o sesión y se agotaron los reintentos
+    private static final String MENSAJE_CONFLICTO =
+            "El carrito se modificó al mismo tiempo desde otra sesión, intente de nuevo";
+
     private final CarritoService carritoService;
+    private final ContadorCarrito contadorCarrito;
 
     @Autowired
-    public CarritoController(CarritoService carritoService) {
+    public CarritoController(CarritoService carritoService, ContadorCarrito contadorCarrito) {
         this.carritoService = carritoService;
+        this.contadorCarrito = contadorCarrito;
     }
 
     /**
@@ -88,22 +101,43 @@ public class CarritoController {
         }
     }
 
+    /**
+     * Suscripción (Server-Sent Events) a la cantidad de items del carrito.
+     * Envía la cantidad actual al conectar y un evento "cantidad" en cada cambio,
+     * para que el encabezado no tenga que consultar periódicamente
+     * 
+     * @param authentication Información de autenticación
+     * @return Emisor de eventos con la cantidad de items
+     */
+    @GetMapping(value = "/cantidad/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirCantidadItems(Authentication authentication) {
+        Long idUsuario = obtenerIdUsuario(authentication);
+        logger.debug("Suscribiendo al usuario {} a la cantidad de items del carrito", idUsuario);
+        return contadorCarrito.suscribir(idUsuario);
+    }
+
     /**
      * Agrega un producto al carrito
      * 
      * @param authentication Información de autenticación
      * @param request Datos del producto a agregar
+     * @param delta true para devolver solo los cambios (CarritoDeltaDto)
      * @return ResponseEntity con el carrito actualizado
      */
     @PostMapping("/agregar")
     public ResponseEntity<?> agregarProducto(
             Authentication authentication,
-            @Valid @RequestBody AgregarProductoRequest request) {
+            @Valid @RequestBody AgregarProductoRequest request,
+            @RequestParam(defaultValue = "false") boolean delta) {
         try {
             Long idUsuario = obtenerIdUsuario(authentication);
             logger.debug("Agregando producto {} al carrito del usuario {}", 
                     request.getIdProducto(), idUsuario);
             
+            if (delta) {
+                return ResponseEntity.ok(carritoService.agregarProductoDelta(
+                        idUsuario, request.getIdProducto(), request.getCantidad()));
+            }
             CarritoDto carrito = carritoService.agregarProducto(
                     idUsuario, 
                     request.getIdProducto(), 
@@ -114,6 +148,9 @@ public class CarritoController {
         } catch (IllegalArgumentException e) {
             logger.warn("Error al agregar producto: {}", e.getMessage());
             return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
         } catch (Exception e) {
             logger.error("Error inesperado al agregar producto", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -127,18 +164,24 @@ public class CarritoController {
      * @param authentication Información de autenticación
      * @param idProducto ID del producto
      * @param request Nueva cantidad
+     * @param delta true para devolver solo los cambios (CarritoDeltaDto)
      * @return ResponseEntity con el carrito actualizado
      */
     @PutMapping("/producto/{idProducto}")
     public ResponseEntity<?> actualizarCantidad(
             Authentication authentication,
             @PathVariable Long idProducto,
-            @Valid @RequestBody ActualizarCantidadRequest request) {
+            @Valid @RequestBody ActualizarCantidadRequest request,
+            @RequestParam(defaultValue = "false") boolean delta) {
         try {
             Long idUsuario = obtenerIdUsuario(authentication);
             logger.debug("Actualizando cantidad del producto {} a {} para el usuario {}", 
                     idProducto, request.getCantidad(), idUsuario);
             
+            if (delta) {
+                return ResponseEntity.ok(carritoService.actualizarCantidadDelta(
+                        idUsuario, idProducto, request.getCantidad()));
+            }
             CarritoDto carrito = carritoService.actualizarCantidad(
                     idUsuario, 
                     idProducto, 
@@ -149,6 +192,9 @@ public class CarritoController {
         } catch (IllegalArgumentException e) {
             logger.warn("Error al actualizar cantidad: {}", e.getMessage());
             return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
         } catch (Exception e) {
             logger.error("Error inesperado al actualizar cantidad", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -161,23 +207,31 @@ public class CarritoController {
      * 
      * @param authentication Información de autenticación
      * @param idProducto ID del producto a eliminar
+     * @param delta true para devolver solo los cambios (CarritoDeltaDto)
      * @return ResponseEntity con el carrito actualizado
      */
     @DeleteMapping("/producto/{idProducto}")
     public ResponseEntity<?> eliminarProducto(
             Authentication authentication,
-            @PathVariable Long idProducto) {
+            @PathVariable Long idProducto,
+            @RequestParam(defaultValue = "false") boolean delta) {
         try {
             Long idUsuario = obtenerIdUsuario(authentication);
             logger.debug("Eliminando producto {} del carrito del usuario {}", 
                     idProducto, idUsuario);
             
+            if (delta) {
+                return ResponseEntity.ok(carritoService.eliminarProductoDelta(idUsuario, idProducto));
+            }
             CarritoDto carrito = carritoService.eliminarProducto(idUsuario, idProducto);
             
             return ResponseEntity.ok(carrito);
         } catch (IllegalArgumentException e) {
             logger.warn("Error al eliminar producto: {}", e.getMessage());
             return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
         } catch (Exception e) {
             logger.error("Error inesperado al eliminar producto", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -189,20 +243,29 @@ public class CarritoController {
      * Vacía completamente el carrito
      * 
      * @param authentication Información de autenticación
+     * @param delta true para devolver solo los cambios (CarritoDeltaDto)
      * @return ResponseEntity con el carrito vacío
      */
     @DeleteMapping("/vaciar")
-    public ResponseEntity<?> vaciarCarrito(Authentication authentication) {
+    public ResponseEntity<?> vaciarCarrito(
+            Authentication authentication,
+            @RequestParam(defaultValue = "false") boolean delta) {
         try {
             Long idUsuario = obtenerIdUsuario(authentication);
             logger.debug("Vaciando carrito del usuario {}", idUsuario);
             
+            if (delta) {
+                return ResponseEntity.ok(carritoService.vaciarCarritoDelta(idUsuario));
+            }
             CarritoDto carrito = carritoService.vaciarCarrito(idUsuario);
             
             return ResponseEntity.ok(carrito);
         } catch (IllegalArgumentException e) {
             logger.warn("Error al vaciar carrito: {}", e.getMessage());
             return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
         } catch (Exception e) {
             logger.error("Error inesperado al vaciar carrito", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -210,6 +273,40 @@ public class CarritoController {
         }
     }
 
+    /**
+     * Aplica varias operaciones al carrito en una sola petición y transacción
+     * (por ejemplo, repetir un pedido o agregar un paquete de productos)
+     * 
+     * @param authentication Información de autenticación
+     * @param request Operaciones a aplicar, en orden
+     * @return ResponseEntity con el resultado de cada operación y el carrito actualizado
+     */
+    @PostMapping("/operaciones")
+    public ResponseEntity<?> aplicarOperaciones(
+            Authentication authentication,
+            @Valid @RequestBody OperacionesCarritoRequest request) {
+        try {
+            Long idUsuario = obtenerIdUsuario(authentication);
+            logger.debug("Aplicando {} operaciones al carrito del usuario {}", 
+                    request.getOperaciones().size(), idUsuario);
+            
+            ResultadoOperacionesCarritoDto resultado = carritoService.aplicarOperaciones(
+                    idUsuario, request.getOperaciones());
+            
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al aplicar operaciones al carrito: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
+        } catch (Exception e) {
+            logger.error("Error inesperado al aplicar operaciones al carrito", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(crearMensajeError("Error al actualizar el carrito"));
+        }
+    }
+
     /**
      * Verifica si hay stock disponible para todos los productos del carrito
      * 
@@ -234,6 +331,46 @@ public class CarritoController {
         }
     }
 
+    /**
+     * Inicia el checkout reservando por un tiempo limitado el stock del carrito,
+     * para que no se agote mientras el usuario completa el pago
+     * 
+     * @param authentication Información de autenticación
+     * @return ResponseEntity con la reserva y su vencimiento
+     */
+    @PostMapping("/checkout/reserva")
+    public ResponseEntity<?> reservarStock(Authentication authentication) {
+        try {
+            Long idUsuario = obtenerIdUsuario(authentication);
+            logger.debug("Reservando stock para el checkout del usuario {}", idUsuario);
+
+            return ResponseEntity.ok(carritoService.reservarStock(idUsuario));
+        } catch (StockInsuficienteException e) {
+            logger.warn("Stock insuficiente al reservar: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeFaltantes(e));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al reservar stock: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error inesperado al reservar stock", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(crearMensajeError("Error al reservar el stock del carrito"));
+        }
+    }
+
+    /**
+     * Libera la reserva de stock cuando el usuario abandona el checkout
+     * 
+     * @param authentication Información de autenticación
+     * @return ResponseEntity sin contenido
+     */
+    @DeleteMapping("/checkout/reserva")
+    public ResponseEntity<Void> liberarReserva(Authentication authentication) {
+        Long idUsuario = obtenerIdUsuario(authentication);
+        carritoService.liberarReserva(idUsuario);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Convierte el carrito en un pedido con datos de facturación
      * 
@@ -252,9 +389,15 @@ public class CarritoController {
             FacturaDto factura = carritoService.convertirAPedidoConFactura(idUsuario, checkoutRequest.getDatosFacturacion());
             
             return ResponseEntity.status(HttpStatus.CREATED).body(factura);
+        } catch (StockInsuficienteException e) {
+            logger.warn("Stock insuficiente al realizar checkout: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeFaltantes(e));
         } catch (IllegalArgumentException e) {
             logger.warn("Error al realizar checkout: {}", e.getMessage());
             return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Conflicto concurrente en el carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(crearMensajeError(MENSAJE_CONFLICTO));
         } catch (Exception e) {
             logger.error("Error inesperado al realizar checkout", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -294,4 +437,16 @@ public class CarritoController {
         error.put("error", mensaje);
         return error;
     }
+
+    /**
+     * Crea un mapa con mensaje de error y el detalle de cada producto sin stock suficiente
+     * 
+     * @param e Excepción con los faltantes
+     * @return Mapa con el error y los faltantes
+     */
+    private Map<String, Object> crearMensajeFaltantes(StockInsuficienteException e) {
+        Map<String, Object> error = new HashMap<>(crearMensajeError(e.getMessage()));
+        error.put("faltantes", e.getFaltantes());
+        return error;
+    }
 }
@@ -0,0 +1,152 @@
+package com.example.E_comeerse.controller;
+
+import com.example.E_comeerse.dto.ActualizarCantidadRequest;
+import com.example.E_comeerse.dto.AgregarProductoRequest;
+import com.example.E_comeerse.dto.CarritoInvitadoDto;
+import com.example.E_comeerse.service.CarritoInvitadoService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Controlador REST del carrito de visitantes sin sesión.
+ * El carrito se identifica con el token devuelto en cada respuesta, que el cliente
+ * envía en la cabecera X-Carrito-Invitado; al iniciar sesión se envía el mismo
+ * token en el login para fusionar el carrito con el del usuario.
+ *
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+@RestController
+@RequestMapping("/api/public/carrito")
+@CrossOrigin(origins = "http://localhost:5173", allowCredentials = "true")
+public class CarritoInvitadoController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarritoInvitadoController.class);
+
+    private static final String CABECERA_TOKEN = "X-Carrito-Invitado";
+
+    private final CarritoInvitadoService carritoInvitadoService;
+
+    @Autowired
+    public CarritoInvitadoController(CarritoInvitadoService carritoInvitadoService) {
+        this.carritoInvitadoService = carritoInvitadoService;
+    }
+
+    /**
+     * Obtiene el carrito del token, vacío si el token no es válido o expiró
+     *
+     * @param token Token del carrito de invitado
+     * @return ResponseEntity con el token y el carrito
+     */
+    @GetMapping
+    public ResponseEntity<CarritoInvitadoDto> obtenerCarrito(
+            @RequestHeader(value = CABECERA_TOKEN, required = false) String token) {
+        return ResponseEntity.ok(carritoInvitadoService.obtener(token));
+    }
+
+    /**
+     * Agrega un producto al carrito de invitado, creándolo si no existe
+     *
+     * @param token Token del carrito de invitado
+     * @param request Producto y cantidad
+     * @return ResponseEntity con el token y el carrito actualizado
+     */
+    @PostMapping("/agregar")
+    public ResponseEntity<?> agregarProducto(
+            @RequestHeader(value = CABECERA_TOKEN, required = false) String token,
+            @Valid @RequestBody AgregarProductoRequest request) {
+        try {
+            return ResponseEntity.ok(carritoInvitadoService.agregarProducto(
+                    token, request.getIdProducto(), request.getCantidad()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al agregar producto al carrito de invitado: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error inesperado al agregar producto al carrito de invitado", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(crearMensajeError("Error al agregar el producto al carrito"));
+        }
+    }
+
+    /**
+     * Actualiza la cantidad de un producto del carrito de invitado
+     *
+     * @param token Token del carrito de invitado
+     * @param idProducto ID del producto
+     * @param request Nueva cantidad
+     * @return ResponseEntity con el token y el carrito actualizado
+     */
+    @PutMapping("/producto/{idProducto}")
+    public ResponseEntity<?> actualizarCantidad(
+            @RequestHeader(value = CABECERA_TOKEN, required = false) String token,
+            @PathVariable Long idProducto,
+            @Valid @RequestBody ActualizarCantidadRequest request) {
+        try {
+            return ResponseEntity.ok(carritoInvitadoService.actualizarCantidad(
+                    token, idProducto, request.getCantidad()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al actualizar cantidad en el carrito de invitado: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error inesperado al actualizar cantidad en el carrito de invitado", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(crearMensajeError("Error al actualizar la cantidad"));
+        }
+    }
+
+    /**
+     * Elimina un producto del carrito de invitado
+     *
+     * @param token Token del carrito de invitado
+     * @param idProducto ID del producto a eliminar
+     * @return ResponseEntity con el token y el carrito actualizado
+     */
+    @DeleteMapping("/producto/{idProducto}")
+    public ResponseEntity<?> eliminarProducto(
+            @RequestHeader(value = CABECERA_TOKEN, required = false) String token,
+            @PathVariable Long idProducto) {
+        try {
+            return ResponseEntity.ok(carritoInvitadoService.eliminarProducto(token, idProducto));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al eliminar producto del carrito de invitado: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(crearMensajeError(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error inesperado al eliminar producto del carrito de invitado", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(crearMensajeError("Error al eliminar el producto del carrito"));
+        }
+    }
+
+    /**
+     * Vacía el carrito de invitado
+     *
+     * @param token Token del carrito de invitado
+     * @return ResponseEntity con el token y el carrito vacío
+     */
+    @DeleteMapping("/vaciar")
+    public ResponseEntity<CarritoInvitadoDto> vaciarCarrito(
+            @RequestHeader(value = CABECERA_TOKEN, required = false) String token) {
+        return ResponseEntity.ok(carritoInvitadoService.vaciar(token));
+    }
+
+    /**
+     * Crea un mapa con mensaje de error
+     *
+     * @param mensaje Mensaje de error
+     * @return Mapa con el error
+     */
+    private Map<String, String> crearMensajeError(String mensaje) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", mensaje);
+        return error;
+    }
+}
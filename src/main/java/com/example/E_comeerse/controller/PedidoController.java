@@ -4,10 +4,12 @@ import com.example.E_comeerse.model.Pedido;
 import com.example.E_comeerse.service.PedidoService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -123,6 +125,26 @@ public class PedidoController {
         }
     }
 
+    /**
+     * Ventas por producto en un período
+     * GET /api/pedidos/admin/ventas-por-producto?desde=2025-10-01&hasta=2025-10-31
+     */
+    @GetMapping("/admin/ventas-por-producto")
+    public ResponseEntity<?> obtenerVentasPorProducto(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        try {
+            return ResponseEntity.ok(pedidoService.obtenerVentasPorProducto(desde, hasta));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al obtener ventas por producto: " + e.getMessage());
+        }
+    }
+
     /**
      * Obtener detalle completo de un pedido
      * GET /api/pedidos/admin/{id}
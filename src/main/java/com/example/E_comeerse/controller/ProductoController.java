@@ -1,5 +1,12 @@
 package com.example.E_comeerse.controller;
 
+import com.example.E_comeerse.dto.ConsultaCatalogoDto;
+import com.example.E_comeerse.dto.ConsultaFacetasDto;
+import com.example.E_comeerse.dto.PaginaBusquedaDto;
+import com.example.E_comeerse.dto.PaginaCursorDto;
+import com.example.E_comeerse.dto.PaginaFacetadaDto;
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import com.example.E_comeerse.dto.ProductoResumenDto;
 import com.example.E_comeerse.model.Producto;
 import com.example.E_comeerse.service.ProductoService;
 import jakarta.validation.Valid;
@@ -25,37 +32,50 @@ public class ProductoController {
         this.productoService = productoService;
     }
 
+    /**
+     * Listado público del catálogo paginado por cursor.
+     * GET /api/productos?tamano=&cursor=&orden=&direccion=&idCategoria=&categoria=&enStock=
+     */
     @GetMapping
-    public ResponseEntity<List<Producto>> listarProductos() {
-        List<Producto> productos = productoService.listarProductos();
-        
-        // Procesar URLs de imágenes para asegurar que sean relativas
-        productos.forEach(producto -> {
-            if (producto.getUrlImagen() != null && !producto.getUrlImagen().isEmpty()) {
-                String urlImagen = producto.getUrlImagen();
-                
-                // Si la URL es completa (empieza con http), extraer solo la parte relativa
-                if (urlImagen.startsWith("http://localhost:8080/uploads/")) {
-                    producto.setUrlImagen(urlImagen.replace("http://localhost:8080", ""));
-                }
-                // Si la URL no empieza con /, agregarla
-                else if (!urlImagen.startsWith("/")) {
-                    // Extraer solo el nombre del archivo si es una ruta compleja
-                    String filename = urlImagen;
-                    if (urlImagen.contains("/")) {
-                        filename = urlImagen.substring(urlImagen.lastIndexOf("/") + 1);
-                    }
-                    producto.setUrlImagen("/uploads/productos/" + filename);
-                }
-            }
-        });
-        
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<?> listarProductos(ConsultaCatalogoDto consulta) {
+        try {
+            PaginaCursorDto<ProductoResumenDto> pagina = productoService.listarProductosPaginados(consulta);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Navegación del catálogo por facetas con conteos por categoría, rango de precio y disponibilidad.
+     * GET /api/productos/facetas?idCategoria=&categoria=&precioMin=&precioMax=&enStock=&destacado=&orden=&direccion=&pagina=&tamano=
+     */
+    @GetMapping("/facetas")
+    public ResponseEntity<?> listarPorFacetas(ConsultaFacetasDto consulta) {
+        try {
+            PaginaFacetadaDto<ProductoResumenDto> pagina = productoService.listarPorFacetas(consulta);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Varios productos por ID en una sola petición, con su stock actual
+     * GET /api/productos/lote?ids=1,2,3
+     */
+    @GetMapping("/lote")
+    public ResponseEntity<?> obtenerProductosPorIds(@RequestParam(required = false) List<Long> ids) {
+        try {
+            return ResponseEntity.ok(productoService.buscarPorIds(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> obtenerProductoPorId(@PathVariable Long id) {
-        Optional<Producto> producto = productoService.buscarPorId(id);
+    public ResponseEntity<ProductoDetalleDto> obtenerProductoPorId(@PathVariable Long id) {
+        Optional<ProductoDetalleDto> producto = productoService.obtenerDetalle(id);
         return producto.map(ResponseEntity::ok)
                       .orElse(ResponseEntity.notFound().build());
     }
@@ -91,26 +111,54 @@ public class ProductoController {
     }
 
     @GetMapping("/categoria/{idCategoria}")
-    public ResponseEntity<List<Producto>> obtenerProductosPorCategoria(@PathVariable Long idCategoria) {
-        List<Producto> productos = productoService.buscarPorCategoria(idCategoria);
+    public ResponseEntity<List<ProductoResumenDto>> obtenerProductosPorCategoria(@PathVariable Long idCategoria) {
+        List<ProductoResumenDto> productos = productoService.buscarPorCategoria(idCategoria);
         return ResponseEntity.ok(productos);
     }
 
+    /**
+     * Búsqueda de texto completo paginada y ordenada por relevancia
+     * GET /api/productos/buscar?nombre=&pagina=&tamano=
+     */
     @GetMapping("/buscar")
-    public ResponseEntity<List<Producto>> buscarProductos(@RequestParam String nombre) {
-        List<Producto> productos = productoService.buscarPorNombre(nombre);
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<?> buscarProductos(
+            @RequestParam(required = false) String nombre,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer pagina,
+            @RequestParam(required = false) Integer tamano) {
+        try {
+            String texto = q != null ? q : nombre;
+            PaginaBusquedaDto<ProductoResumenDto> resultados = productoService.buscarProductos(texto, pagina, tamano);
+            return ResponseEntity.ok(resultados);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Autocompletado del buscador, tolerante a errores de escritura
+     * GET /api/productos/sugerencias?q=&limite=
+     */
+    @GetMapping("/sugerencias")
+    public ResponseEntity<?> sugerirProductos(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            return ResponseEntity.ok(productoService.sugerirProductos(q, limite));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/destacados")
-    public ResponseEntity<List<Producto>> obtenerProductosDestacados() {
-        List<Producto> productos = productoService.obtenerProductosDestacados();
+    public ResponseEntity<List<ProductoResumenDto>> obtenerProductosDestacados() {
+        List<ProductoResumenDto> productos = productoService.obtenerProductosDestacados();
         return ResponseEntity.ok(productos);
     }
 
     @GetMapping("/destacados/top3")
-    public ResponseEntity<List<Producto>> obtenerTop3Destacados() {
-        List<Producto> productos = productoService.obtenerTop3Destacados();
+    public ResponseEntity<List<ProductoResumenDto>> obtenerTop3Destacados() {
+        List<ProductoResumenDto> productos = productoService.obtenerTop3Destacados();
         return ResponseEntity.ok(productos);
     }
 
@@ -128,29 +176,13 @@ public class ProductoController {
      * Endpoint para obtener productos con información completa de imágenes
      */
     @GetMapping("/admin")
-    public ResponseEntity<List<Producto>> listarProductosAdmin() {
-        List<Producto> productos = productoService.listarProductos();
-
-        // Procesar URLs de imágenes para asegurar que sean completas
-        productos.forEach(producto -> {
-            if (producto.getUrlImagen() != null && !producto.getUrlImagen().isEmpty()) {
-                String urlImagen = producto.getUrlImagen();
-
-                // Si la URL no es completa, construir la URL completa
-                if (!urlImagen.startsWith("http") && !urlImagen.startsWith("/api/files/serve/")) {
-                    // Extraer solo el nombre del archivo si es una ruta
-                    String filename = urlImagen;
-                    if (urlImagen.contains("/")) {
-                        filename = urlImagen.substring(urlImagen.lastIndexOf("/") + 1);
-                    }
-
-                    // Establecer la URL completa del servidor
-                    producto.setUrlImagen("/uploads/productos/" + filename);
-                }
-            }
-        });
-
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<?> listarProductosAdmin(ConsultaCatalogoDto consulta) {
+        try {
+            PaginaCursorDto<ProductoResumenDto> pagina = productoService.listarProductosPaginados(consulta);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
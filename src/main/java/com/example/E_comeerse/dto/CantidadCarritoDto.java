@@ -0,0 +1,19 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cantidad de unidades del carrito de un usuario junto con la versión del
+ * carrito que la produjo. Se obtiene con una proyección por constructor,
+ * sin cargar el carrito ni sus items.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CantidadCarritoDto {
+
+    private Long version;
+    private Integer cantidad;
+}
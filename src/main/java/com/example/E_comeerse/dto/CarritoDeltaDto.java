@@ -0,0 +1,51 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con solo los cambios de una modificación del carrito.
+ * Se devuelve en lugar del carrito completo cuando el cliente lo pide
+ * (parámetro delta=true) y mantiene una copia local del carrito.
+ *
+ * Cada modificación incrementa la versión del carrito en uno: si la versión
+ * recibida no es la versión local más uno, la copia del cliente está
+ * desactualizada y debe volver a pedir el carrito completo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoDeltaDto {
+
+    private Long idCarrito;
+    private Long version;
+
+    /**
+     * Items agregados o modificados, con su stock actual
+     */
+    private List<CarritoItemDto> itemsModificados = new ArrayList<>();
+
+    /**
+     * Productos que ya no están en el carrito
+     */
+    private List<Long> idsProductosEliminados = new ArrayList<>();
+
+    /**
+     * true si se eliminaron todos los items
+     */
+    private boolean vaciado;
+
+    /**
+     * Totales recalculados del carrito
+     */
+    private BigDecimal subtotal;
+    private BigDecimal descuentoTotal;
+    private BigDecimal impuestos;
+    private BigDecimal total;
+    private Integer cantidadItems;
+}
@@ -37,6 +37,11 @@ public class CarritoDto {
     private LocalDateTime fechaCreacion;
     private LocalDateTime fechaModificacion;
 
+    /**
+     * Versión del carrito; se incrementa en cada modificación
+     */
+    private Long version;
+
     /**
      * Constructor para crear un DTO vacío de carrito
      * 
@@ -50,5 +55,6 @@ public class CarritoDto {
         this.impuestos = BigDecimal.ZERO;
         this.total = BigDecimal.ZERO;
         this.cantidadItems = 0;
+        this.version = 0L;
     }
 }
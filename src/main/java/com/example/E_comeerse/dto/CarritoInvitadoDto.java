@@ -0,0 +1,19 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Carrito de un visitante sin sesión junto con el token firmado que lo identifica.
+ * El cliente debe guardar el token y enviarlo en las siguientes peticiones y al
+ * iniciar sesión, para fusionar el carrito con el del usuario.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoInvitadoDto {
+
+    private String token;
+    private CarritoDto carrito;
+}
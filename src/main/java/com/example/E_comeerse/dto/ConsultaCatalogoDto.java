@@ -0,0 +1,40 @@
+package com.example.E_comeerse.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Parámetros de consulta para el listado paginado del catálogo.
+ * Se enlaza directamente desde los query params de la petición.
+ */
+@Data
+@NoArgsConstructor
+public class ConsultaCatalogoDto {
+
+    /**
+     * Filtros opcionales
+     */
+    private Long idCategoria;
+    private String categoria;
+    private Boolean enStock;
+
+    /**
+     * Ordenamiento: precio, fechaCreacion o nombre (por defecto fechaCreacion)
+     */
+    private String orden;
+
+    /**
+     * Dirección del ordenamiento: asc o desc (por defecto desc)
+     */
+    private String direccion;
+
+    /**
+     * Tamaño de página solicitado
+     */
+    private Integer tamano;
+
+    /**
+     * Cursor opaco devuelto por la página anterior
+     */
+    private String cursor;
+}
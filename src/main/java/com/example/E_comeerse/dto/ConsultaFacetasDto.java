@@ -0,0 +1,41 @@
+package com.example.E_comeerse.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Parámetros de consulta para la navegación del catálogo por facetas.
+ * Se enlaza directamente desde los query params de la petición.
+ */
+@Data
+@NoArgsConstructor
+public class ConsultaFacetasDto {
+
+    /**
+     * Filtros opcionales
+     */
+    private Long idCategoria;
+    private String categoria;
+    private BigDecimal precioMin;
+    private BigDecimal precioMax;
+    private Boolean enStock;
+    private Boolean destacado;
+
+    /**
+     * Ordenamiento: precio o fechaCreacion (por defecto fechaCreacion)
+     */
+    private String orden;
+
+    /**
+     * Dirección del ordenamiento: asc o desc (por defecto desc)
+     */
+    private String direccion;
+
+    /**
+     * Página solicitada (desde 0) y tamaño de página
+     */
+    private Integer pagina;
+    private Integer tamano;
+}
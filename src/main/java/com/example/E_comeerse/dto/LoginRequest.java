@@ -19,4 +19,7 @@ public class LoginRequest {
     private String contrasena;
 
     private String deviceInfo;
+
+    // Token del carrito de invitado a fusionar con el carrito del usuario, opcional
+    private String tokenCarritoInvitado;
 }
@@ -0,0 +1,23 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para la consulta de varios productos por ID en una sola petición.
+ * Los productos vienen en el orden en que se pidieron, con su stock actual
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteProductosDto {
+
+    private List<ProductoResumenDto> items = new ArrayList<>();
+
+    // IDs solicitados que no corresponden a ningún producto
+    private List<Long> idsNoEncontrados = new ArrayList<>();
+}
@@ -0,0 +1,63 @@
+package com.example.E_comeerse.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para la petición de aplicar varias operaciones al carrito de una vez
+ * (por ejemplo, repetir un pedido o agregar un paquete de productos).
+ * Las operaciones se aplican en el orden recibido.
+ * 
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperacionesCarritoRequest {
+
+    /**
+     * Máximo de operaciones aceptadas en una sola petición
+     */
+    public static final int MAXIMO_OPERACIONES = 100;
+
+    @NotEmpty(message = "Debe enviar al menos una operación")
+    @Size(max = MAXIMO_OPERACIONES, message = "No se pueden enviar más de " + MAXIMO_OPERACIONES + " operaciones")
+    @Valid
+    private List<Operacion> operaciones = new ArrayList<>();
+
+    /**
+     * Tipos de operación sobre un producto del carrito
+     */
+    public enum TipoOperacion {
+        AGREGAR,     // Suma la cantidad a la existente, o agrega el producto
+        ACTUALIZAR,  // Reemplaza la cantidad de un producto que ya está en el carrito
+        ELIMINAR     // Quita el producto del carrito
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operacion {
+
+        @NotNull(message = "El tipo de operación es obligatorio")
+        private TipoOperacion tipo;
+
+        @NotNull(message = "El ID del producto es obligatorio")
+        private Long idProducto;
+
+        // Obligatoria para AGREGAR y ACTUALIZAR; se ignora en ELIMINAR
+        @Min(value = 1, message = "La cantidad debe ser al menos 1")
+        private Integer cantidad;
+    }
+}
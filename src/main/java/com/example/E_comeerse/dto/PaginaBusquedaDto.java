@@ -0,0 +1,28 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para una página de resultados de búsqueda ordenados por relevancia
+ *
+ * @param <T> tipo de los resultados
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaBusquedaDto<T> {
+
+    private List<T> items = new ArrayList<>();
+    private int pagina;
+    private int tamanoPagina;
+    private long totalResultados;
+    private int totalPaginas;
+
+    // Presente solo cuando los resultados salen de corregir una consulta sin coincidencias
+    private String consultaCorregida;
+}
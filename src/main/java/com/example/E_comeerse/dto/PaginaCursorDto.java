@@ -0,0 +1,26 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO genérico para respuestas paginadas por cursor (keyset).
+ * El cliente reenvía {@code siguienteCursor} para obtener la página siguiente;
+ * el token es opaco y no debe interpretarse en el cliente.
+ *
+ * @param <T> tipo de los elementos de la página
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDto<T> {
+
+    private List<T> items = new ArrayList<>();
+    private String siguienteCursor;
+    private boolean hayMas;
+    private int tamanoPagina;
+}
@@ -0,0 +1,53 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para una página del catálogo filtrado por facetas junto con los conteos
+ * de cada faceta. El conteo de una faceta aplica todos los filtros excepto el
+ * suyo, para que el cliente pueda mostrar cuántos productos hay en cada opción
+ *
+ * @param <T> tipo de los resultados
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaFacetadaDto<T> {
+
+    private List<T> items = new ArrayList<>();
+    private int pagina;
+    private int tamanoPagina;
+    private long totalResultados;
+    private int totalPaginas;
+
+    // Conteos por faceta
+    private List<ConteoCategoria> categorias = new ArrayList<>();
+    private List<ConteoRangoPrecio> rangosPrecio = new ArrayList<>();
+    private long enStock;
+    private long destacados;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConteoCategoria {
+        private Long idCategoria;
+        private String categoria;
+        private long cantidad;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConteoRangoPrecio {
+        private BigDecimal desde;
+        // Null en el último rango, que no tiene límite superior
+        private BigDecimal hasta;
+        private long cantidad;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.E_comeerse.dto;
 
 import com.example.E_comeerse.model.Pedido;
+import com.example.E_comeerse.model.PedidoItem;
+import com.example.E_comeerse.model.Precios;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,6 +10,8 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * DTO para la información detallada de un pedido
@@ -44,6 +48,9 @@ public class PedidoDetalleDto {
     private BigDecimal descuentos;
     private BigDecimal impuestos;
     
+    // Líneas compradas; solo se cargan en el detalle de un pedido
+    private List<PedidoItemDto> items;
+    
     /**
      * Constructor desde entidad Pedido
      */
@@ -52,16 +59,16 @@ public class PedidoDetalleDto {
             return null;
         }
         
-        BigDecimal total = pedido.getMontoTotal() != null ? pedido.getMontoTotal() : BigDecimal.ZERO;
-        BigDecimal impuestos = pedido.getMontoImpuestos() != null ? pedido.getMontoImpuestos() : BigDecimal.ZERO;
-        BigDecimal descuentos = pedido.getMontoDescuento() != null ? pedido.getMontoDescuento() : BigDecimal.ZERO;
+        long total = Precios.aCentavos(pedido.getMontoTotal());
+        long impuestos = Precios.aCentavos(pedido.getMontoImpuestos());
+        long descuentos = Precios.aCentavos(pedido.getMontoDescuento());
         
         return PedidoDetalleDto.builder()
                 .id(pedido.getId())
                 .numeroPedido(pedido.getNumeroPedido())
                 .numeroTicket(pedido.getNumeroTicket())
                 .fechaPedido(pedido.getFechaCreacion())
-                .total(total)
+                .total(Precios.aDecimal(total))
                 .estadoPedido(pedido.getEstadoPedido() != null ? pedido.getEstadoPedido().name() : null)
                 .estadoPago(pedido.getEstadoPago() != null ? pedido.getEstadoPago().name() : null)
                 .metodoPago(pedido.getMetodoPago())
@@ -73,9 +80,20 @@ public class PedidoDetalleDto {
                 .clienteCiudad(pedido.getClienteCiudad())
                 .clientePais(pedido.getClientePais())
                 .usuarioId(pedido.getIdUsuario())
-                .subtotal(total.subtract(impuestos).add(descuentos))
-                .descuentos(descuentos)
-                .impuestos(impuestos)
+                .subtotal(Precios.aDecimal(Precios.subtotalDesdeTotal(total, impuestos, descuentos)))
+                .descuentos(Precios.aDecimal(descuentos))
+                .impuestos(Precios.aDecimal(impuestos))
                 .build();
     }
+    
+    /**
+     * Constructor desde entidad Pedido con sus líneas
+     */
+    public static PedidoDetalleDto fromEntity(Pedido pedido, List<PedidoItem> items) {
+        PedidoDetalleDto dto = fromEntity(pedido);
+        if (dto != null) {
+            dto.setItems(items.stream().map(PedidoItemDto::fromEntity).collect(Collectors.toList()));
+        }
+        return dto;
+    }
 }
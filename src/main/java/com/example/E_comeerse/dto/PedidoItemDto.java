@@ -0,0 +1,37 @@
+package com.example.E_comeerse.dto;
+
+import com.example.E_comeerse.model.PedidoItem;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO para una línea comprada de un pedido
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoItemDto {
+
+    private Long idProducto;
+    private String nombreProducto;
+    private Integer cantidad;
+    private BigDecimal precioUnitario;
+    private BigDecimal descuento;
+    private BigDecimal subtotal;
+
+    public static PedidoItemDto fromEntity(PedidoItem item) {
+        return PedidoItemDto.builder()
+                .idProducto(item.getIdProducto())
+                .nombreProducto(item.getNombreProducto())
+                .cantidad(item.getCantidad())
+                .precioUnitario(item.getPrecioUnitario())
+                .descuento(item.getDescuento())
+                .subtotal(item.getSubtotal())
+                .build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Modelo de lectura de un producto para la vista de detalle, con la descripción completa
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoDetalleDto {
+
+    private Long id;
+    private String nombre;
+    private String descripcion;
+    private BigDecimal precio;
+    private Integer cantidadStock;
+    private Long idCategoria;
+    private String categoria;
+    private String codigoProducto;
+    private String urlImagen;
+    private Boolean destacado;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaModificacion;
+}
@@ -0,0 +1,50 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Modelo de lectura de un producto para listados y tarjetas del catálogo.
+ * Se obtiene con una proyección por constructor: no incluye la descripción
+ * completa, solo un extracto para la tarjeta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoResumenDto {
+
+    /**
+     * Longitud máxima del extracto de la descripción
+     */
+    public static final int LONGITUD_DESCRIPCION_CORTA = 160;
+
+    private Long id;
+    private String nombre;
+    private String descripcionCorta;
+    private BigDecimal precio;
+    private Integer cantidadStock;
+    private Long idCategoria;
+    private String categoria;
+    private String codigoProducto;
+    private String urlImagen;
+    private Boolean destacado;
+    private LocalDateTime fechaCreacion;
+
+    /**
+     * Resumen a partir del detalle, recortando la descripción al extracto
+     */
+    public static ProductoResumenDto fromDetalle(ProductoDetalleDto detalle) {
+        String descripcion = detalle.getDescripcion();
+        String descripcionCorta = descripcion != null && descripcion.length() > LONGITUD_DESCRIPCION_CORTA
+                ? descripcion.substring(0, LONGITUD_DESCRIPCION_CORTA)
+                : descripcion;
+        return new ProductoResumenDto(detalle.getId(), detalle.getNombre(), descripcionCorta, detalle.getPrecio(),
+                detalle.getCantidadStock(), detalle.getIdCategoria(), detalle.getCategoria(),
+                detalle.getCodigoProducto(), detalle.getUrlImagen(), detalle.getDestacado(),
+                detalle.getFechaCreacion());
+    }
+}
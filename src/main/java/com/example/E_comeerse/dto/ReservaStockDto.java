@@ -0,0 +1,22 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Reserva temporal de stock creada al iniciar el checkout: las unidades
+ * quedan apartadas para el usuario hasta la fecha de vencimiento.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservaStockDto {
+
+    // Unidades reservadas por ID de producto
+    private Map<Long, Integer> cantidades;
+    private LocalDateTime expiraEn;
+}
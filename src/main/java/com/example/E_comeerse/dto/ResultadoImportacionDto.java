@@ -0,0 +1,41 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con el resultado de una importación masiva de productos.
+ * Las filas inválidas no detienen la importación: se informan en errores
+ * con su número de fila y el resto del archivo se sigue procesando
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoImportacionDto {
+
+    private String formato;
+    private long filasLeidas;
+    private long filasImportadas;
+    private long filasConError;
+
+    // Solo se devuelven los primeros errores; erroresTruncados indica si hubo más
+    private List<ErrorFila> errores = new ArrayList<>();
+    private boolean erroresTruncados;
+
+    private long duracionMs;
+    private double filasPorSegundo;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ErrorFila {
+        // Número de línea en el archivo (en CSV la cabecera es la línea 1)
+        private long fila;
+        private String codigoProducto;
+        private String mensaje;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con el resultado de aplicar varias operaciones al carrito.
+ * Una operación inválida no detiene las demás: se informa en su resultado
+ * y el resto se aplica igualmente. El carrito devuelto ya incluye todas
+ * las operaciones exitosas.
+ * 
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoOperacionesCarritoDto {
+
+    /**
+     * Un resultado por operación, en el mismo orden de la petición
+     */
+    private List<ResultadoOperacion> resultados = new ArrayList<>();
+
+    private int operacionesAplicadas;
+    private int operacionesFallidas;
+
+    /**
+     * Carrito después de aplicar las operaciones
+     */
+    private CarritoDto carrito;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ResultadoOperacion {
+        // Posición de la operación en la petición, empezando en 0
+        private int indice;
+        private OperacionesCarritoRequest.TipoOperacion tipo;
+        private Long idProducto;
+        private boolean exito;
+        // Motivo del fallo, o null si la operación se aplicó
+        private String mensaje;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para las sugerencias de autocompletado del buscador
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SugerenciasDto {
+
+    private String consulta;
+
+    // Presente solo cuando las sugerencias aproximadas salen de corregir la consulta
+    private String consultaCorregida;
+
+    private List<Sugerencia> sugerencias = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Sugerencia {
+        private Long idProducto;
+        private String nombre;
+        private boolean aproximada;
+    }
+}
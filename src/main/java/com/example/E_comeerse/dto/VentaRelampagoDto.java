@@ -0,0 +1,21 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estado de la venta relámpago de un producto: unidades que quedan en sus
+ * fracciones en memoria y unidades vendidas que aún no se descontaron de la
+ * base de datos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaRelampagoDto {
+
+    private Long idProducto;
+    private Integer fracciones;
+    private Long disponible;
+    private Long vendidoSinConciliar;
+}
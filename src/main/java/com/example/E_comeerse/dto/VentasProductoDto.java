@@ -0,0 +1,22 @@
+package com.example.E_comeerse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Ventas acumuladas de un producto en un período
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentasProductoDto {
+
+    private Long idProducto;
+    private String nombreProducto;
+    private Long unidadesVendidas;
+    private BigDecimal totalVendido;
+    private Long pedidos;
+}
@@ -0,0 +1,44 @@
+package com.example.E_comeerse.exception;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Uno o más productos no tienen stock suficiente para confirmar un pedido.
+ * Incluye el detalle de cada faltante, para que el cliente pueda ajustar
+ * las cantidades del carrito
+ */
+public class StockInsuficienteException extends IllegalArgumentException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Producto sin stock suficiente
+     *
+     * @param idProducto ID del producto
+     * @param nombreProducto Nombre del producto, null si ya no existe
+     * @param solicitado Unidades solicitadas
+     * @param disponible Unidades disponibles al momento de confirmar
+     */
+    public record Faltante(Long idProducto, String nombreProducto, int solicitado, int disponible) implements Serializable {
+    }
+
+    // List.copyOf devuelve una lista inmutable serializable
+    private final List<Faltante> faltantes;
+
+    public StockInsuficienteException(List<Faltante> faltantes) {
+        super("Stock insuficiente para: " + faltantes.stream()
+                .map(f -> String.format("%s (solicitado %d, disponible %d)",
+                        f.nombreProducto() != null ? f.nombreProducto() : "producto " + f.idProducto(),
+                        f.solicitado(), f.disponible()))
+                .collect(Collectors.joining(", ")));
+        this.faltantes = List.copyOf(faltantes);
+    }
+
+    public List<Faltante> getFaltantes() {
+        return faltantes;
+    }
+}
@@ -24,7 +24,10 @@ import java.util.List;
  * @since 2025-10-13
  */
 @Entity
-@Table(name = "carritos")
+@Table(name = "carritos", indexes = {
+    // Recorrido por keyset (fecha de modificación, id) de las tareas de mantenimiento
+    @Index(name = "idx_carritos_fecha_modificacion_id", columnList = "fecha_modificacion, id_carrito")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -63,6 +66,27 @@ public class Carrito {
     @Column(name = "fecha_modificacion")
     private LocalDateTime fechaModificacion;
 
+    /**
+     * Versión del carrito, incrementada en cada modificación.
+     * Permite a los clientes detectar si su copia local está desactualizada, y a
+     * Hibernate rechazar (bloqueo optimista) la escritura de un carrito que otra
+     * transacción modificó después de leerlo
+     */
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version = 0L;
+
+    /**
+     * Subtotal y descuento acumulados en centavos. Son la fuente de los totales:
+     * cada cambio de un item les suma su diferencia y los importes decimales
+     * de arriba se derivan de ellos
+     */
+    @Transient
+    private long subtotalCentavos;
+
+    @Transient
+    private long descuentoCentavos;
+
     /**
      * Constructor para crear un carrito nuevo para un usuario
      * 
@@ -76,6 +100,7 @@ public class Carrito {
         this.impuestos = BigDecimal.ZERO;
         this.total = BigDecimal.ZERO;
         this.cantidadItems = 0;
+        this.version = 0L;
     }
 
     /**
@@ -96,32 +121,67 @@ public class Carrito {
     }
 
     /**
-     * Calcula y actualiza todos los totales del carrito
-     * Aplica lógica de negocio: subtotal, descuentos, impuestos y total
+     * Método de ciclo de vida JPA - se ejecuta al cargar el carrito.
+     * Inicializa los acumulados en centavos desde los totales guardados
+     */
+    @PostLoad
+    protected void onLoad() {
+        subtotalCentavos = Precios.aCentavos(subtotal);
+        descuentoCentavos = Precios.aCentavos(descuentoTotal);
+    }
+
+    /**
+     * Recalcula todos los totales del carrito sumando sus items en un solo recorrido.
+     * Las modificaciones normales no lo necesitan: agregarItem, eliminarItem y
+     * actualizarCantidadItem actualizan los totales con la diferencia del item
      */
     public void calcularTotales() {
-        // Calcular subtotal sumando todos los subtotales de los items
-        this.subtotal = items.stream()
-                .map(CarritoItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Calcular descuento total sumando todos los descuentos de los items
-        this.descuentoTotal = items.stream()
-                .map(CarritoItem::getDescuento)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Calcular impuestos (ejemplo: 19% del subtotal - descuentos)
-        BigDecimal baseImponible = subtotal.subtract(descuentoTotal);
-        this.impuestos = baseImponible.multiply(new BigDecimal("0.19"))
-                .setScale(2, java.math.RoundingMode.HALF_UP);
-
-        // Calcular total final
-        this.total = subtotal.subtract(descuentoTotal).add(impuestos);
-
-        // Actualizar cantidad de items
-        this.cantidadItems = items.stream()
-                .mapToInt(CarritoItem::getCantidad)
-                .sum();
+        long subtotalItems = 0;
+        long descuentoItems = 0;
+        int cantidad = 0;
+        for (CarritoItem item : items) {
+            Precios.Linea linea = item.linea();
+            subtotalItems += linea.bruto();
+            descuentoItems += linea.descuento();
+            cantidad += linea.cantidad();
+        }
+        this.subtotalCentavos = subtotalItems;
+        this.descuentoCentavos = descuentoItems;
+        this.cantidadItems = cantidad;
+        publicarTotales();
+    }
+
+    /**
+     * Aplica a los totales la diferencia entre la línea anterior y la nueva de un item
+     * 
+     * @param anterior Línea antes del cambio (Linea.VACIA si el item es nuevo)
+     * @param nueva Línea después del cambio (Linea.VACIA si el item se quitó)
+     */
+    public void aplicarCambioLinea(Precios.Linea anterior, Precios.Linea nueva) {
+        this.subtotalCentavos += nueva.bruto() - anterior.bruto();
+        this.descuentoCentavos += nueva.descuento() - anterior.descuento();
+        this.cantidadItems = (cantidadItems != null ? cantidadItems : 0) + nueva.cantidad() - anterior.cantidad();
+        publicarTotales();
+    }
+
+    /**
+     * Deriva los importes decimales (columnas y DTOs) de los acumulados en centavos
+     */
+    private void publicarTotales() {
+        Precios.Totales totales = Precios.totales(subtotalCentavos, descuentoCentavos, cantidadItems);
+        this.subtotal = Precios.aDecimal(totales.subtotal());
+        this.descuentoTotal = Precios.aDecimal(totales.descuento());
+        this.impuestos = Precios.aDecimal(totales.impuestos());
+        this.total = Precios.aDecimal(totales.total());
+    }
+
+    /**
+     * Registra una modificación del carrito incrementando su versión.
+     * Solo para carritos fuera de una sesión JPA (carritos en memoria): en las
+     * entidades gestionadas la versión la incrementa Hibernate al escribirlas
+     */
+    public void incrementarVersion() {
+        this.version = (version != null ? version : 0L) + 1;
     }
 
     /**
@@ -132,7 +192,19 @@ public class Carrito {
     public void agregarItem(CarritoItem item) {
         item.setCarrito(this);
         this.items.add(item);
-        calcularTotales();
+        aplicarCambioLinea(Precios.Linea.VACIA, item.linea());
+    }
+
+    /**
+     * Cambia la cantidad de un item del carrito y actualiza los totales
+     * 
+     * @param item Item del carrito
+     * @param nuevaCantidad Nueva cantidad del producto
+     */
+    public void actualizarCantidadItem(CarritoItem item, Integer nuevaCantidad) {
+        Precios.Linea anterior = item.linea();
+        item.actualizarCantidad(nuevaCantidad);
+        aplicarCambioLinea(anterior, item.linea());
     }
 
     /**
@@ -141,8 +213,9 @@ public class Carrito {
      * @param item Item a eliminar
      */
     public void eliminarItem(CarritoItem item) {
-        this.items.remove(item);
-        calcularTotales();
+        if (this.items.remove(item)) {
+            aplicarCambioLinea(item.linea(), Precios.Linea.VACIA);
+        }
     }
 
     /**
@@ -150,7 +223,10 @@ public class Carrito {
      */
     public void vaciarCarrito() {
         this.items.clear();
-        calcularTotales();
+        this.subtotalCentavos = 0;
+        this.descuentoCentavos = 0;
+        this.cantidadItems = 0;
+        publicarTotales();
     }
 
     /**
@@ -24,7 +24,10 @@ import java.time.LocalDateTime;
  * @since 2025-10-13
  */
 @Entity
-@Table(name = "carrito_items")
+@Table(name = "carrito_items", uniqueConstraints = {
+    // Un producto aparece una sola vez por carrito; lo usa el upsert atómico de agregarProducto
+    @UniqueConstraint(name = "uk_carrito_items_carrito_producto", columnNames = {"id_carrito", "id_producto"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -74,6 +77,14 @@ public class CarritoItem {
     @Column(name = "fecha_modificacion")
     private LocalDateTime fechaModificacion;
 
+    /**
+     * Versión del item para el bloqueo optimista; el upsert de agregarProducto
+     * también la incrementa. Las filas existentes y las insertadas por SQL empiezan en 0
+     */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     /**
      * Constructor para crear un item del carrito
      * 
@@ -118,17 +129,23 @@ public class CarritoItem {
      */
     public void calcularSubtotal() {
         if (precioUnitario != null && cantidad != null) {
-            BigDecimal totalSinDescuento = precioUnitario.multiply(new BigDecimal(cantidad));
-            
-            // Aplicar descuento si existe
-            if (porcentajeDescuento != null && porcentajeDescuento.compareTo(BigDecimal.ZERO) > 0) {
-                this.descuento = totalSinDescuento
-                        .multiply(porcentajeDescuento.divide(new BigDecimal("100")))
-                        .setScale(2, java.math.RoundingMode.HALF_UP);
-            }
-            
-            this.subtotal = totalSinDescuento.subtract(descuento);
+            Precios.Linea linea = linea();
+            this.descuento = Precios.aDecimal(linea.descuento());
+            this.subtotal = Precios.aDecimal(linea.neto());
+        }
+    }
+
+    /**
+     * Obtiene los importes del item en centavos según las reglas de {@link Precios}
+     * 
+     * @return Línea con bruto, descuento y cantidad del item
+     */
+    public Precios.Linea linea() {
+        if (precioUnitario == null || cantidad == null) {
+            return Precios.Linea.VACIA;
         }
+        return Precios.linea(Precios.aCentavos(precioUnitario), cantidad,
+                Precios.aPuntosBasicos(porcentajeDescuento), Precios.aCentavos(descuento));
     }
 
     /**
@@ -6,7 +6,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+    // Reportes por período: ventas totales, ventas por producto y exportaciones
+    @Index(name = "idx_pedidos_fecha_creacion", columnList = "fecha_creacion")
+})
 public class Pedido {
 
     @Id
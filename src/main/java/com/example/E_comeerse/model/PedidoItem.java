@@ -0,0 +1,78 @@
+package com.example.E_comeerse.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Entidad PedidoItem que representa una línea comprada de un pedido.
+ * Guarda una copia del producto, el precio y los importes al momento del checkout,
+ * así el detalle del pedido no cambia si el producto se modifica o se elimina.
+ *
+ * El ID sale de una secuencia que Hibernate reserva en bloques: a diferencia de
+ * IDENTITY, permite insertar todas las líneas del pedido en un solo lote JDBC.
+ *
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+@Entity
+@Table(name = "pedido_items", indexes = {
+    // Detalle del pedido: todas sus líneas con una sola búsqueda
+    @Index(name = "idx_pedido_items_pedido", columnList = "id_pedido"),
+    // Historial de ventas de un producto
+    @Index(name = "idx_pedido_items_producto", columnList = "id_producto")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedido_items_seq")
+    @SequenceGenerator(name = "pedido_items_seq", sequenceName = "pedido_items_seq", allocationSize = 50)
+    @Column(name = "id_item_pedido")
+    private Long idItemPedido;
+
+    @Column(name = "id_pedido", nullable = false)
+    private Long idPedido;
+
+    @Column(name = "id_producto", nullable = false)
+    private Long idProducto;
+
+    @Column(name = "nombre_producto", length = 200)
+    private String nombreProducto;
+
+    @Column(name = "precio_unitario", nullable = false, precision = 10, scale = 2)
+    private BigDecimal precioUnitario;
+
+    @Column(name = "cantidad", nullable = false)
+    private Integer cantidad;
+
+    @Column(name = "descuento", precision = 10, scale = 2)
+    private BigDecimal descuento = BigDecimal.ZERO;
+
+    // Importe neto de la línea (bruto menos descuento)
+    @Column(name = "subtotal", nullable = false, precision = 10, scale = 2)
+    private BigDecimal subtotal;
+
+    /**
+     * Crea la línea del pedido a partir de un item del carrito, con los importes de {@link Precios}
+     *
+     * @param idPedido ID del pedido ya guardado
+     * @param item Item del carrito comprado
+     */
+    public PedidoItem(Long idPedido, CarritoItem item) {
+        Precios.Linea linea = item.linea();
+        this.idPedido = idPedido;
+        this.idProducto = item.getIdProducto();
+        this.nombreProducto = item.getNombreProducto();
+        this.precioUnitario = item.getPrecioUnitario();
+        this.cantidad = item.getCantidad();
+        this.descuento = Precios.aDecimal(linea.descuento());
+        this.subtotal = Precios.aDecimal(linea.neto());
+    }
+}
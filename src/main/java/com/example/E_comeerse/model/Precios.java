@@ -0,0 +1,150 @@
+package com.example.E_comeerse.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Cálculo de precios, descuentos e impuestos en centavos (long).
+ * Es la única fuente de las reglas de precios para carritos, pedidos y facturas:
+ * todo el cálculo se hace con enteros y BigDecimal solo se usa al leer o
+ * escribir los importes de las entidades y los DTOs.
+ *
+ * Reglas:
+ * - Importe bruto de una línea: precio unitario x cantidad
+ * - Descuento de una línea: porcentaje sobre el bruto redondeado al centavo,
+ *   o un importe fijo si la línea no tiene porcentaje
+ * - Subtotal del carrito: suma de los brutos; descuento total: suma de los descuentos
+ * - Impuestos: tasa sobre (subtotal - descuento), redondeado al centavo (mitad hacia arriba)
+ * - Total: subtotal - descuento + impuestos
+ *
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+public final class Precios {
+
+    /**
+     * Tasa de impuestos aplicada sobre el subtotal menos descuentos.
+     * Se usa también en el recálculo de totales en SQL (CarritoRepository)
+     */
+    public static final String TASA_IMPUESTOS = "0.19";
+
+    // Porcentajes y tasas se expresan en puntos básicos (1% = 100)
+    private static final long ESCALA_PUNTOS_BASICOS = 10_000;
+    private static final long TASA_IMPUESTOS_PUNTOS_BASICOS =
+            new BigDecimal(TASA_IMPUESTOS).movePointRight(4).longValueExact();
+
+    private Precios() {
+    }
+
+    /**
+     * Importes de una línea (item de carrito o de factura) en centavos
+     *
+     * @param bruto Precio unitario x cantidad
+     * @param descuento Descuento de la línea
+     * @param cantidad Unidades de la línea
+     */
+    public record Linea(long bruto, long descuento, int cantidad) {
+
+        /**
+         * Línea vacía, para agregar o quitar una línea completa de los totales
+         */
+        public static final Linea VACIA = new Linea(0, 0, 0);
+
+        /**
+         * @return Importe de la línea después del descuento
+         */
+        public long neto() {
+            return bruto - descuento;
+        }
+    }
+
+    /**
+     * Totales de un carrito o pedido en centavos
+     */
+    public record Totales(long subtotal, long descuento, long impuestos, long total, int cantidadItems) {
+    }
+
+    /**
+     * Calcula los importes de una línea
+     *
+     * @param precioUnitario Precio unitario en centavos
+     * @param cantidad Unidades
+     * @param porcentajeDescuento Porcentaje de descuento en puntos básicos, 0 si no tiene
+     * @param descuentoFijo Descuento usado cuando no hay porcentaje, en centavos
+     * @return Importes de la línea
+     */
+    public static Linea linea(long precioUnitario, int cantidad, long porcentajeDescuento, long descuentoFijo) {
+        long bruto = Math.multiplyExact(precioUnitario, cantidad);
+        long descuento = porcentajeDescuento > 0
+                ? dividirRedondeando(Math.multiplyExact(bruto, porcentajeDescuento), ESCALA_PUNTOS_BASICOS)
+                : descuentoFijo;
+        return new Linea(bruto, descuento, cantidad);
+    }
+
+    /**
+     * Calcula impuestos y total a partir del subtotal y el descuento acumulados
+     *
+     * @param subtotal Suma de los importes brutos en centavos
+     * @param descuento Suma de los descuentos en centavos
+     * @param cantidadItems Suma de las unidades
+     * @return Totales completos
+     */
+    public static Totales totales(long subtotal, long descuento, int cantidadItems) {
+        long baseImponible = subtotal - descuento;
+        long impuestos = dividirRedondeando(
+                Math.multiplyExact(baseImponible, TASA_IMPUESTOS_PUNTOS_BASICOS), ESCALA_PUNTOS_BASICOS);
+        return new Totales(subtotal, descuento, impuestos, baseImponible + impuestos, cantidadItems);
+    }
+
+    /**
+     * Obtiene el subtotal bruto de un pedido ya cerrado a partir de sus importes guardados
+     *
+     * @param total Total del pedido en centavos
+     * @param impuestos Impuestos del pedido en centavos
+     * @param descuento Descuento del pedido en centavos
+     * @return Subtotal antes de descuentos e impuestos
+     */
+    public static long subtotalDesdeTotal(long total, long impuestos, long descuento) {
+        return total - impuestos + descuento;
+    }
+
+    /**
+     * Convierte un importe a centavos, redondeando al centavo (mitad hacia arriba)
+     *
+     * @param importe Importe decimal, puede ser null
+     * @return Importe en centavos, 0 si es null
+     */
+    public static long aCentavos(BigDecimal importe) {
+        if (importe == null) {
+            return 0;
+        }
+        return importe.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Convierte un porcentaje (por ejemplo 12.5) a puntos básicos (1250)
+     *
+     * @param porcentaje Porcentaje decimal, puede ser null
+     * @return Porcentaje en puntos básicos, 0 si es null
+     */
+    public static long aPuntosBasicos(BigDecimal porcentaje) {
+        return aCentavos(porcentaje);
+    }
+
+    /**
+     * Convierte centavos al importe decimal expuesto en entidades y DTOs
+     *
+     * @param centavos Importe en centavos
+     * @return Importe con dos decimales
+     */
+    public static BigDecimal aDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    // División entera redondeando la mitad lejos de cero, como ROUND en SQL y HALF_UP en BigDecimal
+    private static long dividirRedondeando(long numerador, long divisor) {
+        long mitad = divisor / 2;
+        return numerador >= 0 ? (numerador + mitad) / divisor : -((-numerador + mitad) / divisor);
+    }
+}
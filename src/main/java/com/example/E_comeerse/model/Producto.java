@@ -9,7 +9,13 @@ import java.time.LocalDateTime;
  * Entidad Producto que representa un producto en el sistema.
  */
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+    // Índices compuestos (clave de orden, id) para la paginación por keyset del catálogo
+    @Index(name = "idx_productos_precio_id", columnList = "precio, id_producto"),
+    @Index(name = "idx_productos_fecha_creacion_id", columnList = "fecha_creacion, id_producto"),
+    @Index(name = "idx_productos_nombre_id", columnList = "nombre_producto, id_producto"),
+    @Index(name = "idx_productos_id_categoria", columnList = "id_categoria")
+})
 public class Producto {
 
     @Id
@@ -53,7 +59,8 @@ public class Producto {
     @Column(name = "destacado", nullable = false)
     private Boolean destacado = false;
 
-    @Column(name = "fecha_creacion", updatable = false)
+    // NOT NULL: es clave de orden del keyset del catálogo
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
     @Column(name = "fecha_modificacion")
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,6 +43,42 @@ public interface CarritoItemRepository extends JpaRepository<CarritoItem, Long>
      */
     Optional<CarritoItem> findByCarrito_IdCarritoAndIdProducto(Long idCarrito, Long idProducto);
 
+    /**
+     * Inserta el producto en el carrito o incrementa su cantidad en una sola
+     * sentencia atómica. Nombre, imagen y precio se copian del producto. La
+     * escritura solo ocurre si el stock cubre la cantidad resultante; en caso
+     * contrario, o si el producto no existe, no se modifica ninguna fila.
+     * 
+     * @param idCarrito ID del carrito
+     * @param idProducto ID del producto
+     * @param cantidad Cantidad a sumar
+     * @param ahora Fecha de la operación
+     * @return Item insertado o incrementado (RETURNING), vacío si no había stock suficiente o el producto no existe
+     */
+    // Descuento de la línea igual que Precios.linea: porcentaje sobre el bruto redondeado al centavo,
+    // o el descuento fijo si no hay porcentaje; si cambia, debe cambiar a la vez en Precios
+    @Query(value = "INSERT INTO carrito_items (id_carrito, id_producto, nombre_producto, url_imagen, precio_unitario, " +
+           "cantidad, subtotal, descuento, porcentaje_descuento, fecha_agregado, fecha_modificacion) " +
+           "SELECT :idCarrito, p.id_producto, p.nombre_producto, p.url_imagen, p.precio, " +
+           ":cantidad, p.precio * :cantidad, 0, 0, :ahora, :ahora " +
+           "FROM productos p WHERE p.id_producto = :idProducto AND p.cantidad_stock >= :cantidad " +
+           "ON CONFLICT (id_carrito, id_producto) DO UPDATE SET " +
+           "cantidad = carrito_items.cantidad + EXCLUDED.cantidad, " +
+           "descuento = CASE WHEN carrito_items.porcentaje_descuento > 0 " +
+           "THEN ROUND(carrito_items.precio_unitario * (carrito_items.cantidad + EXCLUDED.cantidad) " +
+           "* carrito_items.porcentaje_descuento / 100, 2) ELSE carrito_items.descuento END, " +
+           "subtotal = carrito_items.precio_unitario * (carrito_items.cantidad + EXCLUDED.cantidad) - " +
+           "CASE WHEN carrito_items.porcentaje_descuento > 0 " +
+           "THEN ROUND(carrito_items.precio_unitario * (carrito_items.cantidad + EXCLUDED.cantidad) " +
+           "* carrito_items.porcentaje_descuento / 100, 2) ELSE carrito_items.descuento END, " +
+           "fecha_modificacion = EXCLUDED.fecha_modificacion, " +
+           "version = carrito_items.version + 1 " +
+           "WHERE (SELECT p.cantidad_stock FROM productos p WHERE p.id_producto = carrito_items.id_producto) " +
+           ">= carrito_items.cantidad + EXCLUDED.cantidad " +
+           "RETURNING *", nativeQuery = true)
+    Optional<CarritoItem> agregarOIncrementar(@Param("idCarrito") Long idCarrito, @Param("idProducto") Long idProducto,
+                            @Param("cantidad") Integer cantidad, @Param("ahora") LocalDateTime ahora);
+
     /**
      * Verifica si existe un producto en un carrito
      * 
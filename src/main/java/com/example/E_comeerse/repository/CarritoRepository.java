@@ -1,11 +1,16 @@
 package com.example.E_comeerse.repository;
 
+import com.example.E_comeerse.dto.CantidadCarritoDto;
 import com.example.E_comeerse.model.Carrito;
+import com.example.E_comeerse.model.Precios;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -26,13 +31,73 @@ import java.util.Optional;
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
 
     /**
-     * Busca el carrito activo de un usuario específico
+     * Busca el carrito activo de un usuario específico.
+     * Los items se cargan en la misma consulta (fetch join) para no
+     * disparar una consulta adicional al recorrerlos.
      * 
      * @param idUsuario ID del usuario
      * @return Optional con el carrito si existe
      */
+    @EntityGraph(attributePaths = "items")
     Optional<Carrito> findByIdUsuario(Long idUsuario);
 
+    /**
+     * ID y versión de un carrito, leídos sin cargar la entidad
+     */
+    interface VersionCarrito {
+        Long getIdCarrito();
+        Long getVersion();
+    }
+
+    /**
+     * Crea el carrito del usuario si no existe y devuelve su ID y versión en una
+     * sola sentencia, sin bloquear la fila del carrito. Las escrituras posteriores
+     * se validan contra esta versión (ver recalcularTotales).
+     * Si otra transacción crea el carrito al mismo tiempo, la fila aún no es visible
+     * para esta sentencia y el resultado viene vacío: la operación debe reintentarse.
+     * 
+     * @param idUsuario ID del usuario
+     * @param ahora Fecha de la operación
+     * @return ID y versión del carrito, vacío si se creó concurrentemente
+     */
+    @Query(value = "WITH nuevo AS (INSERT INTO carritos (id_usuario, subtotal, descuento_total, impuestos, total, " +
+           "cantidad_items, version, fecha_creacion, fecha_modificacion) " +
+           "VALUES (:idUsuario, 0, 0, 0, 0, 0, 0, :ahora, :ahora) " +
+           "ON CONFLICT (id_usuario) DO NOTHING RETURNING id_carrito, version) " +
+           "SELECT id_carrito AS \"idCarrito\", version AS \"version\" FROM nuevo UNION ALL " +
+           "SELECT id_carrito, version FROM carritos WHERE id_usuario = :idUsuario", nativeQuery = true)
+    Optional<VersionCarrito> obtenerOCrearVersion(@Param("idUsuario") Long idUsuario, @Param("ahora") LocalDateTime ahora);
+
+    /**
+     * Recalcula los totales del carrito a partir de sus items, con las mismas
+     * reglas que {@link Precios}, e incrementa su versión, solo si el carrito sigue
+     * en la versión leída al empezar la operación (bloqueo optimista). Si otra
+     * transacción lo modificó entretanto, no se actualiza ninguna fila.
+     * Devuelve la fila actualizada (RETURNING) para no volver a leerla; como
+     * no es una consulta @Modifying, el carrito no debe estar ya cargado en la
+     * sesión, o Hibernate devolvería la instancia existente sin refrescarla.
+     * 
+     * @param idCarrito ID del carrito
+     * @param version Versión leída del carrito
+     * @param ahora Fecha de la operación
+     * @return Carrito con los totales recalculados, vacío si la versión cambió
+     */
+    // Redondeo de impuestos igual que Precios.totales (ROUND redondea la mitad lejos de cero);
+    // si cambia, debe cambiar a la vez en Precios
+    @Query(value = "UPDATE carritos c SET " +
+           "subtotal = t.subtotal, " +
+           "descuento_total = t.descuento, " +
+           "impuestos = ROUND((t.subtotal - t.descuento) * " + Precios.TASA_IMPUESTOS + ", 2), " +
+           "total = t.subtotal - t.descuento + ROUND((t.subtotal - t.descuento) * " + Precios.TASA_IMPUESTOS + ", 2), " +
+           "cantidad_items = t.cantidad, " +
+           "version = COALESCE(c.version, 0) + 1, " +
+           "fecha_modificacion = :ahora " +
+           "FROM (SELECT COALESCE(SUM(ci.precio_unitario * ci.cantidad), 0) AS subtotal, COALESCE(SUM(ci.descuento), 0) AS descuento, " +
+           "COALESCE(SUM(ci.cantidad), 0) AS cantidad FROM carrito_items ci WHERE ci.id_carrito = :idCarrito) t " +
+           "WHERE c.id_carrito = :idCarrito AND c.version = :version RETURNING c.*", nativeQuery = true)
+    Optional<Carrito> recalcularTotales(@Param("idCarrito") Long idCarrito, @Param("version") Long version,
+                                        @Param("ahora") LocalDateTime ahora);
+
     /**
      * Verifica si existe un carrito para un usuario
      * 
@@ -42,14 +107,14 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     boolean existsByIdUsuario(Long idUsuario);
 
     /**
-     * Busca carritos modificados después de una fecha específica
-     * Útil para procesos de limpieza o análisis
+     * Asigna la versión 0 a los carritos guardados sin versión, anteriores al
+     * bloqueo optimista: Hibernate no puede incrementar una versión nula
      * 
-     * @param fecha Fecha de referencia
-     * @return Lista de carritos modificados después de la fecha
+     * @return Cantidad de carritos actualizados
      */
-    @Query("SELECT c FROM Carrito c WHERE c.fechaModificacion > :fecha")
-    List<Carrito> findCarritosModificadosDespues(@Param("fecha") LocalDateTime fecha);
+    @Modifying
+    @Query("UPDATE Carrito c SET c.version = 0 WHERE c.version IS NULL")
+    int inicializarVersionesNulas();
 
     /**
      * Busca carritos con items (no vacíos)
@@ -59,14 +124,6 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     @Query("SELECT c FROM Carrito c WHERE SIZE(c.items) > 0")
     List<Carrito> findCarritosConItems();
 
-    /**
-     * Busca carritos vacíos
-     * 
-     * @return Lista de carritos sin items
-     */
-    @Query("SELECT c FROM Carrito c WHERE SIZE(c.items) = 0")
-    List<Carrito> findCarritosVacios();
-
     /**
      * Cuenta la cantidad de items en un carrito específico
      * 
@@ -77,14 +134,75 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     Integer countItemsByCarritoId(@Param("idCarrito") Long idCarrito);
 
     /**
-     * Busca carritos abandonados (sin modificar en X días)
-     * Útil para estrategias de recuperación de carritos
+     * Obtiene la cantidad de unidades guardada en el carrito de un usuario,
+     * sin cargar el carrito ni sus items
+     * 
+     * @param idUsuario ID del usuario
+     * @return Optional con la cantidad y la versión del carrito
+     */
+    @Query("SELECT new com.example.E_comeerse.dto.CantidadCarritoDto(c.version, c.cantidadItems) " +
+           "FROM Carrito c WHERE c.idUsuario = :idUsuario")
+    Optional<CantidadCarritoDto> findCantidadByIdUsuario(@Param("idUsuario") Long idUsuario);
+
+    /**
+     * Datos de un carrito para las tareas de mantenimiento, leídos sin cargar la entidad
+     */
+    interface ResumenCarrito {
+        Long getIdCarrito();
+        Long getIdUsuario();
+        BigDecimal getTotal();
+        Integer getCantidadItems();
+        LocalDateTime getFechaModificacion();
+    }
+
+    /**
+     * Elimina un lote de carritos vacíos sin modificar desde limiteVacios y de carritos
+     * con items sin modificar desde limiteExpirados, junto con sus items.
+     * Recorre los carritos por (fecha_modificacion, id_carrito) a partir del último
+     * carrito del lote anterior, y omite las filas bloqueadas por otra transacción
+     * (SKIP LOCKED) en lugar de esperarlas; se eliminarán en la siguiente ejecución.
+     * 
+     * @param desdeFecha Fecha de modificación del último carrito del lote anterior
+     * @param desdeId ID del último carrito del lote anterior
+     * @param limiteVacios Fecha límite de inactividad de los carritos vacíos
+     * @param limiteExpirados Fecha límite de inactividad de los carritos con items (anterior a limiteVacios)
+     * @param lote Cantidad máxima de carritos a eliminar
+     * @return Carritos eliminados, en cualquier orden
+     */
+    @Query(value = "WITH objetivo AS (SELECT id_carrito FROM carritos " +
+           "WHERE (fecha_modificacion, id_carrito) > (:desdeFecha, :desdeId) " +
+           "AND fecha_modificacion < :limiteVacios " +
+           "AND (cantidad_items = 0 OR fecha_modificacion < :limiteExpirados) " +
+           "ORDER BY fecha_modificacion, id_carrito LIMIT :lote FOR UPDATE SKIP LOCKED), " +
+           "items AS (DELETE FROM carrito_items WHERE id_carrito IN (SELECT id_carrito FROM objetivo)) " +
+           "DELETE FROM carritos c USING objetivo o WHERE c.id_carrito = o.id_carrito " +
+           "RETURNING c.id_carrito AS \"idCarrito\", c.id_usuario AS \"idUsuario\", c.total AS \"total\", " +
+           "c.cantidad_items AS \"cantidadItems\", c.fecha_modificacion AS \"fechaModificacion\"", nativeQuery = true)
+    List<ResumenCarrito> purgarLote(@Param("desdeFecha") LocalDateTime desdeFecha, @Param("desdeId") Long desdeId,
+                                    @Param("limiteVacios") LocalDateTime limiteVacios,
+                                    @Param("limiteExpirados") LocalDateTime limiteExpirados,
+                                    @Param("lote") int lote);
+
+    /**
+     * Busca un lote de carritos con items cuya última modificación está antes de
+     * hasta, continuando desde el último carrito del lote anterior en el orden
+     * (fecha_modificacion, id_carrito). No bloquea filas.
      * 
-     * @param fecha Fecha límite de abandono
-     * @return Lista de carritos abandonados
+     * @param desdeFecha Fecha de modificación del último carrito del lote anterior (o inicio de la ventana)
+     * @param desdeId ID del último carrito del lote anterior (0 al empezar)
+     * @param hasta Fecha límite, exclusiva
+     * @param lote Cantidad máxima de carritos
+     * @return Carritos ordenados por fecha de modificación e ID
      */
-    @Query("SELECT c FROM Carrito c WHERE c.fechaModificacion < :fecha AND SIZE(c.items) > 0")
-    List<Carrito> findCarritosAbandonados(@Param("fecha") LocalDateTime fecha);
+    @Query(value = "SELECT id_carrito AS \"idCarrito\", id_usuario AS \"idUsuario\", total AS \"total\", " +
+           "cantidad_items AS \"cantidadItems\", fecha_modificacion AS \"fechaModificacion\" FROM carritos " +
+           "WHERE (fecha_modificacion, id_carrito) > (:desdeFecha, :desdeId) " +
+           "AND fecha_modificacion < :hasta AND cantidad_items > 0 " +
+           "ORDER BY fecha_modificacion, id_carrito LIMIT :lote", nativeQuery = true)
+    List<ResumenCarrito> findConItemsModificadosAntesDe(@Param("desdeFecha") LocalDateTime desdeFecha,
+                                                        @Param("desdeId") Long desdeId,
+                                                        @Param("hasta") LocalDateTime hasta,
+                                                        @Param("lote") int lote);
 
     /**
      * Elimina el carrito de un usuario específico
@@ -0,0 +1,33 @@
+package com.example.E_comeerse.repository;
+
+import com.example.E_comeerse.dto.VentasProductoDto;
+import com.example.E_comeerse.model.PedidoItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio para las líneas de los pedidos.
+ */
+@Repository
+public interface PedidoItemRepository extends JpaRepository<PedidoItem, Long> {
+
+    List<PedidoItem> findByIdPedidoOrderByIdItemPedido(Long idPedido);
+
+    /**
+     * Unidades e importe vendidos por producto en los pedidos no cancelados del
+     * período [desde, hasta), de mayor a menor importe
+     */
+    @Query("SELECT new com.example.E_comeerse.dto.VentasProductoDto("
+           + "i.idProducto, MAX(i.nombreProducto), SUM(i.cantidad), SUM(i.subtotal), COUNT(DISTINCT i.idPedido)) "
+           + "FROM PedidoItem i JOIN Pedido p ON p.id = i.idPedido WHERE "
+           + "p.fechaCreacion >= :desde AND p.fechaCreacion < :hasta AND "
+           + "(p.estadoPedido IS NULL OR p.estadoPedido <> com.example.E_comeerse.model.Pedido.EstadoPedido.CANCELADO) "
+           + "GROUP BY i.idProducto ORDER BY SUM(i.subtotal) DESC")
+    List<VentasProductoDto> sumarVentasPorProducto(@Param("desde") LocalDateTime desde,
+                                                   @Param("hasta") LocalDateTime hasta);
+}
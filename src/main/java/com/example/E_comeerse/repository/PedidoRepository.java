@@ -2,7 +2,10 @@ package com.example.E_comeerse.repository;
 
 import com.example.E_comeerse.model.Pedido;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -10,6 +13,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
@@ -45,6 +49,24 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
         @Param("estadoPago") String estadoPago
     );
     
+    // Cursor de solo avance para exportaciones; debe consumirse dentro de una transacción y cerrarse
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Pedido p WHERE " +
+           "(:desde IS NULL OR p.fechaCreacion >= :desde) AND " +
+           "(:hasta IS NULL OR p.fechaCreacion < :hasta) AND " +
+           "(:estadoPedido IS NULL OR p.estadoPedido = :estadoPedido) AND " +
+           "(:estadoPago IS NULL OR p.estadoPago = :estadoPago) " +
+           "ORDER BY p.id")
+    Stream<Pedido> streamParaExportar(
+        @Param("desde") LocalDateTime desde,
+        @Param("hasta") LocalDateTime hasta,
+        @Param("estadoPedido") Pedido.EstadoPedido estadoPedido,
+        @Param("estadoPago") Pedido.EstadoPago estadoPago
+    );
+    
     @Query("SELECT COUNT(p) FROM Pedido p WHERE p.estadoPedido = :estado")
     Long countByEstadoPedido(@Param("estado") Pedido.EstadoPedido estado);
     
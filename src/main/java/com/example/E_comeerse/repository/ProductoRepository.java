@@ -1,33 +1,112 @@
 package com.example.E_comeerse.repository;
 
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import com.example.E_comeerse.dto.ProductoResumenDto;
 import com.example.E_comeerse.model.Producto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad Producto.
  */
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto>,
+        ProductoRepositoryCustom {
+
     // TODO: Agregar métodos personalizados aquí
 
+    /**
+     * Proyección por constructor al modelo de listado
+     */
+    String SELECT_RESUMEN = "SELECT new com.example.E_comeerse.dto.ProductoResumenDto("
+            + "p.id, p.nombre, SUBSTRING(p.descripcion, 1, " + ProductoResumenDto.LONGITUD_DESCRIPCION_CORTA + "), "
+            + "p.precio, p.cantidadStock, p.idCategoria, p.categoria, p.codigoProducto, p.urlImagen, "
+            + "p.destacado, p.fechaCreacion) FROM Producto p ";
+
     List<Producto> findByIdCategoria(Long idCategoria);
 
+    @Query(SELECT_RESUMEN + "WHERE p.idCategoria = :idCategoria")
+    List<ProductoResumenDto> findResumenesByIdCategoria(@Param("idCategoria") Long idCategoria);
+
+    @Query(SELECT_RESUMEN + "WHERE p.id IN :ids")
+    List<ProductoResumenDto> findResumenesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_RESUMEN + "WHERE LOWER(p.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    List<ProductoResumenDto> findResumenesByNombreContaining(@Param("nombre") String nombre);
+
+    /**
+     * Proyección por constructor al modelo de detalle
+     */
+    String SELECT_DETALLE = "SELECT new com.example.E_comeerse.dto.ProductoDetalleDto("
+            + "p.id, p.nombre, p.descripcion, p.precio, p.cantidadStock, p.idCategoria, p.categoria, "
+            + "p.codigoProducto, p.urlImagen, p.destacado, p.fechaCreacion, p.fechaModificacion) FROM Producto p ";
+
+    @Query(SELECT_DETALLE + "WHERE p.id = :id")
+    Optional<ProductoDetalleDto> findDetalleById(@Param("id") Long id);
+
+    /**
+     * Cursor de solo avance para exportar el catálogo; debe consumirse dentro de una
+     * transacción y cerrarse al terminar. Las filas llegan de la base de datos por bloques.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_DETALLE + "WHERE (:idCategoria IS NULL OR p.idCategoria = :idCategoria) "
+            + "AND (:desde IS NULL OR p.fechaModificacion >= :desde) "
+            + "AND (:hasta IS NULL OR p.fechaModificacion < :hasta) ORDER BY p.id")
+    Stream<ProductoDetalleDto> streamDetallesParaExportar(@Param("idCategoria") Long idCategoria,
+                                                          @Param("desde") LocalDateTime desde,
+                                                          @Param("hasta") LocalDateTime hasta);
+
     @Query("SELECT p FROM Producto p WHERE LOWER(p.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
     List<Producto> findByNombreContainingIgnoreCase(@Param("nombre") String nombre);
 
     List<Producto> findByCodigoProducto(String codigoProducto);
 
+    List<Producto> findByCodigoProductoIn(Collection<String> codigos);
+
     @Query("SELECT p FROM Producto p WHERE p.cantidadStock > 0")
     List<Producto> findProductosEnStock();
 
-    @Query("SELECT p FROM Producto p WHERE p.destacado = true ORDER BY p.fechaCreacion DESC")
-    List<Producto> findProductosDestacados();
+    @Query(SELECT_RESUMEN + "WHERE p.destacado = true ORDER BY p.fechaCreacion DESC")
+    List<ProductoResumenDto> findResumenesDestacados(Pageable pageable);
+
+    /**
+     * Lote de productos con URLs de imagen guardadas antes de normalizarse al escribir,
+     * continuando después del último ID del lote anterior
+     */
+    @Query("SELECT p FROM Producto p WHERE p.id > :desdeId AND (p.urlImagen LIKE 'http://localhost:8080/uploads/%' "
+            + "OR (p.urlImagen <> '' AND p.urlImagen NOT LIKE '/%' AND p.urlImagen NOT LIKE 'http%')) ORDER BY p.id")
+    List<Producto> findConUrlImagenSinNormalizar(@Param("desdeId") Long desdeId, Pageable pageable);
+
+    /**
+     * Completa la fecha de creación de los productos guardados sin ella, con su
+     * fecha de modificación o la fecha actual
+     *
+     * @return Cantidad de productos actualizados
+     */
+    @Modifying
+    @Query(value = "UPDATE productos SET fecha_creacion = COALESCE(fecha_modificacion, CURRENT_TIMESTAMP) "
+            + "WHERE fecha_creacion IS NULL", nativeQuery = true)
+    int completarFechasCreacionNulas();
 
-    @Query("SELECT p FROM Producto p WHERE p.destacado = true ORDER BY p.fechaCreacion DESC")
-    List<Producto> findTop3ByDestacadoTrueOrderByFechaCreacionDesc();
+    /**
+     * Declara NOT NULL la columna fecha_creacion en tablas creadas antes de que lo fuera;
+     * ddl-auto=update no cambia la nulabilidad de columnas existentes
+     */
+    @Modifying
+    @Query(value = "ALTER TABLE productos ALTER COLUMN fecha_creacion SET NOT NULL", nativeQuery = true)
+    void exigirFechaCreacion();
 }
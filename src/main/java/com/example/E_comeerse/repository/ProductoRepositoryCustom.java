@@ -0,0 +1,33 @@
+package com.example.E_comeerse.repository;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.model.Producto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultas dinámicas de Producto que devuelven proyecciones en lugar de entidades.
+ */
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Lista resúmenes de productos por keyset: devuelve los primeros que siguen
+     * a los valores de despuesDe en el orden indicado.
+     *
+     * @param filtro filtros a aplicar
+     * @param sort orden total (debe terminar en una clave única)
+     * @param despuesDe valores de las propiedades del sort del último elemento entregado, o null para empezar
+     * @param limite cantidad máxima de resultados
+     */
+    List<ProductoResumenDto> buscarResumenesDespuesDe(Specification<Producto> filtro, Sort sort,
+                                                      Map<String, Object> despuesDe, int limite);
+
+    /**
+     * Lista resúmenes de productos paginados por offset
+     */
+    List<ProductoResumenDto> buscarResumenes(Specification<Producto> filtro, Pageable pageable);
+}
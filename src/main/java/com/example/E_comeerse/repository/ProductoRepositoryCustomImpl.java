@@ -0,0 +1,111 @@
+package com.example.E_comeerse.repository;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.model.Producto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementación de las consultas con proyección de Producto mediante Criteria API.
+ * Solo se seleccionan las columnas del resumen, así que Hibernate no hidrata
+ * entidades ni las registra en el contexto de persistencia.
+ */
+public class ProductoRepositoryCustomImpl implements ProductoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductoResumenDto> buscarResumenesDespuesDe(Specification<Producto> filtro, Sort sort,
+                                                             Map<String, Object> despuesDe, int limite) {
+        return crearConsulta(filtro, sort, despuesDe)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+
+    @Override
+    public List<ProductoResumenDto> buscarResumenes(Specification<Producto> filtro, Pageable pageable) {
+        if (pageable.getOffset() > Integer.MAX_VALUE) {
+            // La página está más allá de cualquier resultado posible
+            return List.of();
+        }
+        return crearConsulta(filtro, pageable.getSort(), null)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    private TypedQuery<ProductoResumenDto> crearConsulta(Specification<Producto> filtro, Sort sort,
+                                                         Map<String, Object> despuesDe) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductoResumenDto> query = cb.createQuery(ProductoResumenDto.class);
+        Root<Producto> root = query.from(Producto.class);
+
+        query.select(cb.construct(ProductoResumenDto.class,
+                root.get("id"),
+                root.get("nombre"),
+                cb.substring(root.get("descripcion"), 1, ProductoResumenDto.LONGITUD_DESCRIPCION_CORTA),
+                root.get("precio"),
+                root.get("cantidadStock"),
+                root.get("idCategoria"),
+                root.get("categoria"),
+                root.get("codigoProducto"),
+                root.get("urlImagen"),
+                root.get("destacado"),
+                root.get("fechaCreacion")));
+
+        List<Predicate> condiciones = new ArrayList<>();
+        Predicate predicadoFiltro = filtro.toPredicate(root, query, cb);
+        if (predicadoFiltro != null) {
+            condiciones.add(predicadoFiltro);
+        }
+        if (despuesDe != null) {
+            condiciones.add(posteriorA(cb, root, sort, despuesDe));
+        }
+        query.where(condiciones.toArray(new Predicate[0]));
+
+        List<Order> orden = new ArrayList<>();
+        for (Sort.Order o : sort) {
+            orden.add(o.isAscending() ? cb.asc(root.get(o.getProperty())) : cb.desc(root.get(o.getProperty())));
+        }
+        query.orderBy(orden);
+
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * Condición de keyset: (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...,
+     * con "menor que" en las claves descendentes. Todas las claves de orden son
+     * NOT NULL, así la condición y el ORDER BY usan los índices (clave, id)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate posteriorA(CriteriaBuilder cb, Root<Producto> root, Sort sort, Map<String, Object> despuesDe) {
+        List<Predicate> alternativas = new ArrayList<>();
+        List<Predicate> igualesPrevios = new ArrayList<>();
+        for (Sort.Order o : sort) {
+            Expression<Comparable> propiedad = root.get(o.getProperty());
+            Comparable valor = (Comparable) despuesDe.get(o.getProperty());
+
+            List<Predicate> alternativa = new ArrayList<>(igualesPrevios);
+            alternativa.add(o.isAscending() ? cb.greaterThan(propiedad, valor) : cb.lessThan(propiedad, valor));
+            alternativas.add(cb.and(alternativa.toArray(new Predicate[0])));
+
+            igualesPrevios.add(cb.equal(propiedad, valor));
+        }
+        return cb.or(alternativas.toArray(new Predicate[0]));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.E_comeerse.repository;
+
+import com.example.E_comeerse.model.Producto;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+
+/**
+ * Filtros reutilizables sobre la entidad Producto para consultas dinámicas.
+ */
+public final class ProductoSpecifications {
+
+    private ProductoSpecifications() {
+    }
+
+    /**
+     * Especificación neutra, punto de partida para combinar filtros
+     */
+    public static Specification<Producto> todos() {
+        return (root, query, cb) -> cb.conjunction();
+    }
+
+    public static Specification<Producto> deCategoria(Long idCategoria) {
+        return (root, query, cb) -> cb.equal(root.get("idCategoria"), idCategoria);
+    }
+
+    public static Specification<Producto> conNombreCategoria(String categoria) {
+        return (root, query, cb) -> cb.equal(cb.lower(root.get("categoria")), categoria.toLowerCase());
+    }
+
+    public static Specification<Producto> enStock() {
+        return (root, query, cb) -> cb.greaterThan(root.get("cantidadStock"), 0);
+    }
+
+    public static Specification<Producto> sinStock() {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("cantidadStock"), 0);
+    }
+
+    public static Specification<Producto> precioDesde(BigDecimal precioMin) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("precio"), precioMin);
+    }
+
+    public static Specification<Producto> precioHasta(BigDecimal precioMax) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("precio"), precioMax);
+    }
+
+    public static Specification<Producto> destacado(boolean destacado) {
+        return (root, query, cb) -> cb.equal(root.get("destacado"), destacado);
+    }
+}
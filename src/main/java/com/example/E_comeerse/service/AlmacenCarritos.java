@@ -0,0 +1,422 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Carrito;
+import com.example.E_comeerse.model.CarritoItem;
+import com.example.E_comeerse.repository.CarritoRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Carritos vivos en memoria con escritura diferida a las tablas carritos y carrito_items.
+ * Cada carrito se guarda por usuario como una copia desacoplada de la sesión JPA y se
+ * modifica bajo el bloqueo de su franja (los usuarios se reparten entre un número fijo
+ * de bloqueos). Los carritos modificados se marcan como pendientes y se escriben por
+ * lotes cada pocos milisegundos: varias modificaciones del mismo carrito entre dos
+ * escrituras se guardan una sola vez.
+ *
+ * Cada escritura lleva la versión del carrito y solo reemplaza filas con una versión
+ * menor, así una escritura que llega tarde nunca pisa un estado más nuevo. Supone que
+ * los carritos de un usuario se atienden siempre desde la misma instancia.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "carrito.escritura-diferida", name = "habilitada", havingValue = "true")
+@RequiredArgsConstructor
+public class AlmacenCarritos {
+
+    private static final int FRANJAS = 256;
+
+    private static final String SQL_CARRITO = "INSERT INTO carritos (id_usuario, subtotal, descuento_total, impuestos, " +
+            "total, cantidad_items, version, fecha_creacion, fecha_modificacion) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id_usuario) DO UPDATE SET subtotal = EXCLUDED.subtotal, " +
+            "descuento_total = EXCLUDED.descuento_total, impuestos = EXCLUDED.impuestos, total = EXCLUDED.total, " +
+            "cantidad_items = EXCLUDED.cantidad_items, version = EXCLUDED.version, " +
+            "fecha_modificacion = EXCLUDED.fecha_modificacion " +
+            "WHERE COALESCE(carritos.version, -1) < EXCLUDED.version";
+
+    private static final String SQL_ELIMINAR_ITEMS = "DELETE FROM carrito_items ci USING carritos c " +
+            "WHERE ci.id_carrito = c.id_carrito AND c.id_usuario = ? AND NOT (ci.id_producto = ANY (?))";
+
+    private static final String SQL_ITEM = "INSERT INTO carrito_items (id_carrito, id_producto, nombre_producto, " +
+            "url_imagen, precio_unitario, cantidad, subtotal, descuento, porcentaje_descuento, fecha_agregado, " +
+            "fecha_modificacion) SELECT c.id_carrito, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? FROM carritos c WHERE c.id_usuario = ? " +
+            "ON CONFLICT (id_carrito, id_producto) DO UPDATE SET nombre_producto = EXCLUDED.nombre_producto, " +
+            "url_imagen = EXCLUDED.url_imagen, precio_unitario = EXCLUDED.precio_unitario, " +
+            "cantidad = EXCLUDED.cantidad, subtotal = EXCLUDED.subtotal, descuento = EXCLUDED.descuento, " +
+            "porcentaje_descuento = EXCLUDED.porcentaje_descuento, fecha_modificacion = EXCLUDED.fecha_modificacion, " +
+            "version = carrito_items.version + 1";
+
+    private static final String SQL_IDS = "SELECT c.id_usuario, c.id_carrito, ci.id_producto, ci.id_item " +
+            "FROM carritos c LEFT JOIN carrito_items ci ON ci.id_carrito = c.id_carrito WHERE c.id_usuario = ANY (?)";
+
+    private final CarritoRepository carritoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${carrito.escritura-diferida.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${carrito.escritura-diferida.inactividad:30m}")
+    private Duration inactividad;
+
+    private final Lock[] franjas = crearFranjas();
+    private final Map<Long, Entrada> carritos = new ConcurrentHashMap<>();
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+    // Serializa las escrituras a la base de datos; nunca se toma un bloqueo de franja mientras se tiene
+    private final Lock escritura = new ReentrantLock();
+
+    private static final class Entrada {
+        private final Carrito carrito;
+        private volatile long ultimoAcceso;
+
+        private Entrada(Carrito carrito) {
+            this.carrito = carrito;
+        }
+    }
+
+    private record Instantanea(Long idUsuario, Carrito carrito) {
+    }
+
+    /**
+     * Ejecuta una lectura sobre el carrito del usuario bajo su bloqueo, cargándolo si no está en memoria.
+     * La operación no debe modificar el carrito ni dejar escapar la referencia
+     */
+    public <T> T leer(Long idUsuario, Function<Carrito, T> lectura) {
+        Lock franja = franja(idUsuario);
+        franja.lock();
+        try {
+            return lectura.apply(obtenerEntrada(idUsuario).carrito);
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    /**
+     * Ejecuta una modificación sobre el carrito del usuario bajo su bloqueo. Si la operación
+     * incrementa la versión del carrito, el carrito queda pendiente de escritura
+     */
+    public <T> T modificar(Long idUsuario, Function<Carrito, T> modificacion) {
+        Lock franja = franja(idUsuario);
+        franja.lock();
+        try {
+            Carrito carrito = obtenerEntrada(idUsuario).carrito;
+            Long versionAnterior = carrito.getVersion();
+            T resultado = modificacion.apply(carrito);
+            if (!Objects.equals(versionAnterior, carrito.getVersion())) {
+                pendientes.add(idUsuario);
+            }
+            return resultado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    /**
+     * Escribe el carrito del usuario de inmediato y ejecuta la acción sobre la base de datos
+     * con el carrito bloqueado (por ejemplo, convertirlo en pedido). Si la acción termina bien,
+     * el carrito se quita de memoria y se vuelve a cargar en el siguiente acceso
+     */
+    public <T> T escribirYEjecutar(Long idUsuario, Supplier<T> accion) {
+        Lock franja = franja(idUsuario);
+        franja.lock();
+        try {
+            Entrada entrada = carritos.get(idUsuario);
+            if (entrada != null) {
+                // Se escribe aunque no esté pendiente: una escritura periódica puede haberlo tomado sin terminar
+                pendientes.remove(idUsuario);
+                try {
+                    escribir(List.of(new Instantanea(idUsuario, copiar(entrada.carrito))));
+                } catch (RuntimeException e) {
+                    pendientes.add(idUsuario);
+                    throw e;
+                }
+            }
+            T resultado = accion.get();
+            carritos.remove(idUsuario);
+            return resultado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    /**
+     * Escribe por lotes los carritos pendientes y quita de memoria los que llevan tiempo sin usarse
+     */
+    @Scheduled(fixedDelayString = "${carrito.escritura-diferida.intervalo-ms:1000}")
+    public void escribirPendientes() {
+        List<Instantanea> lote = new ArrayList<>(Math.min(tamanoLote, pendientes.size()));
+        for (Long idUsuario : pendientes) {
+            Instantanea instantanea = tomarInstantanea(idUsuario);
+            if (instantanea != null) {
+                lote.add(instantanea);
+            }
+            if (lote.size() == tamanoLote) {
+                escribirReintentando(lote);
+                lote = new ArrayList<>(tamanoLote);
+            }
+        }
+        if (!lote.isEmpty()) {
+            escribirReintentando(lote);
+        }
+        descartarInactivos();
+    }
+
+    @PreDestroy
+    public void alDetener() {
+        log.info("Escribiendo {} carritos pendientes antes de detener la aplicación", pendientes.size());
+        escribirPendientes();
+    }
+
+    private Instantanea tomarInstantanea(Long idUsuario) {
+        Lock franja = franja(idUsuario);
+        franja.lock();
+        try {
+            pendientes.remove(idUsuario);
+            Entrada entrada = carritos.get(idUsuario);
+            return entrada != null ? new Instantanea(idUsuario, copiar(entrada.carrito)) : null;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    private void escribirReintentando(List<Instantanea> lote) {
+        try {
+            escribir(lote);
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente ronda con el estado más reciente de cada carrito
+            log.error("Error escribiendo {} carritos, se reintentará: {}", lote.size(), e.getMessage(), e);
+            lote.forEach(instantanea -> pendientes.add(instantanea.idUsuario()));
+        }
+    }
+
+    private void escribir(List<Instantanea> lote) {
+        long inicio = System.currentTimeMillis();
+        List<Instantanea> escritas;
+        Map<Long, List<Object[]>> ids;
+        escritura.lock();
+        try {
+            escritas = transactionTemplate.execute(estado -> escribirLote(lote));
+            ids = leerIdsNuevos(escritas);
+        } finally {
+            escritura.unlock();
+        }
+        asignarIds(ids);
+        log.debug("Escritos {} de {} carritos en {} ms", escritas.size(), lote.size(),
+                System.currentTimeMillis() - inicio);
+    }
+
+    private List<Instantanea> escribirLote(List<Instantanea> lote) {
+        int[] filas = jdbcTemplate.batchUpdate(SQL_CARRITO, lote, lote.size(), (ps, instantanea) -> {
+            Carrito carrito = instantanea.carrito();
+            ps.setLong(1, instantanea.idUsuario());
+            ps.setBigDecimal(2, carrito.getSubtotal());
+            ps.setBigDecimal(3, carrito.getDescuentoTotal());
+            ps.setBigDecimal(4, carrito.getImpuestos());
+            ps.setBigDecimal(5, carrito.getTotal());
+            ps.setInt(6, carrito.getCantidadItems());
+            ps.setLong(7, carrito.getVersion());
+            ps.setTimestamp(8, marca(carrito.getFechaCreacion()));
+            ps.setTimestamp(9, marca(carrito.getFechaModificacion()));
+        })[0];
+
+        // Los carritos cuya fila ya tenía una versión igual o más nueva no se tocan
+        List<Instantanea> escritas = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            if (filas[i] != 0) {
+                escritas.add(lote.get(i));
+            }
+        }
+        if (escritas.isEmpty()) {
+            return escritas;
+        }
+
+        jdbcTemplate.batchUpdate(SQL_ELIMINAR_ITEMS, escritas, escritas.size(), (ps, instantanea) -> {
+            Object[] productos = instantanea.carrito().getItems().stream().map(CarritoItem::getIdProducto).toArray();
+            ps.setLong(1, instantanea.idUsuario());
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", productos));
+        });
+
+        List<Object[]> items = new ArrayList<>();
+        for (Instantanea instantanea : escritas) {
+            for (CarritoItem item : instantanea.carrito().getItems()) {
+                items.add(new Object[]{item.getIdProducto(), item.getNombreProducto(), item.getUrlImagen(),
+                        item.getPrecioUnitario(), item.getCantidad(), item.getSubtotal(), item.getDescuento(),
+                        item.getPorcentajeDescuento(), marca(item.getFechaAgregado()),
+                        marca(item.getFechaModificacion()), instantanea.idUsuario()});
+            }
+        }
+        if (!items.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_ITEM, items);
+        }
+        return escritas;
+    }
+
+    // IDs generados para los carritos e items que se escribieron por primera vez
+    private Map<Long, List<Object[]>> leerIdsNuevos(List<Instantanea> escritas) {
+        Object[] usuarios = escritas.stream()
+                .filter(instantanea -> instantanea.carrito().getIdCarrito() == null
+                        || instantanea.carrito().getItems().stream().anyMatch(item -> item.getIdItem() == null))
+                .map(Instantanea::idUsuario)
+                .toArray();
+        Map<Long, List<Object[]>> ids = new HashMap<>();
+        if (usuarios.length == 0) {
+            return ids;
+        }
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(SQL_IDS);
+            ps.setArray(1, con.createArrayOf("bigint", usuarios));
+            return ps;
+        }, rs -> {
+            ids.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>())
+                    .add(new Object[]{rs.getLong(2), rs.getObject(3, Long.class), rs.getObject(4, Long.class)});
+        });
+        return ids;
+    }
+
+    private void asignarIds(Map<Long, List<Object[]>> ids) {
+        ids.forEach((idUsuario, filas) -> {
+            Lock franja = franja(idUsuario);
+            franja.lock();
+            try {
+                Entrada entrada = carritos.get(idUsuario);
+                if (entrada == null) {
+                    return;
+                }
+                Map<Long, Long> itemsPorProducto = new HashMap<>();
+                for (Object[] fila : filas) {
+                    entrada.carrito.setIdCarrito((Long) fila[0]);
+                    if (fila[1] != null) {
+                        itemsPorProducto.put((Long) fila[1], (Long) fila[2]);
+                    }
+                }
+                entrada.carrito.getItems().stream()
+                        .filter(item -> item.getIdItem() == null)
+                        .forEach(item -> item.setIdItem(itemsPorProducto.get(item.getIdProducto())));
+            } finally {
+                franja.unlock();
+            }
+        });
+    }
+
+    private void descartarInactivos() {
+        long limite = System.currentTimeMillis() - inactividad.toMillis();
+        carritos.forEach((idUsuario, entrada) -> {
+            if (entrada.ultimoAcceso >= limite || pendientes.contains(idUsuario)) {
+                return;
+            }
+            Lock franja = franja(idUsuario);
+            franja.lock();
+            try {
+                if (entrada.ultimoAcceso < limite && !pendientes.contains(idUsuario)) {
+                    carritos.remove(idUsuario, entrada);
+                }
+            } finally {
+                franja.unlock();
+            }
+        });
+    }
+
+    // Debe llamarse con el bloqueo de la franja del usuario
+    private Entrada obtenerEntrada(Long idUsuario) {
+        Entrada entrada = carritos.get(idUsuario);
+        if (entrada == null) {
+            entrada = new Entrada(cargar(idUsuario));
+            carritos.put(idUsuario, entrada);
+        }
+        entrada.ultimoAcceso = System.currentTimeMillis();
+        return entrada;
+    }
+
+    private Carrito cargar(Long idUsuario) {
+        return carritoRepository.findByIdUsuario(idUsuario)
+                .map(carrito -> {
+                    Carrito copia = copiar(carrito);
+                    // La sesión de la petición no debe conservar una instancia que la escritura diferida dejará vieja
+                    if (entityManager.contains(carrito)) {
+                        entityManager.detach(carrito);
+                    }
+                    return copia;
+                })
+                .orElseGet(() -> {
+                    Carrito nuevo = new Carrito(idUsuario);
+                    LocalDateTime ahora = LocalDateTime.now();
+                    nuevo.setFechaCreacion(ahora);
+                    nuevo.setFechaModificacion(ahora);
+                    return nuevo;
+                });
+    }
+
+    /**
+     * Copia un carrito y sus items en objetos nuevos, fuera de cualquier sesión JPA
+     */
+    static Carrito copiar(Carrito origen) {
+        Carrito copia = new Carrito(origen.getIdUsuario());
+        copia.setIdCarrito(origen.getIdCarrito());
+        copia.setVersion(origen.getVersion() != null ? origen.getVersion() : 0L);
+        copia.setFechaCreacion(origen.getFechaCreacion());
+        copia.setFechaModificacion(origen.getFechaModificacion());
+        for (CarritoItem item : origen.getItems()) {
+            CarritoItem itemCopia = new CarritoItem();
+            itemCopia.setIdItem(item.getIdItem());
+            itemCopia.setCarrito(copia);
+            itemCopia.setIdProducto(item.getIdProducto());
+            itemCopia.setNombreProducto(item.getNombreProducto());
+            itemCopia.setUrlImagen(item.getUrlImagen());
+            itemCopia.setPrecioUnitario(item.getPrecioUnitario());
+            itemCopia.setCantidad(item.getCantidad());
+            itemCopia.setSubtotal(item.getSubtotal());
+            itemCopia.setDescuento(item.getDescuento());
+            itemCopia.setPorcentajeDescuento(item.getPorcentajeDescuento());
+            itemCopia.setFechaAgregado(item.getFechaAgregado());
+            itemCopia.setFechaModificacion(item.getFechaModificacion());
+            copia.getItems().add(itemCopia);
+        }
+        copia.calcularTotales();
+        return copia;
+    }
+
+    private static Timestamp marca(LocalDateTime fecha) {
+        return fecha != null ? Timestamp.valueOf(fecha) : null;
+    }
+
+    private Lock franja(Long idUsuario) {
+        return franjas[Math.floorMod(idUsuario.hashCode(), FRANJAS)];
+    }
+
+    private static Lock[] crearFranjas() {
+        Lock[] franjas = new Lock[FRANJAS];
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        return franjas;
+    }
+}
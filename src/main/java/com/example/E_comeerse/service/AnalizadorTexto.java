@@ -0,0 +1,84 @@
+package com.example.E_comeerse.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Analizador de texto para el índice de búsqueda del catálogo.
+ * Normaliza a minúsculas, elimina tildes y diéresis (búsqueda insensible a
+ * acentos en español), separa en palabras, descarta palabras vacías y reduce
+ * plurales simples, de forma que "Audífonos" y "audifono" produzcan el mismo término.
+ */
+public final class AnalizadorTexto {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9ñ]+");
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los",
+            "o", "para", "por", "sin", "su", "sus", "un", "una", "unos", "unas", "y"
+    );
+
+    private AnalizadorTexto() {
+    }
+
+    /**
+     * Pasa a minúsculas y elimina los diacríticos, conservando la ñ
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String minusculas = texto.toLowerCase(Locale.ROOT).replace('ñ', '\u0001');
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(minusculas, Normalizer.Form.NFD)).replaceAll("");
+        return sinAcentos.replace('\u0001', 'ñ');
+    }
+
+    /**
+     * Divide el texto en términos normalizados listos para indexar o consultar
+     */
+    public static List<String> analizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        for (String palabra : SEPARADORES.split(normalizar(texto))) {
+            if (palabra.isEmpty() || PALABRAS_VACIAS.contains(palabra)) {
+                continue;
+            }
+            terminos.add(reducirPlural(palabra));
+        }
+        return terminos;
+    }
+
+    /**
+     * Divide el texto en palabras normalizadas, sin descartar palabras vacías
+     * ni reducir plurales. Se usa para autocompletar sobre el texto tal como se muestra
+     */
+    public static List<String> palabras(String texto) {
+        List<String> palabras = new ArrayList<>();
+        for (String palabra : SEPARADORES.split(normalizar(texto))) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    /**
+     * Reducción ligera de plurales. Se quita la "s" final y luego la "e" de los
+     * plurales en -es, aplicando lo mismo al singular para que ambos coincidan:
+     * "celulares"/"celular" → "celular", "cables"/"cable" → "cabl"
+     */
+    static String reducirPlural(String palabra) {
+        String raiz = palabra;
+        if (raiz.length() > 3 && raiz.endsWith("s") && !Character.isDigit(raiz.charAt(raiz.length() - 2))) {
+            raiz = raiz.substring(0, raiz.length() - 1);
+        }
+        if (raiz.length() > 3 && raiz.endsWith("e") && "lrndzj".indexOf(raiz.charAt(raiz.length() - 2)) >= 0) {
+            raiz = raiz.substring(0, raiz.length() - 1);
+        }
+        return raiz;
+    }
+}
@@ -41,6 +41,7 @@ public class AuthService {
     private final RefreshTokenService refreshTokenService;
     private final PasswordEncoder passwordEncoder;
     private final JwtConfig jwtConfig;
+    private final CarritoInvitadoService carritoInvitadoService;
 
     /**
      * Autenticar usuario y generar tokens JWT
@@ -76,6 +77,8 @@ public class AuthService {
 
             log.info("Usuario autenticado exitosamente: {}", loginRequest.getNombreUsuario());
 
+            fusionarCarritoInvitado(loginRequest.getTokenCarritoInvitado(), usuario.getIdUsuario());
+
             return AuthResponse.builder()
                 .accessToken(accessToken)
                 .refreshToken(refreshToken.getToken())
@@ -169,6 +172,21 @@ public class AuthService {
         return jwtTokenUtil.isTokenValid(token);
     }
 
+    /**
+     * Fusionar el carrito de invitado con el carrito del usuario.
+     * Un error en la fusión no impide iniciar sesión: el carrito de invitado se conserva
+     */
+    private void fusionarCarritoInvitado(String tokenCarrito, Long idUsuario) {
+        if (tokenCarrito == null || tokenCarrito.isBlank()) {
+            return;
+        }
+        try {
+            carritoInvitadoService.fusionar(tokenCarrito, idUsuario);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo fusionar el carrito de invitado del usuario {}: {}", idUsuario, e.getMessage());
+        }
+    }
+
     /**
      * Extraer información del dispositivo
      */
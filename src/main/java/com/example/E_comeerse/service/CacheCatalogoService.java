@@ -0,0 +1,115 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.config.CacheConfig;
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Invalidación precisa de la caché del catálogo ante escrituras de productos.
+ * Solo se descartan las entradas que pueden contener el producto modificado:
+ * su propia entrada, los listados de sus categorías (anterior y nueva) y los
+ * listados de destacados cuando el producto es o era destacado.
+ * Cada invalidación incrementa además la versión del catálogo que usan los ETags.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheCatalogoService {
+
+    private final CacheManager cacheManager;
+    private final VersionCatalogo versionCatalogo;
+
+    /**
+     * Invalida las entradas afectadas por un cambio en un producto.
+     * Dentro de una transacción la invalidación se repite tras el commit,
+     * para que una lectura concurrente no deje en caché el estado anterior.
+     *
+     * @param idProducto ID del producto modificado
+     * @param categorias categorías cuyos listados contienen o contenían el producto
+     * @param afectaDestacados true si el producto es o era destacado
+     */
+    public void invalidarProducto(Long idProducto, Collection<Long> categorias, boolean afectaDestacados) {
+        Runnable invalidacion = () -> {
+            evictar(CacheConfig.PRODUCTOS, idProducto);
+            categorias.stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .forEach(idCategoria -> evictar(CacheConfig.PRODUCTOS_POR_CATEGORIA, idCategoria));
+            if (afectaDestacados) {
+                limpiar(CacheConfig.PRODUCTOS_DESTACADOS);
+                limpiar(CacheConfig.PRODUCTOS_TOP3);
+            }
+            versionCatalogo.incrementar();
+        };
+
+        invalidacion.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidacion.run();
+                }
+            });
+        }
+        log.debug("Caché del catálogo invalidada para producto {}", idProducto);
+    }
+
+    /**
+     * Descarta todas las entradas del catálogo, para escrituras masivas en las
+     * que no se conocen las categorías anteriores de cada producto.
+     */
+    public void invalidarCatalogo() {
+        limpiar(CacheConfig.PRODUCTOS);
+        limpiar(CacheConfig.PRODUCTOS_POR_CATEGORIA);
+        limpiar(CacheConfig.PRODUCTOS_DESTACADOS);
+        limpiar(CacheConfig.PRODUCTOS_TOP3);
+        versionCatalogo.incrementar();
+        log.debug("Caché del catálogo invalidada por completo");
+    }
+
+    /**
+     * Detalles de productos presentes en la caché; los IDs ausentes no aparecen en el resultado
+     */
+    public Map<Long, ProductoDetalleDto> obtenerDetallesEnCache(Collection<Long> ids) {
+        Map<Long, ProductoDetalleDto> encontrados = new HashMap<>();
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        if (cache == null) {
+            return encontrados;
+        }
+        for (Long id : ids) {
+            ProductoDetalleDto detalle = cache.get(id, ProductoDetalleDto.class);
+            if (detalle != null) {
+                encontrados.put(id, detalle);
+            }
+        }
+        return encontrados;
+    }
+
+    private void evictar(String nombreCache, Object clave) {
+        if (clave == null) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(nombreCache);
+        if (cache != null) {
+            cache.evict(clave);
+        }
+    }
+
+    private void limpiar(String nombreCache) {
+        Cache cache = cacheManager.getCache(nombreCache);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
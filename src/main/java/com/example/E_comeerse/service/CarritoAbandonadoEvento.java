@@ -0,0 +1,19 @@
+package com.example.E_comeerse.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Evento publicado una vez por cada carrito con items que pasa el tiempo de
+ * abandono sin modificarse. Lo consumen las campañas de recuperación de carritos
+ * (por ejemplo con un @EventListener que envíe un correo al usuario).
+ *
+ * @param idCarrito ID del carrito
+ * @param idUsuario ID del usuario propietario
+ * @param total Total del carrito
+ * @param cantidadItems Unidades en el carrito
+ * @param fechaModificacion Última modificación del carrito
+ */
+public record CarritoAbandonadoEvento(Long idCarrito, Long idUsuario, BigDecimal total,
+                                      Integer cantidadItems, LocalDateTime fechaModificacion) {
+}
@@ -0,0 +1,279 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.CarritoDto;
+import com.example.E_comeerse.dto.CarritoInvitadoDto;
+import com.example.E_comeerse.dto.OperacionesCarritoRequest;
+import com.example.E_comeerse.model.Carrito;
+import com.example.E_comeerse.model.CarritoItem;
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carritos de visitantes sin sesión. Se guardan solo en memoria, nunca en la base
+ * de datos: un visitante que agrega productos y se va no deja filas que purgar.
+ * La caché está acotada en cantidad de carritos, en productos por carrito y en
+ * tiempo de inactividad, así el tráfico anónimo (incluidos los bots) no puede
+ * crecer sin límite.
+ *
+ * Cada carrito se identifica con un token "id.firma", donde la firma es un HMAC
+ * del id: un token alterado o inventado se trata como si no existiera.
+ * Al iniciar sesión el carrito se fusiona con el del usuario en una sola operación
+ * y se descarta.
+ *
+ * Los carritos son locales a cada instancia: con varias instancias se necesita
+ * afinidad de sesión para las rutas públicas del carrito.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CarritoInvitadoService {
+
+    private static final String ALGORITMO_FIRMA = "HmacSHA256";
+    private static final int BYTES_ID = 16;
+
+    private final ProductoRepository productoRepository;
+    private final CacheCatalogoService cacheCatalogo;
+    private final CarritoService carritoService;
+
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    @Value("${carrito.invitado.secreto:${jwt.secret}}")
+    private String secreto;
+
+    @Value("${carrito.invitado.tamano-maximo:50000}")
+    private long tamanoMaximo;
+
+    @Value("${carrito.invitado.inactividad:2d}")
+    private Duration inactividad;
+
+    @Value("${carrito.invitado.maximo-productos:50}")
+    private int maximoProductos;
+
+    private SecretKeySpec clave;
+    private Cache<String, Carrito> carritos;
+
+    @PostConstruct
+    void inicializar() {
+        clave = new SecretKeySpec(secreto.getBytes(StandardCharsets.UTF_8), ALGORITMO_FIRMA);
+        carritos = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterAccess(inactividad)
+                .build();
+    }
+
+    /**
+     * Obtiene el carrito del token; si el token no es válido o el carrito expiró
+     * devuelve un carrito vacío sin token, sin crear nada
+     *
+     * @param token Token del carrito, puede ser null
+     * @return Token válido (o null) y el carrito
+     */
+    public CarritoInvitadoDto obtener(String token) {
+        Optional<String> id = verificar(token);
+        Carrito copia = id.map(carritos::getIfPresent)
+                .map(this::copiar)
+                .orElseGet(() -> new Carrito(null));
+        return new CarritoInvitadoDto(id.isPresent() ? token : null, convertirADto(copia));
+    }
+
+    /**
+     * Agrega un producto al carrito del token, creando el carrito (y un token
+     * nuevo) si el token no es válido
+     */
+    public CarritoInvitadoDto agregarProducto(String token, Long idProducto, Integer cantidad) {
+        return aplicar(token, new OperacionesCarritoRequest.Operacion(
+                OperacionesCarritoRequest.TipoOperacion.AGREGAR, idProducto, cantidad));
+    }
+
+    /**
+     * Reemplaza la cantidad de un producto que ya está en el carrito del token
+     */
+    public CarritoInvitadoDto actualizarCantidad(String token, Long idProducto, Integer cantidad) {
+        return aplicar(token, new OperacionesCarritoRequest.Operacion(
+                OperacionesCarritoRequest.TipoOperacion.ACTUALIZAR, idProducto, cantidad));
+    }
+
+    /**
+     * Quita un producto del carrito del token
+     */
+    public CarritoInvitadoDto eliminarProducto(String token, Long idProducto) {
+        return aplicar(token, new OperacionesCarritoRequest.Operacion(
+                OperacionesCarritoRequest.TipoOperacion.ELIMINAR, idProducto, null));
+    }
+
+    /**
+     * Descarta el carrito del token; el token sigue siendo válido para un carrito nuevo
+     */
+    public CarritoInvitadoDto vaciar(String token) {
+        Optional<String> id = verificar(token);
+        id.ifPresent(carritos::invalidate);
+        return new CarritoInvitadoDto(id.isPresent() ? token : null, convertirADto(new Carrito(null)));
+    }
+
+    /**
+     * Fusiona el carrito del token con el carrito del usuario y lo descarta. Si la
+     * fusión falla el carrito de invitado se conserva, para poder reintentarla
+     *
+     * @param token Token del carrito de invitado, puede ser null
+     * @param idUsuario ID del usuario que inició sesión
+     * @return Carrito del usuario si había algo que fusionar
+     */
+    public Optional<CarritoDto> fusionar(String token, Long idUsuario) {
+        Optional<String> id = verificar(token);
+        if (id.isEmpty()) {
+            return Optional.empty();
+        }
+        Carrito carrito = carritos.getIfPresent(id.get());
+        if (carrito == null) {
+            return Optional.empty();
+        }
+
+        Map<Long, Integer> cantidades;
+        synchronized (carrito) {
+            cantidades = carrito.getItems().stream()
+                    .collect(Collectors.toMap(CarritoItem::getIdProducto, CarritoItem::getCantidad, Integer::sum));
+        }
+        if (cantidades.isEmpty()) {
+            carritos.invalidate(id.get());
+            return Optional.empty();
+        }
+
+        CarritoDto fusionado = carritoService.fusionarCarrito(idUsuario, cantidades);
+        carritos.invalidate(id.get());
+        log.info("Carrito de invitado con {} productos fusionado en el carrito del usuario {}",
+                cantidades.size(), idUsuario);
+        return Optional.of(fusionado);
+    }
+
+    /**
+     * Aplica una operación al carrito del token. El producto se consulta antes y la
+     * operación se aplica dentro del compute de la caché, que serializa las
+     * modificaciones de un mismo carrito sin bloquear los demás
+     */
+    private CarritoInvitadoDto aplicar(String token, OperacionesCarritoRequest.Operacion operacion) {
+        String id = verificar(token).orElseGet(this::generarId);
+        Map<Long, Producto> productos = productoRepository.findAllById(List.of(operacion.getIdProducto())).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+        Carrito[] copia = new Carrito[1];
+        carritos.asMap().compute(id, (idCarrito, actual) -> {
+            Carrito carrito = actual != null ? actual : new Carrito(null);
+            synchronized (carrito) {
+                boolean nuevo = CarritoServiceImpl.buscarItem(carrito, operacion.getIdProducto()).isEmpty();
+                if (operacion.getTipo() == OperacionesCarritoRequest.TipoOperacion.AGREGAR
+                        && nuevo && carrito.getItems().size() >= maximoProductos) {
+                    throw new IllegalArgumentException(
+                            "El carrito admite hasta " + maximoProductos + " productos distintos");
+                }
+                CarritoServiceImpl.aplicarOperacion(carrito, operacion, productos);
+                LocalDateTime ahora = LocalDateTime.now();
+                CarritoServiceImpl.buscarItem(carrito, operacion.getIdProducto()).ifPresent(item -> {
+                    if (item.getFechaAgregado() == null) {
+                        item.setFechaAgregado(ahora);
+                    }
+                    item.setFechaModificacion(ahora);
+                });
+                if (carrito.getFechaCreacion() == null) {
+                    carrito.setFechaCreacion(ahora);
+                }
+                carrito.setFechaModificacion(ahora);
+                carrito.incrementarVersion();
+                copia[0] = AlmacenCarritos.copiar(carrito);
+            }
+            // Un carrito que quedó vacío no ocupa lugar en la caché
+            return carrito.getItems().isEmpty() ? null : carrito;
+        });
+
+        return new CarritoInvitadoDto(firmar(id), convertirADto(copia[0]));
+    }
+
+    private Carrito copiar(Carrito carrito) {
+        synchronized (carrito) {
+            return AlmacenCarritos.copiar(carrito);
+        }
+    }
+
+    /**
+     * Convierte una copia del carrito a DTO con el stock actual: primero desde la
+     * caché del catálogo y con una sola consulta para los productos que no estén en ella
+     */
+    private CarritoDto convertirADto(Carrito carrito) {
+        List<Long> ids = carrito.getItems().stream()
+                .map(CarritoItem::getIdProducto).distinct().collect(Collectors.toList());
+        Map<Long, Integer> stock = new HashMap<>();
+        if (!ids.isEmpty()) {
+            cacheCatalogo.obtenerDetallesEnCache(ids).forEach((id, detalle) -> stock.put(id, detalle.getCantidadStock()));
+            List<Long> faltantes = ids.stream().filter(id -> !stock.containsKey(id)).collect(Collectors.toList());
+            if (!faltantes.isEmpty()) {
+                productoRepository.findResumenesByIdIn(faltantes)
+                        .forEach(resumen -> stock.put(resumen.getId(), resumen.getCantidadStock()));
+            }
+        }
+        return CarritoServiceImpl.convertirADto(carrito, stock);
+    }
+
+    private String generarId() {
+        byte[] bytes = new byte[BYTES_ID];
+        aleatorio.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String firmar(String id) {
+        return id + "." + calcularFirma(id);
+    }
+
+    /**
+     * Valida la firma del token
+     *
+     * @return ID del carrito si el token es válido
+     */
+    private Optional<String> verificar(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int separador = token.indexOf('.');
+        if (separador <= 0) {
+            return Optional.empty();
+        }
+        String id = token.substring(0, separador);
+        byte[] esperada = calcularFirma(id).getBytes(StandardCharsets.US_ASCII);
+        byte[] recibida = token.substring(separador + 1).getBytes(StandardCharsets.US_ASCII);
+        // Comparación en tiempo constante
+        return MessageDigest.isEqual(esperada, recibida) ? Optional.of(id) : Optional.empty();
+    }
+
+    private String calcularFirma(String id) {
+        try {
+            // Mac no es seguro entre hilos; crear uno por firma es barato frente a la petición
+            Mac mac = Mac.getInstance(ALGORITMO_FIRMA);
+            mac.init(clave);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(id.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el token del carrito", e);
+        }
+    }
+}
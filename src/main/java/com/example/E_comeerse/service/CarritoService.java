@@ -1,9 +1,15 @@
 package com.example.E_comeerse.service;
 
+import com.example.E_comeerse.dto.CarritoDeltaDto;
 import com.example.E_comeerse.dto.CarritoDto;
 import com.example.E_comeerse.dto.DatosFacturacionDto;
 import com.example.E_comeerse.dto.FacturaDto;
+import com.example.E_comeerse.dto.OperacionesCarritoRequest;
+import com.example.E_comeerse.dto.ReservaStockDto;
+import com.example.E_comeerse.dto.ResultadoOperacionesCarritoDto;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -41,6 +47,17 @@ public interface CarritoService {
      */
     CarritoDto agregarProducto(Long idUsuario, Long idProducto, Integer cantidad);
 
+    /**
+     * Agrega un producto al carrito devolviendo solo los cambios
+     * 
+     * @param idUsuario ID del usuario
+     * @param idProducto ID del producto a agregar
+     * @param cantidad Cantidad del producto
+     * @return Item agregado o modificado, totales y nueva versión del carrito
+     * @throws IllegalArgumentException si el producto no existe o no hay stock
+     */
+    CarritoDeltaDto agregarProductoDelta(Long idUsuario, Long idProducto, Integer cantidad);
+
     /**
      * Actualiza la cantidad de un producto en el carrito
      * 
@@ -52,6 +69,17 @@ public interface CarritoService {
      */
     CarritoDto actualizarCantidad(Long idUsuario, Long idProducto, Integer nuevaCantidad);
 
+    /**
+     * Actualiza la cantidad de un producto devolviendo solo los cambios
+     * 
+     * @param idUsuario ID del usuario
+     * @param idProducto ID del producto
+     * @param nuevaCantidad Nueva cantidad del producto
+     * @return Item modificado, totales y nueva versión del carrito
+     * @throws IllegalArgumentException si el producto no existe en el carrito o no hay stock
+     */
+    CarritoDeltaDto actualizarCantidadDelta(Long idUsuario, Long idProducto, Integer nuevaCantidad);
+
     /**
      * Elimina un producto del carrito
      * 
@@ -62,6 +90,16 @@ public interface CarritoService {
      */
     CarritoDto eliminarProducto(Long idUsuario, Long idProducto);
 
+    /**
+     * Elimina un producto del carrito devolviendo solo los cambios
+     * 
+     * @param idUsuario ID del usuario
+     * @param idProducto ID del producto a eliminar
+     * @return ID del producto eliminado, totales y nueva versión del carrito
+     * @throws IllegalArgumentException si el producto no existe en el carrito
+     */
+    CarritoDeltaDto eliminarProductoDelta(Long idUsuario, Long idProducto);
+
     /**
      * Vacía completamente el carrito del usuario
      * 
@@ -70,6 +108,39 @@ public interface CarritoService {
      */
     CarritoDto vaciarCarrito(Long idUsuario);
 
+    /**
+     * Vacía el carrito devolviendo solo los cambios
+     * 
+     * @param idUsuario ID del usuario
+     * @return Totales en cero y nueva versión del carrito
+     */
+    CarritoDeltaDto vaciarCarritoDelta(Long idUsuario);
+
+    /**
+     * Aplica varias operaciones (agregar, actualizar, eliminar) al carrito
+     * en una sola transacción, con una sola consulta de productos y stock
+     * y un solo recálculo de totales. Las operaciones inválidas se informan
+     * en su resultado y no impiden aplicar las demás.
+     * 
+     * @param idUsuario ID del usuario
+     * @param operaciones Operaciones en el orden en que deben aplicarse
+     * @return Resultado de cada operación y el carrito actualizado
+     */
+    ResultadoOperacionesCarritoDto aplicarOperaciones(Long idUsuario,
+                                                      List<OperacionesCarritoRequest.Operacion> operaciones);
+
+    /**
+     * Suma al carrito del usuario las cantidades de otro carrito (por ejemplo el
+     * carrito de invitado al iniciar sesión) en una sola operación. Cada cantidad
+     * resultante se limita al stock disponible; los productos que ya no existen o
+     * sin stock adicional se omiten.
+     * 
+     * @param idUsuario ID del usuario
+     * @param cantidades Cantidad a sumar por ID de producto
+     * @return DTO del carrito fusionado
+     */
+    CarritoDto fusionarCarrito(Long idUsuario, Map<Long, Integer> cantidades);
+
     /**
      * Obtiene el carrito del usuario sin crearlo si no existe
      * 
@@ -86,6 +157,24 @@ public interface CarritoService {
      */
     boolean verificarStockDisponible(Long idUsuario);
 
+    /**
+     * Reserva por un tiempo limitado el stock de los productos del carrito al
+     * iniciar el checkout, para que otros usuarios no lo compren antes del pago.
+     * Reemplaza la reserva anterior del usuario
+     * 
+     * @param idUsuario ID del usuario
+     * @return Reserva creada con su vencimiento
+     * @throws IllegalArgumentException si el carrito está vacío o algún producto no tiene unidades libres
+     */
+    ReservaStockDto reservarStock(Long idUsuario);
+
+    /**
+     * Libera la reserva de stock del usuario, si tiene una
+     * 
+     * @param idUsuario ID del usuario
+     */
+    void liberarReserva(Long idUsuario);
+
     /**
      * Convierte el carrito en un pedido
      * 
@@ -107,6 +196,7 @@ public interface CarritoService {
 
     /**
      * Obtiene la cantidad total de items en el carrito
+     * Se sirve desde un contador en memoria, sin cargar el carrito ni sus items
      * 
      * @param idUsuario ID del usuario
      * @return Cantidad total de items
@@ -1,26 +1,47 @@
 package com.example.E_comeerse.service;
 
+import com.example.E_comeerse.dto.CarritoDeltaDto;
 import com.example.E_comeerse.dto.CarritoDto;
 import com.example.E_comeerse.dto.CarritoItemDto;
 import com.example.E_comeerse.dto.DatosFacturacionDto;
 import com.example.E_comeerse.dto.FacturaDto;
+import com.example.E_comeerse.dto.OperacionesCarritoRequest;
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.ReservaStockDto;
+import com.example.E_comeerse.dto.ResultadoOperacionesCarritoDto;
 import com.example.E_comeerse.model.*;
 import com.example.E_comeerse.repository.CarritoItemRepository;
 import com.example.E_comeerse.repository.CarritoRepository;
+import com.example.E_comeerse.repository.PedidoItemRepository;
 import com.example.E_comeerse.repository.PedidoRepository;
 import com.example.E_comeerse.repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementación del servicio de Carrito.
@@ -42,21 +63,62 @@ public class CarritoServiceImpl implements CarritoService {
 
     private static final Logger logger = LoggerFactory.getLogger(CarritoServiceImpl.class);
 
+    // Intentos de una modificación cuando otra transacción cambió el carrito al mismo tiempo
+    private static final int MAXIMO_INTENTOS = 5;
+    private static final long PAUSA_BASE_MS = 10;
+    private static final String METRICA_CONFLICTOS = "carrito.conflictos";
+
     private final CarritoRepository carritoRepository;
     private final CarritoItemRepository carritoItemRepository;
     private final ProductoRepository productoRepository;
     private final PedidoRepository pedidoRepository;
+    private final PedidoItemRepository pedidoItemRepository;
+    private final InventarioService inventarioService;
+    private final ReservasStock reservasStock;
+    private final GeneradorNumerosPedido generadorNumeros;
+    private final ContadorCarrito contadorCarrito;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
     public CarritoServiceImpl(
             CarritoRepository carritoRepository,
             CarritoItemRepository carritoItemRepository,
             ProductoRepository productoRepository,
-            PedidoRepository pedidoRepository) {
+            PedidoRepository pedidoRepository,
+            PedidoItemRepository pedidoItemRepository,
+            InventarioService inventarioService,
+            ReservasStock reservasStock,
+            GeneradorNumerosPedido generadorNumeros,
+            ContadorCarrito contadorCarrito,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
         this.carritoRepository = carritoRepository;
         this.carritoItemRepository = carritoItemRepository;
         this.productoRepository = productoRepository;
         this.pedidoRepository = pedidoRepository;
+        this.pedidoItemRepository = pedidoItemRepository;
+        this.inventarioService = inventarioService;
+        this.reservasStock = reservasStock;
+        this.generadorNumeros = generadorNumeros;
+        this.contadorCarrito = contadorCarrito;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Completa una sola vez la versión de los carritos creados antes del bloqueo optimista
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarVersiones() {
+        try {
+            int actualizados = carritoRepository.inicializarVersionesNulas();
+            if (actualizados > 0) {
+                logger.info("Versión inicializada en {} carritos", actualizados);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error inicializando las versiones de los carritos: {}", e.getMessage(), e);
+        }
     }
 
     @Override
@@ -73,62 +135,100 @@ public class CarritoServiceImpl implements CarritoService {
         return convertirADto(carrito);
     }
 
+    /**
+     * Resultado de una modificación del carrito: el carrito con sus totales y lo que cambió.
+     * Lo usa también el servicio con escritura diferida (CarritoServiceMemoria)
+     * 
+     * @param carrito Carrito modificado
+     * @param item Item agregado o modificado, o null
+     * @param stockItem Stock del producto del item si ya se conoce, o null
+     * @param idProductoEliminado Producto quitado del carrito, o null
+     * @param vaciado true si se eliminaron todos los items
+     */
+    record Modificacion(Carrito carrito, CarritoItem item, Integer stockItem,
+                                Long idProductoEliminado, boolean vaciado) {
+    }
+
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public CarritoDto agregarProducto(Long idUsuario, Long idProducto, Integer cantidad) {
-        logger.debug("Agregando producto {} con cantidad {} al carrito del usuario {}", 
-                idProducto, cantidad, idUsuario);
+        return conReintentos("agregar", () -> convertirADto(aplicarAgregar(idUsuario, idProducto, cantidad).carrito()));
+    }
 
-        // Validar que el producto existe
-        Producto producto = productoRepository.findById(idProducto)
-                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + idProducto));
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDeltaDto agregarProductoDelta(Long idUsuario, Long idProducto, Integer cantidad) {
+        return conReintentos("agregar", () -> convertirADelta(aplicarAgregar(idUsuario, idProducto, cantidad)));
+    }
 
-        // Validar stock disponible
-        if (producto.getCantidadStock() < cantidad) {
-            throw new IllegalArgumentException("Stock insuficiente. Disponible: " + producto.getCantidadStock());
-        }
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDto actualizarCantidad(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
+        return conReintentos("actualizar", () -> convertirADto(aplicarActualizarCantidad(idUsuario, idProducto, nuevaCantidad).carrito()));
+    }
 
-        // Obtener o crear carrito
-        Carrito carrito = carritoRepository.findByIdUsuario(idUsuario)
-                .orElseGet(() -> {
-                    Carrito nuevoCarrito = new Carrito(idUsuario);
-                    return carritoRepository.save(nuevoCarrito);
-                });
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDeltaDto actualizarCantidadDelta(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
+        return conReintentos("actualizar", () -> convertirADelta(aplicarActualizarCantidad(idUsuario, idProducto, nuevaCantidad)));
+    }
 
-        // Buscar si el producto ya existe en el carrito
-        Optional<CarritoItem> itemExistente = carritoItemRepository
-                .findByCarrito_IdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDto eliminarProducto(Long idUsuario, Long idProducto) {
+        return conReintentos("eliminar", () -> convertirADto(aplicarEliminar(idUsuario, idProducto).carrito()));
+    }
 
-        if (itemExistente.isPresent()) {
-            // Actualizar cantidad del item existente
-            CarritoItem item = itemExistente.get();
-            Integer nuevaCantidad = item.getCantidad() + cantidad;
-            
-            // Validar stock para la nueva cantidad
-            if (producto.getCantidadStock() < nuevaCantidad) {
-                throw new IllegalArgumentException("Stock insuficiente. Disponible: " + producto.getCantidadStock());
-            }
-            
-            item.actualizarCantidad(nuevaCantidad);
-            carritoItemRepository.save(item);
-            logger.info("Cantidad actualizada del producto {} en el carrito. Nueva cantidad: {}", 
-                    idProducto, nuevaCantidad);
-        } else {
-            // Crear nuevo item
-            CarritoItem nuevoItem = new CarritoItem(carrito, producto, cantidad);
-            carritoItemRepository.save(nuevoItem);
-            carrito.agregarItem(nuevoItem);
-            logger.info("Producto {} agregado al carrito con cantidad: {}", idProducto, cantidad);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDeltaDto eliminarProductoDelta(Long idUsuario, Long idProducto) {
+        return conReintentos("eliminar", () -> convertirADelta(aplicarEliminar(idUsuario, idProducto)));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDto vaciarCarrito(Long idUsuario) {
+        return conReintentos("vaciar", () -> convertirADto(aplicarVaciar(idUsuario).carrito()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CarritoDeltaDto vaciarCarritoDelta(Long idUsuario) {
+        return conReintentos("vaciar", () -> convertirADelta(aplicarVaciar(idUsuario)));
+    }
+
+    private Modificacion aplicarAgregar(Long idUsuario, Long idProducto, Integer cantidad) {
+        logger.debug("Agregando producto {} con cantidad {} al carrito del usuario {}", 
+                idProducto, cantidad, idUsuario);
+
+        if (cantidad == null || cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad debe ser al menos 1");
         }
+        LocalDateTime ahora = LocalDateTime.now();
+
+        // Obtener o crear carrito con la versión sobre la que se aplica la operación, sin bloquearlo
+        CarritoRepository.VersionCarrito leido = carritoRepository.obtenerOCrearVersion(idUsuario, ahora)
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Carrito.class, idUsuario));
+        Long idCarrito = leido.getIdCarrito();
+
+        // Insertar o incrementar el item en una sola sentencia, con control de stock
+        CarritoItem item = carritoItemRepository.agregarOIncrementar(idCarrito, idProducto, cantidad, ahora)
+                .orElseThrow(() -> {
+                    Producto producto = productoRepository.findById(idProducto)
+                            .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + idProducto));
+                    return new IllegalArgumentException("Stock insuficiente. Disponible: " + producto.getCantidadStock());
+                });
 
-        // Recalcular totales y guardar
-        carrito.calcularTotales();
-        carritoRepository.save(carrito);
+        // Recalcular totales y versión en la base de datos, si nadie más modificó el carrito entretanto
+        Carrito carrito = carritoRepository.recalcularTotales(idCarrito, leido.getVersion(), ahora)
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Carrito.class, idCarrito));
+        logger.info("Producto {} agregado al carrito del usuario {} con cantidad: {}", idProducto, idUsuario, cantidad);
 
-        return convertirADto(carrito);
+        publicarCantidad(carrito);
+        return new Modificacion(carrito, item, null, null, false);
     }
 
-    @Override
-    public CarritoDto actualizarCantidad(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
+    private Modificacion aplicarActualizarCantidad(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
         logger.debug("Actualizando cantidad del producto {} a {} en el carrito del usuario {}", 
                 idProducto, nuevaCantidad, idUsuario);
 
@@ -137,8 +237,7 @@ public class CarritoServiceImpl implements CarritoService {
                 .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado para el usuario: " + idUsuario));
 
         // Buscar item en el carrito
-        CarritoItem item = carritoItemRepository
-                .findByCarrito_IdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto)
+        CarritoItem item = buscarItem(carrito, idProducto)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado en el carrito"));
 
         // Validar stock disponible
@@ -149,21 +248,18 @@ public class CarritoServiceImpl implements CarritoService {
             throw new IllegalArgumentException("Stock insuficiente. Disponible: " + producto.getCantidadStock());
         }
 
-        // Actualizar cantidad
-        item.actualizarCantidad(nuevaCantidad);
+        // Actualizar cantidad; los totales se ajustan con la diferencia del item
+        carrito.actualizarCantidadItem(item, nuevaCantidad);
         carritoItemRepository.save(item);
-
-        // Recalcular totales
-        carrito.calcularTotales();
-        carritoRepository.save(carrito);
+        guardarModificacion(carrito);
 
         logger.info("Cantidad del producto {} actualizada a {} en el carrito", idProducto, nuevaCantidad);
 
-        return convertirADto(carrito);
+        publicarCantidad(carrito);
+        return new Modificacion(carrito, item, producto.getCantidadStock(), null, false);
     }
 
-    @Override
-    public CarritoDto eliminarProducto(Long idUsuario, Long idProducto) {
+    private Modificacion aplicarEliminar(Long idUsuario, Long idProducto) {
         logger.debug("Eliminando producto {} del carrito del usuario {}", idProducto, idUsuario);
 
         // Obtener carrito
@@ -171,24 +267,21 @@ public class CarritoServiceImpl implements CarritoService {
                 .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado para el usuario: " + idUsuario));
 
         // Buscar y eliminar item
-        CarritoItem item = carritoItemRepository
-                .findByCarrito_IdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto)
+        CarritoItem item = buscarItem(carrito, idProducto)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado en el carrito"));
 
+        // Los totales se ajustan restando el item
         carrito.eliminarItem(item);
         carritoItemRepository.delete(item);
-
-        // Recalcular totales
-        carrito.calcularTotales();
-        carritoRepository.save(carrito);
+        guardarModificacion(carrito);
 
         logger.info("Producto {} eliminado del carrito", idProducto);
 
-        return convertirADto(carrito);
+        publicarCantidad(carrito);
+        return new Modificacion(carrito, null, null, idProducto, false);
     }
 
-    @Override
-    public CarritoDto vaciarCarrito(Long idUsuario) {
+    private Modificacion aplicarVaciar(Long idUsuario) {
         logger.debug("Vaciando carrito del usuario {}", idUsuario);
 
         // Obtener carrito
@@ -197,11 +290,191 @@ public class CarritoServiceImpl implements CarritoService {
 
         // Limpiar la colección de items - JPA manejará la eliminación por orphanRemoval = true
         carrito.vaciarCarrito();
-        carritoRepository.save(carrito);
+        guardarModificacion(carrito);
 
         logger.info("Carrito del usuario {} vaciado exitosamente", idUsuario);
 
-        return convertirADto(carrito);
+        publicarCantidad(carrito);
+        return new Modificacion(carrito, null, null, null, true);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ResultadoOperacionesCarritoDto aplicarOperaciones(Long idUsuario,
+                                                             List<OperacionesCarritoRequest.Operacion> operaciones) {
+        return conReintentos("operaciones", () -> aplicarOperacionesEnCarrito(idUsuario, operaciones));
+    }
+
+    private ResultadoOperacionesCarritoDto aplicarOperacionesEnCarrito(Long idUsuario,
+                                                                       List<OperacionesCarritoRequest.Operacion> operaciones) {
+        logger.debug("Aplicando {} operaciones al carrito del usuario {}", operaciones.size(), idUsuario);
+
+        // Obtener o crear carrito y cargarlo con sus items; la escritura se valida con su versión
+        carritoRepository.obtenerOCrearVersion(idUsuario, LocalDateTime.now())
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Carrito.class, idUsuario));
+        Carrito carrito = carritoRepository.findByIdUsuario(idUsuario)
+                .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado para el usuario: " + idUsuario));
+
+        // Productos del carrito y de las operaciones, con su stock, en una sola consulta
+        List<Long> idsProductos = Stream.concat(
+                        carrito.getItems().stream().map(CarritoItem::getIdProducto),
+                        operaciones.stream().map(OperacionesCarritoRequest.Operacion::getIdProducto))
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Producto> productos = productoRepository.findAllById(idsProductos).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+        ResultadoOperacionesCarritoDto resultado = new ResultadoOperacionesCarritoDto();
+        for (int i = 0; i < operaciones.size(); i++) {
+            OperacionesCarritoRequest.Operacion operacion = operaciones.get(i);
+            String mensaje = null;
+            try {
+                aplicarOperacion(carrito, operacion, productos);
+                resultado.setOperacionesAplicadas(resultado.getOperacionesAplicadas() + 1);
+            } catch (IllegalArgumentException e) {
+                mensaje = e.getMessage();
+                resultado.setOperacionesFallidas(resultado.getOperacionesFallidas() + 1);
+            }
+            resultado.getResultados().add(new ResultadoOperacionesCarritoDto.ResultadoOperacion(
+                    i, operacion.getTipo(), operacion.getIdProducto(), mensaje == null, mensaje));
+        }
+
+        // Los totales ya se ajustaron item a item; escribir todos los cambios juntos
+        if (resultado.getOperacionesAplicadas() > 0) {
+            guardarModificacion(carrito);
+        }
+
+        publicarCantidad(carrito);
+        logger.info("{} de {} operaciones aplicadas al carrito del usuario {}",
+                resultado.getOperacionesAplicadas(), operaciones.size(), idUsuario);
+
+        Map<Long, Integer> stock = productos.values().stream()
+                .collect(Collectors.toMap(Producto::getId, Producto::getCantidadStock));
+        resultado.setCarrito(convertirADto(carrito, stock));
+        return resultado;
+    }
+
+    /**
+     * Aplica una operación sobre los items ya cargados del carrito, validando
+     * el stock con los productos cargados. Los totales se ajustan con la
+     * diferencia del item, sin volver a sumar el carrito.
+     * 
+     * @param carrito Carrito con sus items
+     * @param operacion Operación a aplicar
+     * @param productos Productos cargados por ID
+     * @throws IllegalArgumentException si la operación no se puede aplicar
+     */
+    static void aplicarOperacion(Carrito carrito, OperacionesCarritoRequest.Operacion operacion,
+                                  Map<Long, Producto> productos) {
+        Long idProducto = operacion.getIdProducto();
+        Optional<CarritoItem> existente = buscarItem(carrito, idProducto);
+
+        switch (operacion.getTipo()) {
+            case AGREGAR -> {
+                Producto producto = obtenerProductoCargado(productos, idProducto);
+                int cantidadTotal = validarCantidad(operacion.getCantidad())
+                        + existente.map(CarritoItem::getCantidad).orElse(0);
+                validarStock(producto, cantidadTotal);
+
+                if (existente.isPresent()) {
+                    carrito.actualizarCantidadItem(existente.get(), cantidadTotal);
+                } else {
+                    carrito.agregarItem(new CarritoItem(carrito, producto, cantidadTotal));
+                }
+            }
+            case ACTUALIZAR -> {
+                int cantidad = validarCantidad(operacion.getCantidad());
+                CarritoItem item = existente
+                        .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado en el carrito"));
+                validarStock(obtenerProductoCargado(productos, idProducto), cantidad);
+                carrito.actualizarCantidadItem(item, cantidad);
+            }
+            case ELIMINAR -> {
+                CarritoItem item = existente
+                        .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado en el carrito"));
+                // orphanRemoval elimina la fila al guardar el carrito
+                carrito.eliminarItem(item);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CarritoDto fusionarCarrito(Long idUsuario, Map<Long, Integer> cantidades) {
+        // Sin la transacción de quien llama (p. ej. el login), para reintentar los conflictos
+        return conReintentos("fusionar", () -> {
+            carritoRepository.obtenerOCrearVersion(idUsuario, LocalDateTime.now())
+                    .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Carrito.class, idUsuario));
+            Carrito carrito = carritoRepository.findByIdUsuario(idUsuario)
+                    .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado para el usuario: " + idUsuario));
+
+            List<Long> idsProductos = Stream.concat(
+                            carrito.getItems().stream().map(CarritoItem::getIdProducto),
+                            cantidades.keySet().stream())
+                    .distinct()
+                    .collect(Collectors.toList());
+            Map<Long, Producto> productos = productoRepository.findAllById(idsProductos).stream()
+                    .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+            int fusionados = fusionarCantidades(carrito, cantidades, productos);
+            if (fusionados > 0) {
+                guardarModificacion(carrito);
+            }
+            publicarCantidad(carrito);
+            logger.info("{} de {} productos fusionados en el carrito del usuario {}",
+                    fusionados, cantidades.size(), idUsuario);
+
+            Map<Long, Integer> stock = productos.values().stream()
+                    .collect(Collectors.toMap(Producto::getId, Producto::getCantidadStock));
+            return convertirADto(carrito, stock);
+        });
+    }
+
+    /**
+     * Suma las cantidades recibidas a los items del carrito, limitando cada
+     * cantidad resultante al stock del producto. Se omiten los productos que no
+     * están cargados y los que no pueden aumentar.
+     * 
+     * @param carrito Carrito con sus items
+     * @param cantidades Cantidad a sumar por ID de producto
+     * @param productos Productos cargados por ID
+     * @return Cantidad de productos modificados
+     */
+    static int fusionarCantidades(Carrito carrito, Map<Long, Integer> cantidades, Map<Long, Producto> productos) {
+        int modificados = 0;
+        for (Map.Entry<Long, Integer> entrada : cantidades.entrySet()) {
+            Producto producto = productos.get(entrada.getKey());
+            if (producto == null || entrada.getValue() == null || entrada.getValue() < 1) {
+                continue;
+            }
+            int actual = buscarItem(carrito, entrada.getKey()).map(CarritoItem::getCantidad).orElse(0);
+            int objetivo = (int) Math.min((long) actual + entrada.getValue(), producto.getCantidadStock());
+            if (objetivo <= actual) {
+                continue;
+            }
+            aplicarOperacion(carrito, new OperacionesCarritoRequest.Operacion(
+                    OperacionesCarritoRequest.TipoOperacion.AGREGAR, entrada.getKey(), objetivo - actual), productos);
+            modificados++;
+        }
+        return modificados;
+    }
+
+    static Producto obtenerProductoCargado(Map<Long, Producto> productos, Long idProducto) {
+        return Optional.ofNullable(productos.get(idProducto))
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + idProducto));
+    }
+
+    private static int validarCantidad(Integer cantidad) {
+        if (cantidad == null || cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad debe ser al menos 1");
+        }
+        return cantidad;
+    }
+
+    private static void validarStock(Producto producto, int cantidad) {
+        if (producto.getCantidadStock() < cantidad) {
+            throw new IllegalArgumentException("Stock insuficiente. Disponible: " + producto.getCantidadStock());
+        }
     }
 
     @Override
@@ -225,16 +498,19 @@ public class CarritoServiceImpl implements CarritoService {
             return false;
         }
 
-        // Verificar stock para cada item
+        // Verificar stock para cada item con una sola consulta de stock, sin las unidades reservadas por otros
+        Map<Long, Integer> stock = obtenerStock(carrito.getItems());
+        Map<Long, Integer> reservadas = reservasStock.reservadoPorOtros(idUsuario, stock.keySet());
         for (CarritoItem item : carrito.getItems()) {
-            Producto producto = productoRepository.findById(item.getIdProducto())
+            Integer disponible = Optional.ofNullable(stock.get(item.getIdProducto()))
+                    .map(cantidad -> cantidad - reservadas.getOrDefault(item.getIdProducto(), 0))
                     .orElse(null);
             
-            if (producto == null || producto.getCantidadStock() < item.getCantidad()) {
+            if (disponible == null || disponible < item.getCantidad()) {
                 logger.warn("Stock insuficiente para producto {}: requerido {}, disponible {}", 
                         item.getIdProducto(), 
                         item.getCantidad(), 
-                        producto != null ? producto.getCantidadStock() : 0);
+                        disponible != null ? disponible : 0);
                 return false;
             }
         }
@@ -242,6 +518,49 @@ public class CarritoServiceImpl implements CarritoService {
         return true;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ReservaStockDto reservarStock(Long idUsuario) {
+        Carrito carrito = carritoRepository.findByIdUsuario(idUsuario)
+                .filter(actual -> !actual.estaVacio())
+                .orElseThrow(() -> new IllegalArgumentException("El carrito está vacío"));
+
+        // El stock se lee de la base de datos sin bloquear filas; las reservas se llevan en memoria
+        ReservaStockDto reserva = reservasStock.reservar(idUsuario, cantidadesPorProducto(carrito),
+                nombresPorProducto(carrito));
+        logger.info("Stock reservado para el checkout del usuario {} hasta {}", idUsuario, reserva.getExpiraEn());
+        return reserva;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void liberarReserva(Long idUsuario) {
+        reservasStock.liberar(idUsuario);
+    }
+
+    /**
+     * Unidades de cada producto del carrito
+     * 
+     * @param carrito Carrito con sus items
+     * @return Cantidad por ID de producto
+     */
+    static Map<Long, Integer> cantidadesPorProducto(Carrito carrito) {
+        return carrito.getItems().stream()
+                .collect(Collectors.toMap(CarritoItem::getIdProducto, CarritoItem::getCantidad, Integer::sum));
+    }
+
+    /**
+     * Nombre de cada producto del carrito, guardado en sus items
+     * 
+     * @param carrito Carrito con sus items
+     * @return Nombre por ID de producto
+     */
+    static Map<Long, String> nombresPorProducto(Carrito carrito) {
+        Map<Long, String> nombres = new HashMap<>();
+        carrito.getItems().forEach(item -> nombres.put(item.getIdProducto(), item.getNombreProducto()));
+        return nombres;
+    }
+
     @Override
     public Long convertirAPedido(Long idUsuario) {
         logger.debug("Convirtiendo carrito a pedido para usuario {}", idUsuario);
@@ -254,13 +573,15 @@ public class CarritoServiceImpl implements CarritoService {
             throw new IllegalArgumentException("El carrito está vacío");
         }
 
-        // Verificar stock
-        if (!verificarStockDisponible(idUsuario)) {
-            throw new IllegalArgumentException("Stock insuficiente para uno o más productos");
-        }
+        // Descontar stock con actualizaciones condicionadas, sin tocar las unidades reservadas por
+        // otros usuarios; si falta stock se deshace todo el pedido
+        Map<Long, Integer> cantidades = cantidadesPorProducto(carrito);
+        // Las unidades del pedido quedan apartadas hasta el commit, cuando el descuento
+        // definitivo reemplaza a la reserva del usuario
+        inventarioService.descontarStock(cantidades, reservasStock.apartarParaPedido(idUsuario, cantidades));
 
         // Crear pedido
-        String numeroPedido = "PED-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String numeroPedido = generadorNumeros.siguienteNumeroPedido();
         Pedido pedido = new Pedido();
         pedido.setIdUsuario(idUsuario);
         pedido.setNumeroPedido(numeroPedido);
@@ -271,15 +592,7 @@ public class CarritoServiceImpl implements CarritoService {
         pedido.setEstadoPago(Pedido.EstadoPago.PENDIENTE);
 
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
-
-        // Reducir stock de productos
-        for (CarritoItem item : carrito.getItems()) {
-            Producto producto = productoRepository.findById(item.getIdProducto())
-                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado: " + item.getIdProducto()));
-            
-            producto.setCantidadStock(producto.getCantidadStock() - item.getCantidad());
-            productoRepository.save(producto);
-        }
+        guardarItems(pedidoGuardado, carrito);
 
         // Vaciar carrito después de crear el pedido
         vaciarCarrito(idUsuario);
@@ -303,14 +616,16 @@ public class CarritoServiceImpl implements CarritoService {
             throw new IllegalArgumentException("El carrito está vacío");
         }
 
-        // Verificar stock
-        if (!verificarStockDisponible(idUsuario)) {
-            throw new IllegalArgumentException("Stock insuficiente para uno o más productos");
-        }
+        // Descontar stock con actualizaciones condicionadas, sin tocar las unidades reservadas por
+        // otros usuarios; si falta stock se deshace todo el pedido
+        Map<Long, Integer> cantidades = cantidadesPorProducto(carrito);
+        // Las unidades del pedido quedan apartadas hasta el commit, cuando el descuento
+        // definitivo reemplaza a la reserva del usuario
+        inventarioService.descontarStock(cantidades, reservasStock.apartarParaPedido(idUsuario, cantidades));
 
         // Crear pedido
-        String numeroPedido = "PED-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        String numeroTicket = String.format("#%06d", System.currentTimeMillis() % 1000000);
+        String numeroPedido = generadorNumeros.siguienteNumeroPedido();
+        String numeroTicket = generadorNumeros.siguienteNumeroTicket();
         
         Pedido pedido = new Pedido();
         pedido.setIdUsuario(idUsuario);
@@ -333,15 +648,7 @@ public class CarritoServiceImpl implements CarritoService {
         pedido.setMetodoPago(datosFacturacion.getMetodoPago());
 
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
-
-        // Reducir stock de productos
-        for (CarritoItem item : carrito.getItems()) {
-            Producto producto = productoRepository.findById(item.getIdProducto())
-                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado: " + item.getIdProducto()));
-            
-            producto.setCantidadStock(producto.getCantidadStock() - item.getCantidad());
-            productoRepository.save(producto);
-        }
+        guardarItems(pedidoGuardado, carrito);
 
         // Crear factura antes de vaciar el carrito
         FacturaDto factura = crearFactura(pedidoGuardado, carrito, datosFacturacion, numeroTicket);
@@ -355,19 +662,35 @@ public class CarritoServiceImpl implements CarritoService {
         return factura;
     }
 
+    /**
+     * Guarda las líneas del pedido desde los items del carrito. Sus IDs salen de
+     * una secuencia, así Hibernate las inserta en lotes JDBC al hacer flush
+     * 
+     * @param pedido Pedido ya guardado
+     * @param carrito Carrito con los items comprados
+     */
+    private void guardarItems(Pedido pedido, Carrito carrito) {
+        pedidoItemRepository.saveAll(carrito.getItems().stream()
+                .map(item -> new PedidoItem(pedido.getId(), item))
+                .collect(Collectors.toList()));
+    }
+
     /**
      * Crea el DTO de factura con toda la información del pedido
      */
     private FacturaDto crearFactura(Pedido pedido, Carrito carrito, DatosFacturacionDto datosFacturacion, String numeroTicket) {
-        // Convertir items del carrito a items de factura
+        // Convertir items del carrito a items de factura, con los importes de Precios
         List<FacturaDto.ItemFactura> items = carrito.getItems().stream()
-                .map(item -> FacturaDto.ItemFactura.builder()
-                        .nombreProducto(item.getNombreProducto())
-                        .cantidad(item.getCantidad())
-                        .precioUnitario(item.getPrecioUnitario())
-                        .subtotal(item.getSubtotal())
-                        .descuento(item.getDescuento() != null ? item.getDescuento() : BigDecimal.ZERO)
-                        .build())
+                .map(item -> {
+                    Precios.Linea linea = item.linea();
+                    return FacturaDto.ItemFactura.builder()
+                            .nombreProducto(item.getNombreProducto())
+                            .cantidad(item.getCantidad())
+                            .precioUnitario(item.getPrecioUnitario())
+                            .subtotal(Precios.aDecimal(linea.neto()))
+                            .descuento(Precios.aDecimal(linea.descuento()))
+                            .build();
+                })
                 .collect(Collectors.toList());
 
         return FacturaDto.builder()
@@ -390,11 +713,81 @@ public class CarritoServiceImpl implements CarritoService {
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Integer obtenerCantidadItems(Long idUsuario) {
-        return carritoRepository.findByIdUsuario(idUsuario)
-                .map(Carrito::obtenerCantidadTotal)
-                .orElse(0);
+        // Desde el contador en memoria; sin abrir transacción ni cargar el carrito
+        return contadorCarrito.obtener(idUsuario);
+    }
+
+    /**
+     * Ejecuta una modificación del carrito en su propia transacción y la repite si
+     * falla por bloqueo optimista (otra transacción modificó el carrito o uno de sus
+     * items después de leerlo). Cada intento vuelve a leer el carrito, así la
+     * operación se aplica sobre el estado confirmado más reciente. Si ya hay una
+     * transacción en curso no se reintenta: el conflicto se propaga a quien la abrió.
+     * 
+     * @param operacion Nombre de la operación para las métricas
+     * @param modificacion Modificación a ejecutar
+     * @return Resultado de la modificación
+     * @throws OptimisticLockingFailureException si se agotan los intentos
+     */
+    private <T> T conReintentos(String operacion, Supplier<T> modificacion) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return modificacion.get();
+        }
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(estado -> modificacion.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (intento == MAXIMO_INTENTOS) {
+                    meterRegistry.counter(METRICA_CONFLICTOS, "operacion", operacion, "resultado", "agotado").increment();
+                    logger.warn("Conflicto al {} en el carrito tras {} intentos: {}", operacion, intento, e.getMessage());
+                    throw e;
+                }
+                meterRegistry.counter(METRICA_CONFLICTOS, "operacion", operacion, "resultado", "reintentado").increment();
+                logger.debug("Conflicto al {} en el carrito, reintento {}", operacion, intento);
+                esperarAntesDeReintentar(intento);
+            }
+        }
+    }
+
+    // Pausa creciente con variación aleatoria para que las peticiones en conflicto no vuelvan a coincidir
+    private static void esperarAntesDeReintentar(int intento) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(PAUSA_BASE_MS * intento, PAUSA_BASE_MS * (intento + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Operación del carrito interrumpida", e);
+        }
+    }
+
+    /**
+     * Escribe el carrito modificado de inmediato. Hibernate incrementa su versión
+     * (@Version) y falla si otra transacción lo cambió después de leerlo; la fecha se
+     * actualiza siempre para que toda modificación incremente la versión, aunque no
+     * cambie ningún total
+     * 
+     * @param carrito Carrito modificado
+     * @throws OptimisticLockingFailureException si otra transacción modificó el carrito
+     */
+    private void guardarModificacion(Carrito carrito) {
+        carrito.setFechaModificacion(LocalDateTime.now());
+        try {
+            carritoRepository.saveAndFlush(carrito);
+        } catch (DataIntegrityViolationException e) {
+            // Los items nuevos se insertan antes de validar la versión del carrito: si otra
+            // transacción agregó el mismo producto, falla la clave única (carrito, producto)
+            throw new ObjectOptimisticLockingFailureException(Carrito.class, carrito.getIdCarrito(), e);
+        }
+    }
+
+    /**
+     * Publica la cantidad de unidades del carrito modificado al contador en memoria
+     * 
+     * @param carrito Carrito con su cantidad y versión actualizadas
+     */
+    private void publicarCantidad(Carrito carrito) {
+        contadorCarrito.actualizar(carrito.getIdUsuario(), carrito.getVersion(), carrito.getCantidadItems());
     }
 
     /**
@@ -404,6 +797,18 @@ public class CarritoServiceImpl implements CarritoService {
      * @return DTO del carrito
      */
     private CarritoDto convertirADto(Carrito carrito) {
+        // Información de stock consultada en bloque para todo el carrito
+        return convertirADto(carrito, obtenerStock(carrito.getItems()));
+    }
+
+    /**
+     * Convierte una entidad Carrito a su DTO usando un stock ya consultado
+     * 
+     * @param carrito Entidad carrito
+     * @param stock Stock actual por ID de producto
+     * @return DTO del carrito
+     */
+    static CarritoDto convertirADto(Carrito carrito, Map<Long, Integer> stock) {
         CarritoDto dto = new CarritoDto();
         dto.setIdCarrito(carrito.getIdCarrito());
         dto.setIdUsuario(carrito.getIdUsuario());
@@ -414,23 +819,96 @@ public class CarritoServiceImpl implements CarritoService {
         dto.setCantidadItems(carrito.getCantidadItems());
         dto.setFechaCreacion(carrito.getFechaCreacion());
         dto.setFechaModificacion(carrito.getFechaModificacion());
+        dto.setVersion(carrito.getVersion());
 
         // Convertir items con información de stock
         List<CarritoItemDto> itemsDto = carrito.getItems().stream()
-                .map(this::convertirItemADto)
+                .map(item -> convertirItemADto(item, stock))
                 .collect(Collectors.toList());
         dto.setItems(itemsDto);
 
         return dto;
     }
 
+    /**
+     * Convierte una modificación en la respuesta delta: solo el item cambiado,
+     * los totales y la versión, sin recorrer ni consultar el resto de items
+     * 
+     * @param modificacion Resultado de la modificación
+     * @return DTO delta del carrito
+     */
+    private CarritoDeltaDto convertirADelta(Modificacion modificacion) {
+        CarritoItem item = modificacion.item();
+        Map<Long, Integer> stock = item == null ? Collections.emptyMap()
+                : modificacion.stockItem() != null ? Map.of(item.getIdProducto(), modificacion.stockItem())
+                : obtenerStock(List.of(item));
+        return convertirADelta(modificacion, stock);
+    }
+
+    /**
+     * Convierte una modificación en la respuesta delta usando un stock ya consultado
+     * 
+     * @param modificacion Resultado de la modificación
+     * @param stock Stock actual por ID de producto, al menos el del item modificado
+     * @return DTO delta del carrito
+     */
+    static CarritoDeltaDto convertirADelta(Modificacion modificacion, Map<Long, Integer> stock) {
+        Carrito carrito = modificacion.carrito();
+        CarritoDeltaDto dto = new CarritoDeltaDto();
+        dto.setIdCarrito(carrito.getIdCarrito());
+        dto.setVersion(carrito.getVersion());
+        dto.setSubtotal(carrito.getSubtotal());
+        dto.setDescuentoTotal(carrito.getDescuentoTotal());
+        dto.setImpuestos(carrito.getImpuestos());
+        dto.setTotal(carrito.getTotal());
+        dto.setCantidadItems(carrito.getCantidadItems());
+        dto.setVaciado(modificacion.vaciado());
+
+        if (modificacion.item() != null) {
+            dto.getItemsModificados().add(convertirItemADto(modificacion.item(), stock));
+        }
+        if (modificacion.idProductoEliminado() != null) {
+            dto.getIdsProductosEliminados().add(modificacion.idProductoEliminado());
+        }
+        return dto;
+    }
+
+    /**
+     * Busca el item de un producto entre los items ya cargados del carrito
+     * 
+     * @param carrito Carrito con sus items
+     * @param idProducto ID del producto
+     * @return Optional con el item si existe
+     */
+    static Optional<CarritoItem> buscarItem(Carrito carrito, Long idProducto) {
+        return carrito.getItems().stream()
+                .filter(item -> item.getIdProducto().equals(idProducto))
+                .findFirst();
+    }
+
+    /**
+     * Obtiene el stock actual de los productos de los items con una sola consulta
+     * 
+     * @param items Items del carrito
+     * @return Mapa de ID de producto a stock; los productos eliminados no aparecen
+     */
+    private Map<Long, Integer> obtenerStock(Collection<CarritoItem> items) {
+        if (items.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = items.stream().map(CarritoItem::getIdProducto).distinct().collect(Collectors.toList());
+        return productoRepository.findResumenesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, ProductoResumenDto::getCantidadStock));
+    }
+
     /**
      * Convierte una entidad CarritoItem a su DTO con información de stock
      * 
      * @param item Entidad CarritoItem
+     * @param stock Stock actual por ID de producto
      * @return DTO del item
      */
-    private CarritoItemDto convertirItemADto(CarritoItem item) {
+    private static CarritoItemDto convertirItemADto(CarritoItem item, Map<Long, Integer> stock) {
         CarritoItemDto dto = new CarritoItemDto();
         dto.setIdItem(item.getIdItem());
         dto.setIdProducto(item.getIdProducto());
@@ -445,10 +923,11 @@ public class CarritoServiceImpl implements CarritoService {
         dto.setFechaModificacion(item.getFechaModificacion());
 
         // Agregar información de stock del producto
-        productoRepository.findById(item.getIdProducto()).ifPresent(producto -> {
-            dto.setStockDisponible(producto.getCantidadStock());
-            dto.setDisponible(producto.getCantidadStock() >= item.getCantidad());
-        });
+        Integer disponible = stock.get(item.getIdProducto());
+        if (disponible != null) {
+            dto.setStockDisponible(disponible);
+            dto.setDisponible(disponible >= item.getCantidad());
+        }
 
         return dto;
     }
@@ -0,0 +1,378 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.CarritoDeltaDto;
+import com.example.E_comeerse.dto.CarritoDto;
+import com.example.E_comeerse.dto.DatosFacturacionDto;
+import com.example.E_comeerse.dto.FacturaDto;
+import com.example.E_comeerse.dto.OperacionesCarritoRequest;
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.ReservaStockDto;
+import com.example.E_comeerse.dto.ResultadoOperacionesCarritoDto;
+import com.example.E_comeerse.model.Carrito;
+import com.example.E_comeerse.model.CarritoItem;
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementación del servicio de Carrito con escritura diferida.
+ * Se activa con carrito.escritura-diferida.habilitada=true y reemplaza a
+ * CarritoServiceImpl para los controladores.
+ *
+ * Los carritos se leen y modifican en memoria (AlmacenCarritos), sin consultas
+ * a las tablas del carrito en cada petición; solo se consultan los productos
+ * para validar el stock. Las modificaciones se escriben a la base de datos por
+ * lotes en segundo plano. Antes de convertir el carrito en pedido se escribe de
+ * inmediato y la conversión se delega a CarritoServiceImpl con el carrito bloqueado.
+ *
+ * Requiere que las peticiones de un mismo usuario lleguen siempre a la misma
+ * instancia: con varias instancias sin afinidad, cada una tendría su propia copia.
+ *
+ * @author E-commerce Team
+ * @version 1.0
+ * @since 2025-10-13
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "carrito.escritura-diferida", name = "habilitada", havingValue = "true")
+public class CarritoServiceMemoria implements CarritoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarritoServiceMemoria.class);
+
+    private final AlmacenCarritos almacen;
+    private final CarritoServiceImpl carritoServiceImpl;
+    private final ProductoRepository productoRepository;
+    private final CacheCatalogoService cacheCatalogo;
+    private final ContadorCarrito contadorCarrito;
+    private final ReservasStock reservasStock;
+
+    @Autowired
+    public CarritoServiceMemoria(
+            AlmacenCarritos almacen,
+            CarritoServiceImpl carritoServiceImpl,
+            ProductoRepository productoRepository,
+            CacheCatalogoService cacheCatalogo,
+            ContadorCarrito contadorCarrito,
+            ReservasStock reservasStock) {
+        this.almacen = almacen;
+        this.carritoServiceImpl = carritoServiceImpl;
+        this.productoRepository = productoRepository;
+        this.cacheCatalogo = cacheCatalogo;
+        this.contadorCarrito = contadorCarrito;
+        this.reservasStock = reservasStock;
+        logger.info("Carritos en memoria con escritura diferida habilitados");
+    }
+
+    @Override
+    public CarritoDto obtenerOCrearCarrito(Long idUsuario) {
+        Carrito carrito = almacen.leer(idUsuario, AlmacenCarritos::copiar);
+        return CarritoServiceImpl.convertirADto(carrito, obtenerStock(carrito.getItems()));
+    }
+
+    @Override
+    public CarritoDto agregarProducto(Long idUsuario, Long idProducto, Integer cantidad) {
+        return convertirADto(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.AGREGAR, idProducto, cantidad));
+    }
+
+    @Override
+    public CarritoDeltaDto agregarProductoDelta(Long idUsuario, Long idProducto, Integer cantidad) {
+        return convertirADelta(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.AGREGAR, idProducto, cantidad));
+    }
+
+    @Override
+    public CarritoDto actualizarCantidad(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
+        return convertirADto(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.ACTUALIZAR, idProducto, nuevaCantidad));
+    }
+
+    @Override
+    public CarritoDeltaDto actualizarCantidadDelta(Long idUsuario, Long idProducto, Integer nuevaCantidad) {
+        return convertirADelta(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.ACTUALIZAR, idProducto, nuevaCantidad));
+    }
+
+    @Override
+    public CarritoDto eliminarProducto(Long idUsuario, Long idProducto) {
+        return convertirADto(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.ELIMINAR, idProducto, null));
+    }
+
+    @Override
+    public CarritoDeltaDto eliminarProductoDelta(Long idUsuario, Long idProducto) {
+        return convertirADelta(aplicar(idUsuario, OperacionesCarritoRequest.TipoOperacion.ELIMINAR, idProducto, null));
+    }
+
+    @Override
+    public CarritoDto vaciarCarrito(Long idUsuario) {
+        return convertirADto(aplicarVaciar(idUsuario));
+    }
+
+    @Override
+    public CarritoDeltaDto vaciarCarritoDelta(Long idUsuario) {
+        return convertirADelta(aplicarVaciar(idUsuario));
+    }
+
+    /**
+     * Aplica una operación al carrito en memoria. El producto se consulta antes de
+     * tomar el bloqueo del carrito, para no retener el bloqueo durante la consulta
+     *
+     * @return Modificación con una copia del carrito resultante
+     */
+    private CarritoServiceImpl.Modificacion aplicar(Long idUsuario, OperacionesCarritoRequest.TipoOperacion tipo,
+                                                    Long idProducto, Integer cantidad) {
+        logger.debug("Operación {} del producto {} con cantidad {} en el carrito en memoria del usuario {}",
+                tipo, idProducto, cantidad, idUsuario);
+
+        OperacionesCarritoRequest.Operacion operacion = new OperacionesCarritoRequest.Operacion(tipo, idProducto, cantidad);
+        Map<Long, Producto> productos = tipo == OperacionesCarritoRequest.TipoOperacion.ELIMINAR
+                ? Map.of() : cargarProductos(List.of(idProducto));
+
+        CarritoServiceImpl.Modificacion modificacion = almacen.modificar(idUsuario, carrito -> {
+            CarritoServiceImpl.aplicarOperacion(carrito, operacion, productos);
+            LocalDateTime ahora = LocalDateTime.now();
+            marcarItemModificado(carrito, idProducto, ahora);
+            carrito.setFechaModificacion(ahora);
+            carrito.incrementarVersion();
+
+            Carrito copia = AlmacenCarritos.copiar(carrito);
+            CarritoItem item = CarritoServiceImpl.buscarItem(copia, idProducto).orElse(null);
+            Producto producto = productos.get(idProducto);
+            return new CarritoServiceImpl.Modificacion(copia, item,
+                    producto != null ? producto.getCantidadStock() : null,
+                    item == null ? idProducto : null, false);
+        });
+
+        publicarCantidad(modificacion.carrito());
+        return modificacion;
+    }
+
+    private CarritoServiceImpl.Modificacion aplicarVaciar(Long idUsuario) {
+        logger.debug("Vaciando carrito en memoria del usuario {}", idUsuario);
+
+        CarritoServiceImpl.Modificacion modificacion = almacen.modificar(idUsuario, carrito -> {
+            carrito.vaciarCarrito();
+            carrito.setFechaModificacion(LocalDateTime.now());
+            carrito.incrementarVersion();
+            return new CarritoServiceImpl.Modificacion(AlmacenCarritos.copiar(carrito), null, null, null, true);
+        });
+
+        publicarCantidad(modificacion.carrito());
+        return modificacion;
+    }
+
+    @Override
+    public ResultadoOperacionesCarritoDto aplicarOperaciones(Long idUsuario,
+                                                             List<OperacionesCarritoRequest.Operacion> operaciones) {
+        logger.debug("Aplicando {} operaciones al carrito en memoria del usuario {}", operaciones.size(), idUsuario);
+
+        // Productos de las operaciones y del carrito, consultados antes de bloquear el carrito
+        List<Long> idsEnCarrito = almacen.leer(idUsuario, carrito -> carrito.getItems().stream()
+                .map(CarritoItem::getIdProducto).collect(Collectors.toList()));
+        Map<Long, Producto> productos = cargarProductos(Stream.concat(idsEnCarrito.stream(),
+                        operaciones.stream().map(OperacionesCarritoRequest.Operacion::getIdProducto))
+                .distinct()
+                .collect(Collectors.toList()));
+
+        ResultadoOperacionesCarritoDto resultado = new ResultadoOperacionesCarritoDto();
+        Carrito copia = almacen.modificar(idUsuario, carrito -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            for (int i = 0; i < operaciones.size(); i++) {
+                OperacionesCarritoRequest.Operacion operacion = operaciones.get(i);
+                String mensaje = null;
+                try {
+                    CarritoServiceImpl.aplicarOperacion(carrito, operacion, productos);
+                    marcarItemModificado(carrito, operacion.getIdProducto(), ahora);
+                    resultado.setOperacionesAplicadas(resultado.getOperacionesAplicadas() + 1);
+                } catch (IllegalArgumentException e) {
+                    mensaje = e.getMessage();
+                    resultado.setOperacionesFallidas(resultado.getOperacionesFallidas() + 1);
+                }
+                resultado.getResultados().add(new ResultadoOperacionesCarritoDto.ResultadoOperacion(
+                        i, operacion.getTipo(), operacion.getIdProducto(), mensaje == null, mensaje));
+            }
+            if (resultado.getOperacionesAplicadas() > 0) {
+                carrito.setFechaModificacion(ahora);
+                carrito.incrementarVersion();
+            }
+            return AlmacenCarritos.copiar(carrito);
+        });
+
+        publicarCantidad(copia);
+        logger.info("{} de {} operaciones aplicadas al carrito en memoria del usuario {}",
+                resultado.getOperacionesAplicadas(), operaciones.size(), idUsuario);
+
+        Map<Long, Integer> stock = productos.values().stream()
+                .collect(Collectors.toMap(Producto::getId, Producto::getCantidadStock));
+        resultado.setCarrito(CarritoServiceImpl.convertirADto(copia, stock));
+        return resultado;
+    }
+
+    @Override
+    public CarritoDto fusionarCarrito(Long idUsuario, Map<Long, Integer> cantidades) {
+        List<Long> idsEnCarrito = almacen.leer(idUsuario, carrito -> carrito.getItems().stream()
+                .map(CarritoItem::getIdProducto).collect(Collectors.toList()));
+        Map<Long, Producto> productos = cargarProductos(Stream.concat(idsEnCarrito.stream(), cantidades.keySet().stream())
+                .distinct()
+                .collect(Collectors.toList()));
+
+        Carrito copia = almacen.modificar(idUsuario, carrito -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            if (CarritoServiceImpl.fusionarCantidades(carrito, cantidades, productos) > 0) {
+                cantidades.keySet().forEach(idProducto -> marcarItemModificado(carrito, idProducto, ahora));
+                carrito.setFechaModificacion(ahora);
+                carrito.incrementarVersion();
+            }
+            return AlmacenCarritos.copiar(carrito);
+        });
+
+        publicarCantidad(copia);
+        logger.info("Cantidades fusionadas en el carrito en memoria del usuario {}", idUsuario);
+
+        Map<Long, Integer> stock = productos.values().stream()
+                .collect(Collectors.toMap(Producto::getId, Producto::getCantidadStock));
+        return CarritoServiceImpl.convertirADto(copia, stock);
+    }
+
+    @Override
+    public Optional<CarritoDto> obtenerCarrito(Long idUsuario) {
+        logger.debug("Obteniendo carrito en memoria del usuario {}", idUsuario);
+
+        // Un carrito que aún no existe en la base de datos ni se ha modificado se trata como inexistente
+        Carrito carrito = almacen.leer(idUsuario, actual ->
+                actual.getIdCarrito() == null && actual.getVersion() == 0 ? null : AlmacenCarritos.copiar(actual));
+        return Optional.ofNullable(carrito)
+                .map(copia -> CarritoServiceImpl.convertirADto(copia, obtenerStock(copia.getItems())));
+    }
+
+    @Override
+    public boolean verificarStockDisponible(Long idUsuario) {
+        logger.debug("Verificando stock disponible para el carrito en memoria del usuario {}", idUsuario);
+
+        Map<Long, Integer> cantidades = almacen.leer(idUsuario, carrito -> carrito.getItems().stream()
+                .collect(Collectors.toMap(CarritoItem::getIdProducto, CarritoItem::getCantidad)));
+        if (cantidades.isEmpty()) {
+            return false;
+        }
+
+        // Stock leído de la base de datos, no de la caché del catálogo
+        Map<Long, Integer> stock = productoRepository.findResumenesByIdIn(new ArrayList<>(cantidades.keySet())).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, ProductoResumenDto::getCantidadStock));
+        // Sin las unidades reservadas por otros usuarios
+        Map<Long, Integer> reservadas = reservasStock.reservadoPorOtros(idUsuario, cantidades.keySet());
+        return cantidades.entrySet().stream().allMatch(entrada -> {
+            Integer disponible = stock.get(entrada.getKey());
+            return disponible != null
+                    && disponible - reservadas.getOrDefault(entrada.getKey(), 0) >= entrada.getValue();
+        });
+    }
+
+    @Override
+    public ReservaStockDto reservarStock(Long idUsuario) {
+        Carrito copia = almacen.leer(idUsuario, AlmacenCarritos::copiar);
+        if (copia.estaVacio()) {
+            throw new IllegalArgumentException("El carrito está vacío");
+        }
+
+        // El stock se lee de la base de datos, no de la caché del catálogo
+        ReservaStockDto reserva = reservasStock.reservar(idUsuario, CarritoServiceImpl.cantidadesPorProducto(copia),
+                CarritoServiceImpl.nombresPorProducto(copia));
+        logger.info("Stock reservado para el checkout del usuario {} hasta {}", idUsuario, reserva.getExpiraEn());
+        return reserva;
+    }
+
+    @Override
+    public void liberarReserva(Long idUsuario) {
+        reservasStock.liberar(idUsuario);
+    }
+
+    @Override
+    public Long convertirAPedido(Long idUsuario) {
+        return almacen.escribirYEjecutar(idUsuario, () -> carritoServiceImpl.convertirAPedido(idUsuario));
+    }
+
+    @Override
+    public FacturaDto convertirAPedidoConFactura(Long idUsuario, DatosFacturacionDto datosFacturacion) {
+        return almacen.escribirYEjecutar(idUsuario,
+                () -> carritoServiceImpl.convertirAPedidoConFactura(idUsuario, datosFacturacion));
+    }
+
+    @Override
+    public Integer obtenerCantidadItems(Long idUsuario) {
+        return contadorCarrito.obtener(idUsuario);
+    }
+
+    /**
+     * Actualiza las fechas del item de un producto tras una operación
+     * (las entidades en memoria no pasan por @PrePersist ni @PreUpdate)
+     */
+    private static void marcarItemModificado(Carrito carrito, Long idProducto, LocalDateTime ahora) {
+        CarritoServiceImpl.buscarItem(carrito, idProducto).ifPresent(item -> {
+            if (item.getFechaAgregado() == null) {
+                item.setFechaAgregado(ahora);
+            }
+            item.setFechaModificacion(ahora);
+        });
+    }
+
+    /**
+     * Publica la cantidad al contador en memoria de inmediato: la modificación ya
+     * es visible para el usuario aunque todavía no se haya escrito
+     */
+    private void publicarCantidad(Carrito carrito) {
+        contadorCarrito.actualizar(carrito.getIdUsuario(), carrito.getVersion(), carrito.getCantidadItems());
+    }
+
+    private CarritoDto convertirADto(CarritoServiceImpl.Modificacion modificacion) {
+        Carrito carrito = modificacion.carrito();
+        return CarritoServiceImpl.convertirADto(carrito, obtenerStock(carrito.getItems()));
+    }
+
+    private CarritoDeltaDto convertirADelta(CarritoServiceImpl.Modificacion modificacion) {
+        CarritoItem item = modificacion.item();
+        Map<Long, Integer> stock = item == null ? Map.of()
+                : modificacion.stockItem() != null ? Map.of(item.getIdProducto(), modificacion.stockItem())
+                : obtenerStock(List.of(item));
+        return CarritoServiceImpl.convertirADelta(modificacion, stock);
+    }
+
+    /**
+     * Stock de los productos para mostrar en el carrito: primero desde la caché
+     * del catálogo y con una sola consulta para los que no estén en ella
+     *
+     * @param items Items del carrito
+     * @return Mapa de ID de producto a stock; los productos eliminados no aparecen
+     */
+    private Map<Long, Integer> obtenerStock(Collection<CarritoItem> items) {
+        if (items.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = items.stream().map(CarritoItem::getIdProducto).distinct().collect(Collectors.toList());
+        Map<Long, Integer> stock = new HashMap<>();
+        cacheCatalogo.obtenerDetallesEnCache(ids).forEach((id, detalle) -> stock.put(id, detalle.getCantidadStock()));
+
+        List<Long> faltantes = ids.stream().filter(id -> !stock.containsKey(id)).collect(Collectors.toList());
+        if (!faltantes.isEmpty()) {
+            productoRepository.findResumenesByIdIn(faltantes)
+                    .forEach(resumen -> stock.put(resumen.getId(), resumen.getCantidadStock()));
+        }
+        return stock;
+    }
+
+    private Map<Long, Producto> cargarProductos(List<Long> ids) {
+        return productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+    }
+}
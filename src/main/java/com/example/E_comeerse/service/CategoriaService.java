@@ -1,10 +1,15 @@
 package com.example.E_comeerse.service;
 
+import com.example.E_comeerse.config.CacheConfig;
 import com.example.E_comeerse.model.Categoria;
 import java.util.List;
 import java.util.Optional;
 import com.example.E_comeerse.repository.CategoriaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -13,17 +18,33 @@ public class CategoriaService {
     @Autowired
     private CategoriaRepository categoriaRepository;
 
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    @Cacheable(CacheConfig.CATEGORIAS)
     public List<Categoria> obtenerTodasLasCategorias() {
         return categoriaRepository.findAll();
     }
 
+    @Cacheable(value = CacheConfig.CATEGORIA, key = "#id", unless = "#result == null")
     public Optional<Categoria> obtenerCategoriaPorId(Long id) {
         return categoriaRepository.findById(id);
     }
 
+    @Caching(
+        put = @CachePut(value = CacheConfig.CATEGORIA, key = "#result.id"),
+        evict = @CacheEvict(value = CacheConfig.CATEGORIAS, allEntries = true)
+    )
     public  Categoria guardarCategoria(Categoria categoria){
-       return categoriaRepository.save(categoria);
+       Categoria guardada = categoriaRepository.save(categoria);
+       versionCatalogo.incrementar();
+       return guardada;
 }
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.CATEGORIA, key = "#id"),
+        @CacheEvict(value = CacheConfig.CATEGORIAS, allEntries = true)
+    })
     public void eliminarCategoria(Long id){
-       categoriaRepository.deleteById(id);}
+       categoriaRepository.deleteById(id);
+       versionCatalogo.incrementar();}
 }
@@ -0,0 +1,163 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.CantidadCarritoDto;
+import com.example.E_comeerse.repository.CarritoRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Cantidad de unidades en el carrito de cada usuario, para el indicador del encabezado.
+ * Se guarda en memoria y se actualiza tras el commit de cada modificación del carrito;
+ * si un usuario no está en memoria se lee una vez la columna cantidad_items de su
+ * carrito, sin cargar los items. Cada valor lleva la versión del carrito que lo produjo,
+ * así un commit que se confirma tarde no reemplaza un valor más nuevo.
+ *
+ * Los cambios también se publican por Server-Sent Events a los encabezados suscritos,
+ * para que no tengan que consultar la cantidad periódicamente.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContadorCarrito {
+
+    private static final long TAMANO_MAXIMO = 100_000;
+    // Acota cuánto puede durar un valor desactualizado si el carrito se modifica desde otra instancia
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration DURACION_SUSCRIPCION = Duration.ofMinutes(30);
+    // Pestañas abiertas por usuario; al superar el límite se cierra la suscripción más antigua
+    private static final int MAXIMO_SUSCRIPCIONES_POR_USUARIO = 5;
+    private static final String EVENTO = "cantidad";
+
+    private final CarritoRepository carritoRepository;
+
+    private final Cache<Long, CantidadCarritoDto> contadores = Caffeine.newBuilder()
+            .maximumSize(TAMANO_MAXIMO)
+            .expireAfterWrite(TTL)
+            .build();
+
+    private final Map<Long, Deque<SseEmitter>> suscripciones = new ConcurrentHashMap<>();
+
+    /**
+     * Cantidad de unidades en el carrito del usuario, 0 si no tiene carrito
+     */
+    public int obtener(Long idUsuario) {
+        CantidadCarritoDto contador = contadores.get(idUsuario, id -> carritoRepository.findCantidadByIdUsuario(id)
+                // Sin carrito: cualquier versión real lo reemplaza
+                .orElseGet(() -> new CantidadCarritoDto(-1L, 0)));
+        return contador.getCantidad() != null ? contador.getCantidad() : 0;
+    }
+
+    /**
+     * Registra la nueva cantidad de un carrito modificado. Dentro de una transacción
+     * se aplica tras el commit, para que un rollback no deje una cantidad que nunca se guardó
+     */
+    public void actualizar(Long idUsuario, Long version, Integer cantidad) {
+        CantidadCarritoDto recibido = new CantidadCarritoDto(
+                version != null ? version : 0L, cantidad != null ? cantidad : 0);
+        alConfirmar(() -> {
+            CantidadCarritoDto vigente = contadores.asMap().merge(idUsuario, recibido,
+                    (actual, nuevo) -> nuevo.getVersion() >= actual.getVersion() ? nuevo : actual);
+            if (vigente == recibido) {
+                notificar(idUsuario, recibido.getCantidad());
+            }
+        });
+    }
+
+    /**
+     * Descarta la cantidad en memoria de un usuario cuyo carrito se eliminó. Un carrito
+     * nuevo empieza de nuevo en la versión 0 y no podría reemplazar la del anterior
+     */
+    public void olvidar(Long idUsuario) {
+        contadores.invalidate(idUsuario);
+    }
+
+    /**
+     * Abre una suscripción SSE que recibe la cantidad actual y cada cambio posterior
+     */
+    public SseEmitter suscribir(Long idUsuario) {
+        SseEmitter emisor = new SseEmitter(DURACION_SUSCRIPCION.toMillis());
+        Deque<SseEmitter> emisores = suscripciones.compute(idUsuario, (id, actuales) -> {
+            Deque<SseEmitter> lista = actuales != null ? actuales : new ConcurrentLinkedDeque<>();
+            lista.add(emisor);
+            return lista;
+        });
+        while (emisores.size() > MAXIMO_SUSCRIPCIONES_POR_USUARIO) {
+            SseEmitter antiguo = emisores.poll();
+            if (antiguo != null) {
+                antiguo.complete();
+            }
+        }
+
+        emisor.onCompletion(() -> quitar(idUsuario, emisor));
+        emisor.onTimeout(() -> quitar(idUsuario, emisor));
+        emisor.onError(e -> quitar(idUsuario, emisor));
+
+        enviar(idUsuario, emisor, obtener(idUsuario));
+        return emisor;
+    }
+
+    /**
+     * Envía un comentario a cada suscripción para que los proxies no cierren las
+     * conexiones inactivas y para descartar las de clientes que ya se desconectaron
+     */
+    @Scheduled(fixedRate = 25000)
+    public void mantenerSuscripciones() {
+        suscripciones.forEach((idUsuario, emisores) -> emisores.forEach(emisor -> {
+            try {
+                emisor.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                quitar(idUsuario, emisor);
+            }
+        }));
+    }
+
+    private void notificar(Long idUsuario, int cantidad) {
+        Deque<SseEmitter> emisores = suscripciones.get(idUsuario);
+        if (emisores != null) {
+            emisores.forEach(emisor -> enviar(idUsuario, emisor, cantidad));
+        }
+    }
+
+    private void enviar(Long idUsuario, SseEmitter emisor, int cantidad) {
+        try {
+            emisor.send(SseEmitter.event().name(EVENTO).data(Map.of("cantidad", cantidad)));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Suscripción al carrito del usuario {} cerrada: {}", idUsuario, e.getMessage());
+            quitar(idUsuario, emisor);
+        }
+    }
+
+    private void quitar(Long idUsuario, SseEmitter emisor) {
+        suscripciones.computeIfPresent(idUsuario, (id, emisores) -> {
+            emisores.remove(emisor);
+            return emisores.isEmpty() ? null : emisores;
+        });
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
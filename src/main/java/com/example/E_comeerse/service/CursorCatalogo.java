@@ -0,0 +1,72 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Codifica y decodifica el cursor opaco del listado paginado del catálogo.
+ * El cursor guarda el último par (clave de orden, id) entregado junto con el
+ * orden y la dirección con que se generó, para rechazar cursores reutilizados
+ * con un ordenamiento distinto.
+ */
+final class CursorCatalogo {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARADOR = "|";
+
+    private CursorCatalogo() {
+    }
+
+    static String codificar(OrdenCatalogo orden, Sort.Direction direccion, ProductoResumenDto ultimo) {
+        String contenido = String.join(SEPARADOR,
+                VERSION,
+                orden.name(),
+                direccion.name(),
+                String.valueOf(ultimo.getId()),
+                String.valueOf(orden.valorDe(ultimo)));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convierte el cursor recibido en los valores de keyset (clave de orden e id)
+     * del último producto entregado. Sin cursor devuelve null.
+     *
+     * @throws IllegalArgumentException si el cursor es inválido o no corresponde al orden solicitado
+     */
+    static Map<String, Object> decodificar(String cursor, OrdenCatalogo orden, Sort.Direction direccion) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        String[] partes;
+        try {
+            String contenido = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // El valor va al final porque puede contener el separador (p. ej. en nombres)
+            partes = contenido.split("\\" + SEPARADOR, 5);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+
+        if (partes.length != 5 || !VERSION.equals(partes[0])) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (!orden.name().equals(partes[1]) || !direccion.name().equals(partes[2])) {
+            throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+        }
+
+        Map<String, Object> claves = new LinkedHashMap<>();
+        try {
+            claves.put(orden.getPropiedad(), orden.parsearValor(partes[4]));
+            claves.put("id", Long.valueOf(partes[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        return claves;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import com.example.E_comeerse.model.Pedido;
+import com.example.E_comeerse.repository.PedidoRepository;
+import com.example.E_comeerse.repository.ProductoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Exportación masiva de productos y pedidos en CSV o NDJSON.
+ * Las filas se leen de un cursor de la base de datos y se escriben directamente
+ * en la salida a medida que llegan, por lo que la memoria usada es constante
+ * sin importar cuántas filas se exporten. Las columnas de productos usan los
+ * mismos nombres que acepta la importación.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportacionService {
+
+    // Cada cuántas entidades se vacía el contexto de persistencia durante la exportación
+    private static final int FILAS_POR_LIMPIEZA = 1000;
+
+    private static final List<Columna<ProductoDetalleDto>> COLUMNAS_PRODUCTO = List.of(
+            new Columna<>("id", ProductoDetalleDto::getId),
+            new Columna<>("codigoProducto", ProductoDetalleDto::getCodigoProducto),
+            new Columna<>("nombre", ProductoDetalleDto::getNombre),
+            new Columna<>("descripcion", ProductoDetalleDto::getDescripcion),
+            new Columna<>("precio", ProductoDetalleDto::getPrecio),
+            new Columna<>("cantidadStock", ProductoDetalleDto::getCantidadStock),
+            new Columna<>("idCategoria", ProductoDetalleDto::getIdCategoria),
+            new Columna<>("categoria", ProductoDetalleDto::getCategoria),
+            new Columna<>("urlImagen", ProductoDetalleDto::getUrlImagen),
+            new Columna<>("destacado", ProductoDetalleDto::getDestacado),
+            new Columna<>("fechaCreacion", ProductoDetalleDto::getFechaCreacion),
+            new Columna<>("fechaModificacion", ProductoDetalleDto::getFechaModificacion));
+
+    private static final List<Columna<Pedido>> COLUMNAS_PEDIDO = List.of(
+            new Columna<>("id", Pedido::getId),
+            new Columna<>("numeroPedido", Pedido::getNumeroPedido),
+            new Columna<>("idUsuario", Pedido::getIdUsuario),
+            new Columna<>("estadoPedido", Pedido::getEstadoPedido),
+            new Columna<>("estadoPago", Pedido::getEstadoPago),
+            new Columna<>("metodoPago", Pedido::getMetodoPago),
+            new Columna<>("montoTotal", Pedido::getMontoTotal),
+            new Columna<>("montoEnvio", Pedido::getMontoEnvio),
+            new Columna<>("montoImpuestos", Pedido::getMontoImpuestos),
+            new Columna<>("montoDescuento", Pedido::getMontoDescuento),
+            new Columna<>("numeroTicket", Pedido::getNumeroTicket),
+            new Columna<>("clienteNombre", Pedido::getClienteNombre),
+            new Columna<>("clienteIdentificacion", Pedido::getClienteIdentificacion),
+            new Columna<>("clienteEmail", Pedido::getClienteEmail),
+            new Columna<>("clienteTelefono", Pedido::getClienteTelefono),
+            new Columna<>("clienteDireccion", Pedido::getClienteDireccion),
+            new Columna<>("clienteCiudad", Pedido::getClienteCiudad),
+            new Columna<>("clientePais", Pedido::getClientePais),
+            new Columna<>("fechaCreacion", Pedido::getFechaCreacion),
+            new Columna<>("fechaModificacion", Pedido::getFechaModificacion));
+
+    private final ProductoRepository productoRepository;
+    private final PedidoRepository pedidoRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private record Columna<T>(String nombre, Function<T, Object> valor) {
+    }
+
+    /**
+     * Valida un rango de fechas opcional; ambos extremos son inclusivos
+     *
+     * @throws IllegalArgumentException si desde es posterior a hasta
+     */
+    public static void validarRangoFechas(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+    }
+
+    /**
+     * Escribe los productos filtrados por categoría y fecha de modificación.
+     *
+     * @return cantidad de filas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long exportarProductos(Long idCategoria, LocalDate desde, LocalDate hasta,
+                                  FormatoArchivo formato, OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        try (Stream<ProductoDetalleDto> productos = productoRepository.streamDetallesParaExportar(
+                idCategoria, inicioDe(desde), finDe(hasta))) {
+            long filas = escribir(productos, COLUMNAS_PRODUCTO, formato, salida);
+            log.info("Exportados {} productos en {} ms", filas, System.currentTimeMillis() - inicio);
+            return filas;
+        }
+    }
+
+    /**
+     * Escribe los pedidos filtrados por fecha de creación y estados.
+     *
+     * @return cantidad de filas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long exportarPedidos(LocalDate desde, LocalDate hasta, Pedido.EstadoPedido estadoPedido,
+                                Pedido.EstadoPago estadoPago, FormatoArchivo formato,
+                                OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        try (Stream<Pedido> pedidos = pedidoRepository.streamParaExportar(
+                inicioDe(desde), finDe(hasta), estadoPedido, estadoPago)) {
+            long filas = escribir(pedidos, COLUMNAS_PEDIDO, formato, salida);
+            log.info("Exportados {} pedidos en {} ms", filas, System.currentTimeMillis() - inicio);
+            return filas;
+        }
+    }
+
+    private <T> long escribir(Stream<T> filas, List<Columna<T>> columnas, FormatoArchivo formato,
+                              OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        if (formato == FormatoArchivo.CSV) {
+            for (int i = 0; i < columnas.size(); i++) {
+                if (i > 0) {
+                    escritor.write(',');
+                }
+                escritor.write(columnas.get(i).nombre());
+            }
+            escritor.write('\n');
+        }
+
+        long total = 0;
+        Iterator<T> iterador = filas.iterator();
+        while (iterador.hasNext()) {
+            T fila = iterador.next();
+            if (formato == FormatoArchivo.CSV) {
+                escribirCsv(escritor, fila, columnas);
+            } else {
+                Map<String, Object> valores = new LinkedHashMap<>();
+                columnas.forEach(columna -> valores.put(columna.nombre(), columna.valor().apply(fila)));
+                escritor.write(objectMapper.writeValueAsString(valores));
+                escritor.write('\n');
+            }
+            // Las entidades leídas del cursor no deben acumularse en el contexto de persistencia
+            if (++total % FILAS_POR_LIMPIEZA == 0) {
+                entityManager.clear();
+            }
+        }
+        escritor.flush();
+        return total;
+    }
+
+    private <T> void escribirCsv(Writer escritor, T fila, List<Columna<T>> columnas) throws IOException {
+        for (int i = 0; i < columnas.size(); i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            Object valor = columnas.get(i).valor().apply(fila);
+            if (valor instanceof String texto) {
+                escritor.write(escaparCsv(neutralizarFormula(texto)));
+            } else if (valor != null) {
+                escritor.write(escaparCsv(valor instanceof BigDecimal decimal ? decimal.toPlainString() : valor.toString()));
+            }
+        }
+        escritor.write('\n');
+    }
+
+    /**
+     * Antepone un apóstrofo a los textos que una hoja de cálculo interpretaría
+     * como fórmula. Solo se aplica a textos: los números negativos se exportan tal cual
+     */
+    private static String neutralizarFormula(String valor) {
+        if (!valor.isEmpty() && "=+-@\t\r".indexOf(valor.charAt(0)) >= 0) {
+            return "'" + valor;
+        }
+        return valor;
+    }
+
+    private static String escaparCsv(String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+
+    private static LocalDateTime inicioDe(LocalDate fecha) {
+        return fecha != null ? fecha.atStartOfDay() : null;
+    }
+
+    // El filtro hasta incluye el día completo
+    private static LocalDateTime finDe(LocalDate fecha) {
+        return fecha != null ? fecha.plusDays(1).atStartOfDay() : null;
+    }
+}
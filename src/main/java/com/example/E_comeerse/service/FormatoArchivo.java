@@ -0,0 +1,41 @@
+package com.example.E_comeerse.service;
+
+import java.util.Locale;
+
+/**
+ * Formatos de archivo aceptados en la importación y exportación masivas
+ */
+public enum FormatoArchivo {
+
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String tipoContenido;
+    private final String extension;
+
+    FormatoArchivo(String tipoContenido, String extension) {
+        this.tipoContenido = tipoContenido;
+        this.extension = extension;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Formato a partir de su nombre o extensión (csv, ndjson o jsonl)
+     *
+     * @throws IllegalArgumentException si el formato no está soportado
+     */
+    public static FormatoArchivo desde(String valor) {
+        return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+            case "csv" -> CSV;
+            case "ndjson", "jsonl" -> NDJSON;
+            default -> throw new IllegalArgumentException("Formato no soportado: " + valor + ". Use csv o ndjson");
+        };
+    }
+}
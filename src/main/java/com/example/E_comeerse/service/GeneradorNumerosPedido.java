@@ -0,0 +1,134 @@
+package com.example.E_comeerse.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Números de pedido y de ticket, únicos entre todas las instancias.
+ *
+ * Cada número sale de una secuencia de la base de datos que avanza de a un bloque
+ * por llamada: la instancia reserva el bloque completo y reparte sus números desde
+ * memoria con un incremento atómico, así la mayoría de los pedidos no consulta la
+ * base de datos ni toma bloqueos. Dos instancias nunca reciben el mismo bloque.
+ *
+ * El bloque siguiente se pide antes de que se agote el vigente, cuando quedan pocos
+ * números. Se pide con nextval en la conexión del pedido que lo necesita (nextval no
+ * se deshace con la transacción): ningún hilo espera a otro ni a una segunda conexión
+ * mientras retiene la suya. Las secuencias se crean al iniciar la aplicación.
+ *
+ * Los números crecen dentro de cada instancia pero no son consecutivos: con varias
+ * instancias se intercalan sus bloques, y los números sin usar de un bloque se
+ * pierden al reiniciar, igual que los de un pedido que se deshace.
+ *
+ * Los formatos tienen más dígitos que los números generados antes (PED- con 8
+ * caracteres hexadecimales y tickets de 6 dígitos), para no repetir ninguno de ellos.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GeneradorNumerosPedido {
+
+    private static final String SECUENCIA_PEDIDOS = "pedidos_numero_seq";
+    private static final String SECUENCIA_TICKETS = "pedidos_ticket_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${pedido.numeracion.tamano-bloque:100}")
+    private int tamanoBloque;
+
+    private Secuencia pedidos;
+    private Secuencia tickets;
+
+    /**
+     * Números [inicio, fin) reservados en la base de datos para esta instancia
+     */
+    private static final class Bloque {
+        private final AtomicLong siguiente;
+        private final long fin;
+        // Al entregar este número se pide el bloque siguiente
+        private final long aviso;
+        private final AtomicReference<Bloque> sucesor = new AtomicReference<>();
+
+        private Bloque(long inicio, long fin) {
+            this.siguiente = new AtomicLong(inicio);
+            this.fin = fin;
+            this.aviso = fin - Math.max(1, (fin - inicio) / 4);
+        }
+    }
+
+    /**
+     * Una secuencia de la base de datos con el bloque vigente de la instancia
+     */
+    private final class Secuencia {
+        private final String nombre;
+        // El bloque mide lo que avanza la secuencia, aunque se haya creado con otro tamaño
+        private final long incremento;
+        // Bloque vacío: el primer número pide un bloque a la base de datos
+        private final AtomicReference<Bloque> bloque = new AtomicReference<>(new Bloque(0, 0));
+
+        private Secuencia(String nombre) {
+            this.nombre = nombre;
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + nombre + " START WITH 1 INCREMENT BY " + tamanoBloque);
+            this.incremento = jdbcTemplate.queryForObject("SELECT increment_by FROM pg_sequences "
+                    + "WHERE schemaname = current_schema() AND sequencename = ?", Long.class, nombre);
+        }
+
+        long siguiente() {
+            while (true) {
+                Bloque actual = bloque.get();
+                long numero = actual.siguiente.getAndIncrement();
+                if (numero < actual.fin) {
+                    if (numero == actual.aviso) {
+                        // Quedan pocos números: el hilo que entrega el aviso pide el bloque siguiente
+                        actual.sucesor.compareAndSet(null, pedirBloque());
+                    }
+                    return numero;
+                }
+                // Agotado sin bloque siguiente todavía (ráfaga o primer uso): cada hilo puede pedir uno,
+                // solo se instala el primero y los números de los demás se pierden
+                if (actual.sucesor.get() == null) {
+                    actual.sucesor.compareAndSet(null, pedirBloque());
+                }
+                bloque.compareAndSet(actual, actual.sucesor.get());
+            }
+        }
+
+        private Bloque pedirBloque() {
+            Long inicio = jdbcTemplate.queryForObject("SELECT nextval('" + nombre + "')", Long.class);
+            log.debug("Bloque de números {} reservado: {} a {}", nombre, inicio, inicio + incremento - 1);
+            return new Bloque(inicio, inicio + incremento);
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        if (tamanoBloque < 1) {
+            throw new IllegalStateException("pedido.numeracion.tamano-bloque debe ser mayor a 0");
+        }
+        // Las secuencias se crean aquí, fuera de cualquier pedido: si se crearan en la
+        // transacción de un pedido que se deshace, desaparecerían con él
+        pedidos = new Secuencia(SECUENCIA_PEDIDOS);
+        tickets = new Secuencia(SECUENCIA_TICKETS);
+    }
+
+    /**
+     * Siguiente número de pedido, por ejemplo PED-0000000123
+     */
+    public String siguienteNumeroPedido() {
+        return String.format("PED-%010d", pedidos.siguiente());
+    }
+
+    /**
+     * Siguiente número de ticket de factura, por ejemplo #00000123
+     */
+    public String siguienteNumeroTicket() {
+        return String.format("#%08d", tickets.siguiente());
+    }
+}
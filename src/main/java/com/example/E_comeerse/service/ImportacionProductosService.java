@@ -0,0 +1,597 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ResultadoImportacionDto;
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva del catálogo desde archivos CSV o NDJSON.
+ * El archivo se lee en streaming y se escribe en lotes con un upsert por
+ * código de producto, de modo que la memoria usada no depende del tamaño
+ * del archivo. Cada fila se valida con las mismas reglas que el alta de
+ * productos; las filas inválidas se informan sin detener la importación.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportacionProductosService {
+
+    private static final int TAMANO_LOTE = 500;
+    private static final int MAXIMO_ERRORES = 1000;
+    // Límites de un registro CSV con un campo entre comillas que abarca varias líneas
+    private static final int MAXIMO_LINEAS_REGISTRO = 100;
+    private static final int MAXIMO_CARACTERES_REGISTRO = 100_000;
+
+    // Las celdas vacías conservan el valor actual del producto al actualizar
+    private static final String SQL_UPSERT =
+            "INSERT INTO productos (codigo_producto, nombre_producto, descripcion, precio, cantidad_stock, "
+            + "id_categoria, categoria, url_imagen, destacado, fecha_creacion, fecha_modificacion) "
+            + "VALUES (?, ?, ?, ?, COALESCE(?, 0), ?, ?, ?, COALESCE(?, FALSE), ?, ?) "
+            + "ON CONFLICT (codigo_producto) DO UPDATE SET "
+            + "nombre_producto = EXCLUDED.nombre_producto, "
+            + "precio = EXCLUDED.precio, "
+            + "descripcion = COALESCE(EXCLUDED.descripcion, productos.descripcion), "
+            + "cantidad_stock = COALESCE(?, productos.cantidad_stock), "
+            + "id_categoria = COALESCE(EXCLUDED.id_categoria, productos.id_categoria), "
+            + "categoria = COALESCE(EXCLUDED.categoria, productos.categoria), "
+            + "url_imagen = COALESCE(EXCLUDED.url_imagen, productos.url_imagen), "
+            + "destacado = COALESCE(?, productos.destacado), "
+            + "fecha_modificacion = EXCLUDED.fecha_modificacion";
+
+    // Nombres de columna aceptados (en minúsculas, sin espacios ni guiones bajos) y su campo
+    private static final Map<String, String> COLUMNAS = Map.ofEntries(
+            Map.entry("codigoproducto", "codigoProducto"),
+            Map.entry("codigo", "codigoProducto"),
+            Map.entry("nombre", "nombre"),
+            Map.entry("nombreproducto", "nombre"),
+            Map.entry("descripcion", "descripcion"),
+            Map.entry("precio", "precio"),
+            Map.entry("cantidadstock", "cantidadStock"),
+            Map.entry("stock", "cantidadStock"),
+            Map.entry("idcategoria", "idCategoria"),
+            Map.entry("categoria", "categoria"),
+            Map.entry("urlimagen", "urlImagen"),
+            Map.entry("destacado", "destacado"));
+
+    private static final List<String> COLUMNAS_OBLIGATORIAS = List.of("codigoProducto", "nombre", "precio");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductoRepository productoRepository;
+    private final IndicesCatalogo indicesCatalogo;
+    private final CacheCatalogoService cacheCatalogo;
+    private final VentasRelampago ventasRelampago;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    /**
+     * Fila leída del archivo: valores por campo o el error que impidió leerla
+     */
+    private record Fila(long numero, Map<String, String> valores, String error) {
+    }
+
+    private record FilaProducto(long numero, Producto producto) {
+    }
+
+    /**
+     * Determina el formato a partir del parámetro explícito o, si no se indica,
+     * de la extensión del archivo.
+     */
+    public static FormatoArchivo resolverFormato(String formato, String nombreArchivo) {
+        String valor = formato;
+        if (valor == null || valor.isBlank()) {
+            if (nombreArchivo == null || !nombreArchivo.contains(".")) {
+                throw new IllegalArgumentException("No se pudo determinar el formato del archivo; indique csv o ndjson");
+            }
+            valor = nombreArchivo.substring(nombreArchivo.lastIndexOf('.') + 1);
+        }
+        return FormatoArchivo.desde(valor);
+    }
+
+    /**
+     * Importa productos creando o actualizando por código de producto.
+     *
+     * @param entrada contenido del archivo en UTF-8
+     * @param formato formato del archivo
+     * @return resumen con filas importadas, errores por fila y rendimiento
+     * @throws IllegalArgumentException si la cabecera CSV no tiene las columnas obligatorias
+     */
+    public ResultadoImportacionDto importar(InputStream entrada, FormatoArchivo formato) throws IOException {
+        long inicio = System.nanoTime();
+        ResultadoImportacionDto resultado = new ResultadoImportacionDto();
+        resultado.setFormato(formato.getExtension());
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            Iterator<Fila> filas = formato == FormatoArchivo.CSV ? new LectorCsv(lector) : new LectorNdjson(lector);
+            List<FilaProducto> lote = new ArrayList<>(TAMANO_LOTE);
+            while (filas.hasNext()) {
+                Fila fila = filas.next();
+                resultado.setFilasLeidas(resultado.getFilasLeidas() + 1);
+                if (fila.error() != null) {
+                    registrarError(resultado, fila.numero(), fila.valores().get("codigoProducto"), fila.error());
+                    continue;
+                }
+                try {
+                    Producto producto = aProducto(fila.valores());
+                    validar(producto);
+                    lote.add(new FilaProducto(fila.numero(), producto));
+                } catch (IllegalArgumentException e) {
+                    registrarError(resultado, fila.numero(), fila.valores().get("codigoProducto"), e.getMessage());
+                }
+                if (lote.size() == TAMANO_LOTE) {
+                    guardarLote(lote, resultado);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                guardarLote(lote, resultado);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long nanos = Math.max(System.nanoTime() - inicio, 1);
+        resultado.setDuracionMs(nanos / 1_000_000);
+        resultado.setFilasPorSegundo(Math.round(resultado.getFilasLeidas() * 1e10 / nanos) / 10.0);
+        log.info("Importación {} terminada: {} filas leídas, {} importadas, {} con error en {} ms",
+                resultado.getFormato(), resultado.getFilasLeidas(), resultado.getFilasImportadas(),
+                resultado.getFilasConError(), resultado.getDuracionMs());
+        return resultado;
+    }
+
+    /**
+     * Escribe un lote en una sola transacción. Si la base de datos rechaza alguna
+     * fila, el lote se reintenta fila a fila para informar solo las que fallan.
+     */
+    private void guardarLote(List<FilaProducto> filas, ResultadoImportacionDto resultado) {
+        List<FilaProducto> lote = excluirVentasRelampago(filas, resultado);
+        if (lote.isEmpty()) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        List<FilaProducto> guardadas;
+        try {
+            transactionTemplate.executeWithoutResult(estado -> jdbcTemplate.batchUpdate(SQL_UPSERT, lote,
+                    lote.size(), (ps, fila) -> asignarParametros(ps, fila.producto(), ahora)));
+            guardadas = lote;
+        } catch (DataAccessException e) {
+            log.debug("Lote rechazado, reintentando fila a fila: {}", e.getMessage());
+            guardadas = new ArrayList<>(lote.size());
+            for (FilaProducto fila : lote) {
+                try {
+                    jdbcTemplate.update(SQL_UPSERT, ps -> asignarParametros(ps, fila.producto(), ahora));
+                    guardadas.add(fila);
+                } catch (DataAccessException ex) {
+                    registrarError(resultado, fila.numero(), fila.producto().getCodigoProducto(),
+                            "Rechazado por la base de datos: " + primeraLinea(ex.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+        resultado.setFilasImportadas(resultado.getFilasImportadas() + guardadas.size());
+        reindexar(guardadas);
+    }
+
+    /**
+     * Informa como error las filas que cambian el stock de un producto en venta
+     * relámpago: su stock se lleva en memoria y se concilia con la base de datos,
+     * así que el archivo no puede reemplazarlo
+     */
+    private List<FilaProducto> excluirVentasRelampago(List<FilaProducto> lote, ResultadoImportacionDto resultado) {
+        if (!ventasRelampago.hayActivas()) {
+            return lote;
+        }
+        Set<String> conStock = lote.stream()
+                .filter(fila -> fila.producto().getCantidadStock() != null)
+                .map(fila -> fila.producto().getCodigoProducto())
+                .collect(Collectors.toSet());
+        if (conStock.isEmpty()) {
+            return lote;
+        }
+        Set<String> enVenta = productoRepository.findByCodigoProductoIn(conStock).stream()
+                .filter(producto -> ventasRelampago.gestiona(producto.getId()))
+                .map(Producto::getCodigoProducto)
+                .collect(Collectors.toSet());
+        if (enVenta.isEmpty()) {
+            return lote;
+        }
+        List<FilaProducto> escribibles = new ArrayList<>(lote.size());
+        for (FilaProducto fila : lote) {
+            if (fila.producto().getCantidadStock() != null && enVenta.contains(fila.producto().getCodigoProducto())) {
+                registrarError(resultado, fila.numero(), fila.producto().getCodigoProducto(),
+                        "El producto está en venta relámpago: desactive la venta relámpago antes de cambiar el stock");
+            } else {
+                escribibles.add(fila);
+            }
+        }
+        return escribibles;
+    }
+
+    private void asignarParametros(PreparedStatement ps, Producto producto, LocalDateTime ahora) throws SQLException {
+        Timestamp fecha = Timestamp.valueOf(ahora);
+        ps.setString(1, producto.getCodigoProducto());
+        ps.setString(2, producto.getNombre());
+        ps.setString(3, producto.getDescripcion());
+        ps.setBigDecimal(4, producto.getPrecio());
+        ps.setObject(5, producto.getCantidadStock(), Types.INTEGER);
+        ps.setObject(6, producto.getIdCategoria(), Types.BIGINT);
+        ps.setString(7, producto.getCategoria());
+        ps.setString(8, producto.getUrlImagen());
+        ps.setObject(9, producto.getDestacado(), Types.BOOLEAN);
+        ps.setTimestamp(10, fecha);
+        ps.setTimestamp(11, fecha);
+        ps.setObject(12, producto.getCantidadStock(), Types.INTEGER);
+        ps.setObject(13, producto.getDestacado(), Types.BOOLEAN);
+    }
+
+    /**
+     * Actualiza los índices en memoria y descarta la caché del catálogo; se
+     * desconocen las categorías anteriores de los productos actualizados.
+     */
+    private void reindexar(List<FilaProducto> guardadas) {
+        if (guardadas.isEmpty()) {
+            return;
+        }
+        Set<String> codigos = guardadas.stream()
+                .map(fila -> fila.producto().getCodigoProducto())
+                .collect(Collectors.toSet());
+        productoRepository.findByCodigoProductoIn(codigos).forEach(indicesCatalogo::indexar);
+        cacheCatalogo.invalidarCatalogo();
+    }
+
+    private Producto aProducto(Map<String, String> valores) {
+        Producto producto = new Producto();
+        producto.setCodigoProducto(texto(valores, "codigoProducto"));
+        producto.setNombre(texto(valores, "nombre"));
+        producto.setDescripcion(texto(valores, "descripcion"));
+        producto.setPrecio(decimal(valores, "precio"));
+        producto.setCantidadStock(entero(valores, "cantidadStock"));
+        producto.setIdCategoria(largo(valores, "idCategoria"));
+        producto.setCategoria(texto(valores, "categoria"));
+        producto.setUrlImagen(ProductoServiceImpl.normalizarUrlImagen(texto(valores, "urlImagen")));
+        producto.setDestacado(booleano(valores, "destacado"));
+        return producto;
+    }
+
+    private void validar(Producto producto) {
+        if (producto.getCodigoProducto() == null) {
+            throw new IllegalArgumentException("El código de producto es obligatorio para importar");
+        }
+        ProductoServiceImpl.validarProducto(producto);
+        Set<ConstraintViolation<Producto>> violaciones = validator.validate(producto);
+        if (!violaciones.isEmpty()) {
+            throw new IllegalArgumentException(violaciones.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private void registrarError(ResultadoImportacionDto resultado, long fila, String codigo, String mensaje) {
+        resultado.setFilasConError(resultado.getFilasConError() + 1);
+        if (resultado.getErrores().size() < MAXIMO_ERRORES) {
+            resultado.getErrores().add(new ResultadoImportacionDto.ErrorFila(fila, codigo, mensaje));
+        } else {
+            resultado.setErroresTruncados(true);
+        }
+    }
+
+    private static String texto(Map<String, String> valores, String campo) {
+        String valor = valores.get(campo);
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        valor = valor.trim();
+        // Quitar el apóstrofo con que la exportación neutraliza las fórmulas
+        if (valor.length() > 1 && valor.charAt(0) == '\'' && "=+-@".indexOf(valor.charAt(1)) >= 0) {
+            return valor.substring(1);
+        }
+        return valor;
+    }
+
+    private static BigDecimal decimal(Map<String, String> valores, String campo) {
+        String valor = texto(valores, campo);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + campo + ": " + valor);
+        }
+    }
+
+    private static Integer entero(Map<String, String> valores, String campo) {
+        String valor = texto(valores, campo);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + campo + ": " + valor);
+        }
+    }
+
+    private static Long largo(Map<String, String> valores, String campo) {
+        String valor = texto(valores, campo);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + campo + ": " + valor);
+        }
+    }
+
+    private static Boolean booleano(Map<String, String> valores, String campo) {
+        String valor = texto(valores, campo);
+        if (valor == null) {
+            return null;
+        }
+        return switch (valor.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "si", "sí" -> true;
+            case "false", "0", "no" -> false;
+            default -> throw new IllegalArgumentException("Valor inválido para " + campo + ": " + valor);
+        };
+    }
+
+    private static String primeraLinea(String mensaje) {
+        if (mensaje == null) {
+            return "error desconocido";
+        }
+        int salto = mensaje.indexOf('\n');
+        return salto < 0 ? mensaje : mensaje.substring(0, salto);
+    }
+
+    private static String campoDeColumna(String columna) {
+        String clave = columna.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+        return COLUMNAS.get(clave);
+    }
+
+    /**
+     * Lector de filas CSV (RFC 4180) con cabecera. Acepta coma o punto y coma
+     * como separador y campos entre comillas que abarcan varias líneas.
+     */
+    private static class LectorCsv implements Iterator<Fila> {
+
+        private final BufferedReader lector;
+        private final char separador;
+        private final List<String> campos = new ArrayList<>();
+        private long linea;
+        private Fila siguiente;
+
+        // Registro en curso: se conserva entre líneas mientras un campo entre comillas sigue abierto
+        private final List<String> valores = new ArrayList<>();
+        private final StringBuilder campo = new StringBuilder();
+        private boolean entreComillas;
+
+        LectorCsv(BufferedReader lector) throws IOException {
+            this.lector = lector;
+            String cabecera = lector.readLine();
+            if (cabecera == null) {
+                throw new IllegalArgumentException("El archivo está vacío");
+            }
+            linea = 1;
+            if (cabecera.startsWith("\uFEFF")) {
+                cabecera = cabecera.substring(1);
+            }
+            separador = cabecera.indexOf(',') < 0 && cabecera.indexOf(';') >= 0 ? ';' : ',';
+
+            reiniciar();
+            if (!procesar(cabecera)) {
+                throw new IllegalArgumentException("Cabecera inválida: comillas");
+            }
+            for (String columna : valores) {
+                campos.add(campoDeColumna(columna));
+            }
+            List<String> faltantes = COLUMNAS_OBLIGATORIAS.stream()
+                    .filter(campo -> !campos.contains(campo))
+                    .toList();
+            if (!faltantes.isEmpty()) {
+                throw new IllegalArgumentException("Faltan columnas obligatorias: " + String.join(", ", faltantes));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (siguiente == null) {
+                siguiente = leer();
+            }
+            return siguiente != null;
+        }
+
+        @Override
+        public Fila next() {
+            hasNext();
+            Fila fila = siguiente;
+            siguiente = null;
+            return fila;
+        }
+
+        private Fila leer() {
+            try {
+                String texto;
+                do {
+                    texto = lector.readLine();
+                    linea++;
+                } while (texto != null && texto.isBlank());
+                if (texto == null) {
+                    return null;
+                }
+                long numero = linea;
+
+                // Comillas abiertas: el campo continúa en la línea siguiente, que se procesa
+                // a continuación sin volver a recorrer las anteriores
+                int lineas = 1;
+                long caracteres = texto.length();
+                reiniciar();
+                boolean completo = procesar(texto);
+                while (!completo) {
+                    if (lineas >= MAXIMO_LINEAS_REGISTRO || caracteres > MAXIMO_CARACTERES_REGISTRO) {
+                        // La lectura sigue en la línea siguiente como un registro nuevo
+                        return new Fila(numero, Map.of(), "Comillas sin cerrar: el registro supera "
+                                + MAXIMO_LINEAS_REGISTRO + " líneas o " + MAXIMO_CARACTERES_REGISTRO + " caracteres");
+                    }
+                    String continuacion = lector.readLine();
+                    if (continuacion == null) {
+                        return new Fila(numero, Map.of(), "Comillas sin cerrar");
+                    }
+                    linea++;
+                    lineas++;
+                    caracteres += continuacion.length() + 1;
+                    completo = procesar(continuacion);
+                }
+
+                if (valores.size() != campos.size()) {
+                    return new Fila(numero, Map.of(), "Se esperaban " + campos.size()
+                            + " columnas y la fila tiene " + valores.size());
+                }
+                Map<String, String> porCampo = new HashMap<>();
+                for (int i = 0; i < campos.size(); i++) {
+                    if (campos.get(i) != null) {
+                        porCampo.put(campos.get(i), valores.get(i));
+                    }
+                }
+                return new Fila(numero, porCampo, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Empieza un registro nuevo, descartando lo que quedara de uno sin cerrar
+        private void reiniciar() {
+            valores.clear();
+            campo.setLength(0);
+            entreComillas = false;
+        }
+
+        /**
+         * Agrega una línea al registro en curso; devuelve false si queda un campo
+         * entre comillas sin cerrar, que continúa en la línea siguiente
+         */
+        private boolean procesar(String registro) {
+            for (int i = 0; i < registro.length(); i++) {
+                char c = registro.charAt(i);
+                if (entreComillas) {
+                    if (c != '"') {
+                        campo.append(c);
+                    } else if (i + 1 < registro.length() && registro.charAt(i + 1) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else if (c == '"') {
+                    entreComillas = true;
+                } else if (c == separador) {
+                    valores.add(campo.toString());
+                    campo.setLength(0);
+                } else {
+                    campo.append(c);
+                }
+            }
+            if (entreComillas) {
+                campo.append('\n');
+                return false;
+            }
+            valores.add(campo.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Lector de filas NDJSON: un objeto JSON por línea
+     */
+    private class LectorNdjson implements Iterator<Fila> {
+
+        private final BufferedReader lector;
+        private long linea;
+        private Fila siguiente;
+
+        LectorNdjson(BufferedReader lector) {
+            this.lector = lector;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (siguiente == null) {
+                siguiente = leer();
+            }
+            return siguiente != null;
+        }
+
+        @Override
+        public Fila next() {
+            hasNext();
+            Fila fila = siguiente;
+            siguiente = null;
+            return fila;
+        }
+
+        private Fila leer() {
+            try {
+                String texto;
+                do {
+                    texto = lector.readLine();
+                    linea++;
+                } while (texto != null && texto.isBlank());
+                if (texto == null) {
+                    return null;
+                }
+
+                JsonNode nodo;
+                try {
+                    nodo = objectMapper.readTree(texto);
+                } catch (JsonProcessingException e) {
+                    return new Fila(linea, Map.of(), "JSON inválido: " + e.getOriginalMessage());
+                }
+                if (!nodo.isObject()) {
+                    return new Fila(linea, Map.of(), "Se esperaba un objeto JSON");
+                }
+                Map<String, String> porCampo = new HashMap<>();
+                nodo.properties().forEach(entrada -> {
+                    String campo = campoDeColumna(entrada.getKey());
+                    if (campo != null && !entrada.getValue().isNull()) {
+                        porCampo.put(campo, entrada.getValue().asText());
+                    }
+                });
+                return new Fila(linea, porCampo, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
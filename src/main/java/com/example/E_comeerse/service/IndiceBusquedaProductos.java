@@ -0,0 +1,154 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Producto;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice invertido en memoria sobre el catálogo de productos.
+ * Indexa nombre, descripción, categoría y código de producto con pesos por
+ * campo y ordena los resultados por relevancia (BM25).
+ */
+@Component
+public class IndiceBusquedaProductos extends IndiceCatalogo {
+
+    private static final float PESO_CODIGO = 4.0f;
+    private static final float PESO_NOMBRE = 3.0f;
+    private static final float PESO_CATEGORIA = 2.0f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+
+    // Parámetros estándar de BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    private final Map<Long, DocumentoIndexado> documentos = new HashMap<>();
+    private double longitudTotal;
+
+    /**
+     * Términos con su frecuencia ponderada y longitud de un producto indexado
+     */
+    private record DocumentoIndexado(Map<String, Float> terminos, float longitud) {
+    }
+
+    /**
+     * IDs de una página de resultados ordenados por relevancia y el total de coincidencias
+     */
+    public record ResultadoBusqueda(List<Long> ids, int total) {
+    }
+
+    /**
+     * Busca productos que contengan todos los términos de la consulta.
+     *
+     * @param texto texto libre de la consulta
+     * @param desde posición del primer resultado a devolver
+     * @param cantidad cantidad máxima de resultados a devolver
+     * @return IDs ordenados por relevancia y total de coincidencias
+     */
+    public ResultadoBusqueda buscar(String texto, int desde, int cantidad) {
+        List<String> terminos = AnalizadorTexto.analizar(texto).stream().distinct().toList();
+        if (terminos.isEmpty()) {
+            return new ResultadoBusqueda(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Float>> listas = new ArrayList<>(terminos.size());
+            for (String termino : terminos) {
+                Map<Long, Float> lista = postings.get(termino);
+                if (lista == null) {
+                    return new ResultadoBusqueda(List.of(), 0);
+                }
+                listas.add(lista);
+            }
+            // Intersección partiendo de la lista más corta
+            listas.sort(Comparator.comparingInt(Map::size));
+
+            int totalDocumentos = documentos.size();
+            double longitudPromedio = totalDocumentos > 0 ? longitudTotal / totalDocumentos : 1.0;
+
+            Map<Long, Double> puntajes = new HashMap<>();
+            candidatos:
+            for (Long idProducto : listas.get(0).keySet()) {
+                double puntaje = 0.0;
+                float longitud = documentos.get(idProducto).longitud();
+                for (Map<Long, Float> lista : listas) {
+                    Float frecuencia = lista.get(idProducto);
+                    if (frecuencia == null) {
+                        continue candidatos;
+                    }
+                    puntaje += bm25(frecuencia, lista.size(), totalDocumentos, longitud, longitudPromedio);
+                }
+                puntajes.put(idProducto, puntaje);
+            }
+
+            List<Long> ordenados = puntajes.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            if (desde >= ordenados.size()) {
+                return new ResultadoBusqueda(List.of(), ordenados.size());
+            }
+            return new ResultadoBusqueda(
+                    ordenados.subList(desde, Math.min(desde + cantidad, ordenados.size())),
+                    ordenados.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double bm25(float frecuencia, int documentosConTermino, int totalDocumentos,
+                        float longitud, double longitudPromedio) {
+        double idf = Math.log(1 + (totalDocumentos - documentosConTermino + 0.5) / (documentosConTermino + 0.5));
+        double normalizacion = K1 * (1 - B + B * longitud / longitudPromedio);
+        return idf * (frecuencia * (K1 + 1)) / (frecuencia + normalizacion);
+    }
+
+    @Override
+    protected void agregar(Producto producto) {
+        Map<String, Float> terminos = new HashMap<>();
+        agregarCampo(terminos, producto.getNombre(), PESO_NOMBRE);
+        agregarCampo(terminos, producto.getDescripcion(), PESO_DESCRIPCION);
+        agregarCampo(terminos, producto.getCategoria(), PESO_CATEGORIA);
+        agregarCampo(terminos, producto.getCodigoProducto(), PESO_CODIGO);
+
+        float longitud = 0f;
+        for (Map.Entry<String, Float> termino : terminos.entrySet()) {
+            postings.computeIfAbsent(termino.getKey(), t -> new HashMap<>()).put(producto.getId(), termino.getValue());
+            longitud += termino.getValue();
+        }
+        documentos.put(producto.getId(), new DocumentoIndexado(terminos, longitud));
+        longitudTotal += longitud;
+    }
+
+    @Override
+    protected void quitar(Long idProducto) {
+        DocumentoIndexado documento = documentos.remove(idProducto);
+        if (documento == null) {
+            return;
+        }
+        for (String termino : documento.terminos().keySet()) {
+            Map<Long, Float> lista = postings.get(termino);
+            if (lista != null) {
+                lista.remove(idProducto);
+                if (lista.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+        longitudTotal -= documento.longitud();
+    }
+
+    private void agregarCampo(Map<String, Float> terminos, String texto, float peso) {
+        for (String termino : AnalizadorTexto.analizar(texto)) {
+            terminos.merge(termino, peso, Float::sum);
+        }
+    }
+}
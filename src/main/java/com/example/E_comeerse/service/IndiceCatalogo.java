@@ -0,0 +1,131 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Producto;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Base de los índices en memoria derivados del catálogo de productos.
+ * Resuelve la concurrencia entre la carga inicial y las escrituras que llegan
+ * mientras se carga: un lote leído de la base de datos no sobrescribe una
+ * versión más nueva ya indexada ni revive un producto eliminado.
+ * Las subclases solo implementan cómo agregar y quitar un producto,
+ * siempre bajo el bloqueo de escritura.
+ */
+public abstract class IndiceCatalogo {
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, LocalDateTime> versiones = new HashMap<>();
+    private final Set<Long> eliminadosDuranteCarga = new HashSet<>();
+    private boolean cargando;
+    private volatile boolean listo;
+
+    /**
+     * Agrega un producto al índice. Se invoca con el bloqueo de escritura tomado
+     * y después de haber quitado cualquier versión anterior del mismo producto.
+     */
+    protected abstract void agregar(Producto producto);
+
+    /**
+     * Quita un producto del índice. Se invoca con el bloqueo de escritura tomado.
+     */
+    protected abstract void quitar(Long idProducto);
+
+    public boolean estaListo() {
+        return listo;
+    }
+
+    /**
+     * Agrega o reemplaza un producto en el índice
+     */
+    public void indexar(Producto producto) {
+        if (producto == null || producto.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            eliminadosDuranteCarga.remove(producto.getId());
+            reemplazar(producto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un producto del índice
+     */
+    public void eliminar(Long idProducto) {
+        lock.writeLock().lock();
+        try {
+            if (versiones.containsKey(idProducto)) {
+                quitar(idProducto);
+                versiones.remove(idProducto);
+            }
+            if (cargando) {
+                eliminadosDuranteCarga.add(idProducto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void iniciarCarga() {
+        lock.writeLock().lock();
+        try {
+            cargando = true;
+            eliminadosDuranteCarga.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int cargarLote(List<Producto> lote) {
+        lock.writeLock().lock();
+        try {
+            int cargados = 0;
+            for (Producto producto : lote) {
+                if (eliminadosDuranteCarga.contains(producto.getId())) {
+                    continue;
+                }
+                LocalDateTime existente = versiones.get(producto.getId());
+                if (existente != null && (producto.getFechaModificacion() == null
+                        || existente.isAfter(producto.getFechaModificacion()))) {
+                    continue;
+                }
+                reemplazar(producto);
+                cargados++;
+            }
+            return cargados;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void finalizarCarga(boolean exitosa) {
+        lock.writeLock().lock();
+        try {
+            cargando = false;
+            eliminadosDuranteCarga.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (exitosa) {
+            listo = true;
+        }
+    }
+
+    private void reemplazar(Producto producto) {
+        if (versiones.containsKey(producto.getId())) {
+            quitar(producto.getId());
+        }
+        agregar(producto);
+        versiones.put(producto.getId(), producto.getFechaModificacion());
+    }
+}
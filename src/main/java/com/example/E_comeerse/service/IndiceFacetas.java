@@ -0,0 +1,338 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Producto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice en memoria para navegar el catálogo por facetas.
+ * Cada producto ocupa una posición fija y cada valor de faceta es un conjunto
+ * de bits sobre esas posiciones (por categoría, por rango de precio, en stock,
+ * destacado), que se actualiza con cada escritura. Filtrar es intersectar
+ * conjuntos de bits y contar es calcular su cardinalidad, sin GROUP BY.
+ * Los precios se guardan además en un mapa ordenado para filtrar por rango
+ * arbitrario y recorrer los resultados ordenados por precio.
+ */
+@Component
+public class IndiceFacetas extends IndiceCatalogo {
+
+    private final BigDecimal[] limitesPrecio;
+
+    private final List<Long> idsPorPosicion = new ArrayList<>();
+    private final List<DatosFaceta> datosPorPosicion = new ArrayList<>();
+    private final Map<Long, Integer> posiciones = new HashMap<>();
+    private final Deque<Integer> posicionesLibres = new ArrayDeque<>();
+
+    private final BitSet todos = new BitSet();
+    private final BitSet enStock = new BitSet();
+    private final BitSet destacados = new BitSet();
+    private final Map<Long, BitSet> porCategoria = new HashMap<>();
+    private final Map<Long, String> nombresCategoria = new HashMap<>();
+    private final Map<String, BitSet> porNombreCategoria = new HashMap<>();
+    private final BitSet[] porRangoPrecio;
+    private final NavigableMap<BigDecimal, Set<Integer>> porPrecio = new TreeMap<>();
+
+    public IndiceFacetas(
+            @Value("${catalogo.facetas.limites-precio:50000,100000,200000,500000,1000000}") BigDecimal[] limitesPrecio) {
+        this.limitesPrecio = limitesPrecio.clone();
+        Arrays.sort(this.limitesPrecio);
+        this.porRangoPrecio = new BitSet[this.limitesPrecio.length + 1];
+        for (int i = 0; i < porRangoPrecio.length; i++) {
+            porRangoPrecio[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Valores de faceta de un producto, necesarios para quitarlo del índice
+     */
+    private record DatosFaceta(Long idCategoria, String claveCategoria, BigDecimal precio, int rangoPrecio) {
+    }
+
+    private enum Faceta { CATEGORIA, PRECIO, STOCK, DESTACADO }
+
+    /**
+     * Filtros de la consulta. Los valores nulos no filtran
+     */
+    public record Filtro(Long idCategoria, String categoria, BigDecimal precioMin, BigDecimal precioMax,
+                         Boolean enStock, Boolean destacado) {
+    }
+
+    public record ConteoCategoria(Long idCategoria, String categoria, int cantidad) {
+    }
+
+    public record ConteoRangoPrecio(BigDecimal desde, BigDecimal hasta, int cantidad) {
+    }
+
+    /**
+     * IDs de la página solicitada, total de coincidencias y conteos por faceta
+     */
+    public record ResultadoFacetas(List<Long> ids, int total, List<ConteoCategoria> categorias,
+                                   List<ConteoRangoPrecio> rangosPrecio, int enStock, int destacados) {
+    }
+
+    /**
+     * Filtra el catálogo y calcula los conteos de cada faceta. El conteo de una
+     * faceta aplica todos los filtros excepto el de esa misma faceta.
+     *
+     * @param filtro filtros a aplicar
+     * @param ordenPorPrecio true para ordenar por precio; false para ordenar por antigüedad (ID)
+     * @param ascendente dirección del ordenamiento
+     * @param desde posición del primer resultado a devolver
+     * @param cantidad cantidad máxima de resultados a devolver
+     */
+    public ResultadoFacetas consultar(Filtro filtro, boolean ordenPorPrecio, boolean ascendente, int desde, int cantidad) {
+        lock.readLock().lock();
+        try {
+            Map<Faceta, BitSet> filtros = construirFiltros(filtro);
+            BitSet resultados = combinar(filtros, null);
+
+            List<ConteoCategoria> categorias = new ArrayList<>();
+            BitSet sinFiltroCategoria = combinar(filtros, Faceta.CATEGORIA);
+            for (Map.Entry<Long, BitSet> categoria : porCategoria.entrySet()) {
+                int conteo = contarInterseccion(sinFiltroCategoria, categoria.getValue());
+                if (conteo > 0) {
+                    categorias.add(new ConteoCategoria(categoria.getKey(), nombresCategoria.get(categoria.getKey()), conteo));
+                }
+            }
+            categorias.sort(Comparator.comparingInt(ConteoCategoria::cantidad).reversed()
+                    .thenComparing(ConteoCategoria::idCategoria));
+
+            List<ConteoRangoPrecio> rangos = new ArrayList<>(porRangoPrecio.length);
+            BitSet sinFiltroPrecio = combinar(filtros, Faceta.PRECIO);
+            for (int i = 0; i < porRangoPrecio.length; i++) {
+                rangos.add(new ConteoRangoPrecio(
+                        i == 0 ? BigDecimal.ZERO : limitesPrecio[i - 1],
+                        i < limitesPrecio.length ? limitesPrecio[i] : null,
+                        contarInterseccion(sinFiltroPrecio, porRangoPrecio[i])));
+            }
+
+            int conteoEnStock = contarInterseccion(combinar(filtros, Faceta.STOCK), enStock);
+            int conteoDestacados = contarInterseccion(combinar(filtros, Faceta.DESTACADO), destacados);
+
+            List<Long> ids = ordenPorPrecio
+                    ? paginaPorPrecio(resultados, ascendente, desde, cantidad)
+                    : paginaPorId(resultados, ascendente, desde, cantidad);
+
+            return new ResultadoFacetas(ids, resultados.cardinality(), categorias, rangos, conteoEnStock, conteoDestacados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Faceta, BitSet> construirFiltros(Filtro filtro) {
+        Map<Faceta, BitSet> filtros = new HashMap<>();
+
+        if (filtro.idCategoria() != null || (filtro.categoria() != null && !filtro.categoria().isBlank())) {
+            BitSet categoria = (BitSet) todos.clone();
+            if (filtro.idCategoria() != null) {
+                categoria.and(porCategoria.getOrDefault(filtro.idCategoria(), new BitSet()));
+            }
+            if (filtro.categoria() != null && !filtro.categoria().isBlank()) {
+                categoria.and(porNombreCategoria.getOrDefault(claveCategoria(filtro.categoria()), new BitSet()));
+            }
+            filtros.put(Faceta.CATEGORIA, categoria);
+        }
+
+        if (filtro.precioMin() != null || filtro.precioMax() != null) {
+            NavigableMap<BigDecimal, Set<Integer>> rango = porPrecio;
+            if (filtro.precioMin() != null) {
+                rango = rango.tailMap(filtro.precioMin(), true);
+            }
+            if (filtro.precioMax() != null) {
+                rango = rango.headMap(filtro.precioMax(), true);
+            }
+            BitSet precio = new BitSet();
+            rango.values().forEach(posicionesPrecio -> posicionesPrecio.forEach(precio::set));
+            filtros.put(Faceta.PRECIO, precio);
+        }
+
+        if (filtro.enStock() != null) {
+            filtros.put(Faceta.STOCK, filtro.enStock() ? enStock : complemento(enStock));
+        }
+        if (filtro.destacado() != null) {
+            filtros.put(Faceta.DESTACADO, filtro.destacado() ? destacados : complemento(destacados));
+        }
+        return filtros;
+    }
+
+    private BitSet combinar(Map<Faceta, BitSet> filtros, Faceta excluida) {
+        BitSet resultado = (BitSet) todos.clone();
+        filtros.forEach((faceta, bits) -> {
+            if (faceta != excluida) {
+                resultado.and(bits);
+            }
+        });
+        return resultado;
+    }
+
+    private BitSet complemento(BitSet bits) {
+        BitSet resultado = (BitSet) todos.clone();
+        resultado.andNot(bits);
+        return resultado;
+    }
+
+    private static int contarInterseccion(BitSet a, BitSet b) {
+        BitSet interseccion = (BitSet) a.clone();
+        interseccion.and(b);
+        return interseccion.cardinality();
+    }
+
+    /**
+     * Los IDs son crecientes en el orden de creación, por lo que ordenar por ID
+     * equivale a ordenar por fecha de creación
+     */
+    private List<Long> paginaPorId(BitSet resultados, boolean ascendente, int desde, int cantidad) {
+        List<Long> ids = new ArrayList<>(resultados.cardinality());
+        resultados.stream().forEach(posicion -> ids.add(idsPorPosicion.get(posicion)));
+        ids.sort(ascendente ? Comparator.naturalOrder() : Comparator.reverseOrder());
+        if (desde >= ids.size()) {
+            return List.of();
+        }
+        return List.copyOf(ids.subList(desde, Math.min(desde + cantidad, ids.size())));
+    }
+
+    /**
+     * Recorre el índice de precios en orden y se detiene al completar la página;
+     * a igual precio desempata por ID en la misma dirección
+     */
+    private List<Long> paginaPorPrecio(BitSet resultados, boolean ascendente, int desde, int cantidad) {
+        NavigableMap<BigDecimal, Set<Integer>> precios = ascendente ? porPrecio : porPrecio.descendingMap();
+        Comparator<Long> desempate = ascendente ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        List<Long> pagina = new ArrayList<>(cantidad);
+        int saltados = 0;
+        for (Set<Integer> posicionesPrecio : precios.values()) {
+            List<Long> ids = new ArrayList<>();
+            for (Integer posicion : posicionesPrecio) {
+                if (resultados.get(posicion)) {
+                    ids.add(idsPorPosicion.get(posicion));
+                }
+            }
+            if (saltados + ids.size() <= desde) {
+                saltados += ids.size();
+                continue;
+            }
+            ids.sort(desempate);
+            for (Long id : ids) {
+                if (saltados < desde) {
+                    saltados++;
+                } else if (pagina.size() < cantidad) {
+                    pagina.add(id);
+                } else {
+                    return pagina;
+                }
+            }
+        }
+        return pagina;
+    }
+
+    @Override
+    protected void agregar(Producto producto) {
+        Integer libre = posicionesLibres.poll();
+        int posicion = libre != null ? libre : idsPorPosicion.size();
+        String clave = producto.getCategoria() != null && !producto.getCategoria().isBlank()
+                ? claveCategoria(producto.getCategoria())
+                : null;
+        DatosFaceta datos = new DatosFaceta(producto.getIdCategoria(), clave, producto.getPrecio(),
+                producto.getPrecio() != null ? rangoDe(producto.getPrecio()) : -1);
+        if (libre != null) {
+            idsPorPosicion.set(posicion, producto.getId());
+            datosPorPosicion.set(posicion, datos);
+        } else {
+            idsPorPosicion.add(producto.getId());
+            datosPorPosicion.add(datos);
+        }
+        posiciones.put(producto.getId(), posicion);
+
+        todos.set(posicion);
+        if (producto.getCantidadStock() != null && producto.getCantidadStock() > 0) {
+            enStock.set(posicion);
+        }
+        if (Boolean.TRUE.equals(producto.getDestacado())) {
+            destacados.set(posicion);
+        }
+        if (datos.idCategoria() != null) {
+            porCategoria.computeIfAbsent(datos.idCategoria(), c -> new BitSet()).set(posicion);
+            if (producto.getCategoria() != null) {
+                nombresCategoria.put(datos.idCategoria(), producto.getCategoria());
+            }
+        }
+        if (clave != null) {
+            porNombreCategoria.computeIfAbsent(clave, c -> new BitSet()).set(posicion);
+        }
+        if (datos.precio() != null) {
+            porPrecio.computeIfAbsent(datos.precio(), p -> new HashSet<>()).add(posicion);
+            porRangoPrecio[datos.rangoPrecio()].set(posicion);
+        }
+    }
+
+    @Override
+    protected void quitar(Long idProducto) {
+        Integer posicion = posiciones.remove(idProducto);
+        if (posicion == null) {
+            return;
+        }
+        DatosFaceta datos = datosPorPosicion.get(posicion);
+
+        todos.clear(posicion);
+        enStock.clear(posicion);
+        destacados.clear(posicion);
+        if (datos.idCategoria() != null) {
+            BitSet categoria = porCategoria.get(datos.idCategoria());
+            categoria.clear(posicion);
+            if (categoria.isEmpty()) {
+                porCategoria.remove(datos.idCategoria());
+                nombresCategoria.remove(datos.idCategoria());
+            }
+        }
+        if (datos.claveCategoria() != null) {
+            BitSet categoria = porNombreCategoria.get(datos.claveCategoria());
+            categoria.clear(posicion);
+            if (categoria.isEmpty()) {
+                porNombreCategoria.remove(datos.claveCategoria());
+            }
+        }
+        if (datos.precio() != null) {
+            Set<Integer> mismoPrecio = porPrecio.get(datos.precio());
+            mismoPrecio.remove(posicion);
+            if (mismoPrecio.isEmpty()) {
+                porPrecio.remove(datos.precio());
+            }
+            porRangoPrecio[datos.rangoPrecio()].clear(posicion);
+        }
+
+        idsPorPosicion.set(posicion, null);
+        datosPorPosicion.set(posicion, null);
+        posicionesLibres.push(posicion);
+    }
+
+    /**
+     * Índice del rango de precio: [0, l1), [l1, l2), ... [ln, ∞)
+     */
+    private int rangoDe(BigDecimal precio) {
+        int rango = 0;
+        while (rango < limitesPrecio.length && precio.compareTo(limitesPrecio[rango]) >= 0) {
+            rango++;
+        }
+        return rango;
+    }
+
+    private static String claveCategoria(String categoria) {
+        return categoria.trim().toLowerCase(Locale.ROOT);
+    }
+}
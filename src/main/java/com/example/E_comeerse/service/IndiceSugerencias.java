@@ -0,0 +1,312 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Producto;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice en memoria para autocompletar nombres de productos con tolerancia a errores.
+ * Las sugerencias por prefijo salen de un diccionario ordenado con cada nombre
+ * normalizado y cada sufijo que empieza en una palabra ("sony wh" encuentra
+ * "Audífonos Sony WH-1000"). Las palabras mal escritas se corrigen contra el
+ * vocabulario del catálogo: los trigramas acotan los candidatos y la distancia
+ * de edición (con transposiciones) decide la corrección.
+ */
+@Component
+public class IndiceSugerencias extends IndiceCatalogo {
+
+    private static final int LONGITUD_MINIMA_CORRECCION = 3;
+    private static final char FIN_PREFIJO = Character.MAX_VALUE;
+
+    private final NavigableMap<String, Set<Long>> nombres = new TreeMap<>();
+    private final NavigableMap<String, Set<Long>> sufijos = new TreeMap<>();
+    private final NavigableMap<String, Integer> vocabulario = new TreeMap<>();
+    private final Map<String, Set<String>> trigramas = new HashMap<>();
+    private final Map<Long, EntradaSugerencia> entradas = new HashMap<>();
+
+    /**
+     * Datos de un producto necesarios para sugerirlo y para quitarlo del índice
+     */
+    private record EntradaSugerencia(String nombre, String clave, List<String> sufijos, Set<String> palabras) {
+    }
+
+    /**
+     * Producto sugerido. Es aproximada cuando proviene de una consulta corregida
+     */
+    public record Sugerencia(Long idProducto, String nombre, boolean aproximada) {
+    }
+
+    /**
+     * Sugerencias encontradas y la consulta corregida, si hubo que corregirla
+     */
+    public record ResultadoSugerencias(List<Sugerencia> sugerencias, String consultaCorregida) {
+    }
+
+    /**
+     * Sugiere productos cuyo nombre contiene una palabra que empieza por el texto escrito.
+     * Si no se completan las sugerencias pedidas se corrigen las palabras que no
+     * existen en el catálogo y se repite la búsqueda por prefijo.
+     *
+     * @param texto lo que el usuario lleva escrito
+     * @param limite cantidad máxima de sugerencias
+     */
+    public ResultadoSugerencias sugerir(String texto, int limite) {
+        List<String> palabras = AnalizadorTexto.palabras(texto);
+        if (palabras.isEmpty()) {
+            return new ResultadoSugerencias(List.of(), null);
+        }
+
+        lock.readLock().lock();
+        try {
+            String consulta = String.join(" ", palabras);
+            Map<Long, Sugerencia> encontradas = new LinkedHashMap<>();
+            completar(consulta, limite, false, encontradas);
+
+            String consultaCorregida = null;
+            if (encontradas.size() < limite) {
+                String corregida = corregirPalabras(palabras, true);
+                if (!corregida.equals(consulta)) {
+                    int antes = encontradas.size();
+                    completar(corregida, limite, true, encontradas);
+                    if (encontradas.size() > antes) {
+                        consultaCorregida = corregida;
+                    }
+                }
+            }
+            return new ResultadoSugerencias(new ArrayList<>(encontradas.values()), consultaCorregida);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Corrige las palabras de una consulta que no existen en el vocabulario del catálogo.
+     *
+     * @return la consulta corregida, o null si no hubo nada que corregir
+     */
+    public String corregir(String texto) {
+        List<String> palabras = AnalizadorTexto.palabras(texto);
+        if (palabras.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            String corregida = corregirPalabras(palabras, false);
+            return corregida.equals(String.join(" ", palabras)) ? null : corregida;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Primero los nombres que empiezan por la consulta, luego los que la contienen
+     * al inicio de cualquier palabra; en orden alfabético dentro de cada grupo
+     */
+    private void completar(String prefijo, int limite, boolean aproximada, Map<Long, Sugerencia> encontradas) {
+        for (NavigableMap<String, Set<Long>> diccionario : List.of(nombres, sufijos)) {
+            for (Set<Long> ids : diccionario.subMap(prefijo, true, prefijo + FIN_PREFIJO, false).values()) {
+                for (Long id : ids) {
+                    if (encontradas.size() >= limite) {
+                        return;
+                    }
+                    encontradas.computeIfAbsent(id, i -> new Sugerencia(i, entradas.get(i).nombre(), aproximada));
+                }
+            }
+        }
+    }
+
+    /**
+     * La última palabra se trata como prefijo porque el usuario puede no haber terminado de escribirla
+     */
+    private String corregirPalabras(List<String> palabras, boolean ultimaEsPrefijo) {
+        List<String> corregidas = new ArrayList<>(palabras.size());
+        for (int i = 0; i < palabras.size(); i++) {
+            boolean comoPrefijo = ultimaEsPrefijo && i == palabras.size() - 1;
+            corregidas.add(corregirPalabra(palabras.get(i), comoPrefijo));
+        }
+        return String.join(" ", corregidas);
+    }
+
+    private String corregirPalabra(String palabra, boolean comoPrefijo) {
+        if (comoPrefijo ? existePrefijo(palabra) : vocabulario.containsKey(palabra)) {
+            return palabra;
+        }
+        if (palabra.length() < LONGITUD_MINIMA_CORRECCION) {
+            return palabra;
+        }
+
+        int distanciaMaxima = palabra.length() <= 4 ? 1 : 2;
+        String mejor = null;
+        int mejorDistancia = Integer.MAX_VALUE;
+        int mejorFrecuencia = 0;
+        for (String candidata : candidatas(palabra, comoPrefijo)) {
+            int distancia = comoPrefijo
+                    ? distanciaAPrefijo(palabra, candidata, distanciaMaxima)
+                    : distancia(palabra, candidata, distanciaMaxima);
+            if (distancia > distanciaMaxima) {
+                continue;
+            }
+            int frecuencia = vocabulario.get(candidata);
+            if (distancia < mejorDistancia || (distancia == mejorDistancia && frecuencia > mejorFrecuencia)) {
+                mejor = candidata;
+                mejorDistancia = distancia;
+                mejorFrecuencia = frecuencia;
+            }
+        }
+        if (mejor == null) {
+            return palabra;
+        }
+        // Para un prefijo se conserva solo la parte equivalente a lo escrito
+        return comoPrefijo && mejor.length() > palabra.length() + 1
+                ? mejor.substring(0, palabra.length())
+                : mejor;
+    }
+
+    private boolean existePrefijo(String prefijo) {
+        String siguiente = vocabulario.ceilingKey(prefijo);
+        return siguiente != null && siguiente.startsWith(prefijo);
+    }
+
+    /**
+     * Palabras del vocabulario que comparten al menos un trigrama con la palabra
+     */
+    private Set<String> candidatas(String palabra, boolean comoPrefijo) {
+        Set<String> candidatas = new HashSet<>();
+        for (String trigrama : trigramasDe(palabra, !comoPrefijo)) {
+            Set<String> palabras = trigramas.get(trigrama);
+            if (palabras != null) {
+                candidatas.addAll(palabras);
+            }
+        }
+        return candidatas;
+    }
+
+    private static Set<String> trigramasDe(String palabra, boolean marcarFin) {
+        String marcada = "$" + palabra + (marcarFin ? "$" : "");
+        Set<String> resultado = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= marcada.length(); i++) {
+            resultado.add(marcada.substring(i, i + 3));
+        }
+        return resultado;
+    }
+
+    /**
+     * Menor distancia entre lo escrito y los prefijos de la candidata de longitud parecida
+     */
+    private static int distanciaAPrefijo(String prefijo, String candidata, int maxima) {
+        int mejor = Integer.MAX_VALUE;
+        for (int longitud = prefijo.length() - maxima; longitud <= prefijo.length() + maxima; longitud++) {
+            if (longitud < 1 || longitud > candidata.length()) {
+                continue;
+            }
+            mejor = Math.min(mejor, distancia(prefijo, candidata.substring(0, longitud), maxima));
+        }
+        return mejor;
+    }
+
+    /**
+     * Distancia de edición con transposiciones de letras adyacentes (alineamiento óptimo).
+     * Devuelve maxima + 1 en cuanto se sabe que la supera
+     */
+    static int distancia(String a, String b, int maxima) {
+        if (Math.abs(a.length() - b.length()) > maxima) {
+            return maxima + 1;
+        }
+        int[] anterior2 = new int[b.length() + 1];
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int valor = Math.min(Math.min(anterior[j] + 1, actual[j - 1] + 1), anterior[j - 1] + costo);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    valor = Math.min(valor, anterior2[j - 2] + 1);
+                }
+                actual[j] = valor;
+                minimoFila = Math.min(minimoFila, valor);
+            }
+            if (minimoFila > maxima) {
+                return maxima + 1;
+            }
+            int[] temporal = anterior2;
+            anterior2 = anterior;
+            anterior = actual;
+            actual = temporal;
+        }
+        return anterior[b.length()];
+    }
+
+    @Override
+    protected void agregar(Producto producto) {
+        List<String> palabrasNombre = AnalizadorTexto.palabras(producto.getNombre());
+        if (palabrasNombre.isEmpty()) {
+            return;
+        }
+
+        String clave = String.join(" ", palabrasNombre);
+        List<String> sufijosNombre = new ArrayList<>(palabrasNombre.size() - 1);
+        for (int i = 1; i < palabrasNombre.size(); i++) {
+            sufijosNombre.add(String.join(" ", palabrasNombre.subList(i, palabrasNombre.size())));
+        }
+        Set<String> palabras = new HashSet<>(palabrasNombre);
+        palabras.addAll(AnalizadorTexto.palabras(producto.getCategoria()));
+
+        nombres.computeIfAbsent(clave, c -> new HashSet<>()).add(producto.getId());
+        for (String sufijo : sufijosNombre) {
+            sufijos.computeIfAbsent(sufijo, s -> new HashSet<>()).add(producto.getId());
+        }
+        for (String palabra : palabras) {
+            if (vocabulario.merge(palabra, 1, Integer::sum) == 1) {
+                for (String trigrama : trigramasDe(palabra, true)) {
+                    trigramas.computeIfAbsent(trigrama, t -> new HashSet<>()).add(palabra);
+                }
+            }
+        }
+        entradas.put(producto.getId(), new EntradaSugerencia(producto.getNombre(), clave, sufijosNombre, palabras));
+    }
+
+    @Override
+    protected void quitar(Long idProducto) {
+        EntradaSugerencia entrada = entradas.remove(idProducto);
+        if (entrada == null) {
+            return;
+        }
+        quitarDe(nombres, entrada.clave(), idProducto);
+        for (String sufijo : entrada.sufijos()) {
+            quitarDe(sufijos, sufijo, idProducto);
+        }
+        for (String palabra : entrada.palabras()) {
+            Integer restantes = vocabulario.computeIfPresent(palabra, (p, frecuencia) -> frecuencia > 1 ? frecuencia - 1 : null);
+            if (restantes == null) {
+                for (String trigrama : trigramasDe(palabra, true)) {
+                    quitarDe(trigramas, trigrama, palabra);
+                }
+            }
+        }
+    }
+
+    private static <K, V> void quitarDe(Map<K, Set<V>> mapa, K clave, V valor) {
+        Set<V> valores = mapa.get(clave);
+        if (valores != null) {
+            valores.remove(valor);
+            if (valores.isEmpty()) {
+                mapa.remove(clave);
+            }
+        }
+    }
+}
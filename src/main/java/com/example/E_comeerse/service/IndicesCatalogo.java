@@ -0,0 +1,110 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import com.example.E_comeerse.repository.ProductoSpecifications;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mantiene sincronizados todos los índices en memoria del catálogo.
+ * Al arrancar recorre el catálogo una sola vez por lotes (keyset) y alimenta
+ * cada índice; después propaga cada escritura de productos a todos ellos.
+ * Las escrituras hechas dentro de una transacción se propagan tras el commit,
+ * para que un rollback no deje en los índices un estado que nunca se guardó.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndicesCatalogo {
+
+    private static final int TAMANO_LOTE_CARGA = 1000;
+
+    private final ProductoRepository productoRepository;
+    private final List<IndiceCatalogo> indices;
+    private final VersionCatalogo versionCatalogo;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void construir() {
+        long inicio = System.currentTimeMillis();
+        indices.forEach(IndiceCatalogo::iniciarCarga);
+
+        boolean exitosa = false;
+        int total = 0;
+        try {
+            WindowIterator<Producto> productos = WindowIterator.of(posicion -> productoRepository.findBy(
+                            ProductoSpecifications.todos(),
+                            query -> query.sortBy(Sort.by("id")).limit(TAMANO_LOTE_CARGA).scroll(posicion)))
+                    .startingAt(ScrollPosition.keyset());
+
+            List<Producto> lote = new ArrayList<>(TAMANO_LOTE_CARGA);
+            while (productos.hasNext()) {
+                lote.add(productos.next());
+                if (lote.size() == TAMANO_LOTE_CARGA) {
+                    total += cargarLote(lote);
+                    lote.clear();
+                }
+            }
+            total += cargarLote(lote);
+            exitosa = true;
+        } catch (RuntimeException e) {
+            log.error("Error construyendo los índices del catálogo: {}", e.getMessage(), e);
+        } finally {
+            boolean resultado = exitosa;
+            indices.forEach(indice -> indice.finalizarCarga(resultado));
+        }
+
+        if (exitosa) {
+            // Las búsquedas dejan de responder desde la base de datos: las respuestas pueden cambiar
+            versionCatalogo.incrementar();
+            log.info("Índices del catálogo construidos ({}): {} productos en {} ms",
+                    indices.size(), total, System.currentTimeMillis() - inicio);
+        }
+    }
+
+    private int cargarLote(List<Producto> lote) {
+        int cargados = 0;
+        for (IndiceCatalogo indice : indices) {
+            cargados = Math.max(cargados, indice.cargarLote(lote));
+        }
+        return cargados;
+    }
+
+    /**
+     * Propaga el alta o modificación de un producto a todos los índices
+     */
+    public void indexar(Producto producto) {
+        alConfirmar(() -> indices.forEach(indice -> indice.indexar(producto)));
+    }
+
+    /**
+     * Propaga la eliminación de un producto a todos los índices
+     */
+    public void eliminar(Long idProducto) {
+        alConfirmar(() -> indices.forEach(indice -> indice.eliminar(idProducto)));
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
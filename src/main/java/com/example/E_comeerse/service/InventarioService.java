@@ -0,0 +1,191 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.exception.StockInsuficienteException;
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Descuento del stock de los productos de un pedido.
+ *
+ * Cada producto se descuenta con un UPDATE condicionado a que quede stock
+ * suficiente, todos en un solo lote JDBC: la base de datos decide si hay
+ * unidades, así dos pedidos simultáneos no pueden vender la misma unidad.
+ * Los productos se actualizan en orden de ID para que dos pedidos con
+ * productos en común bloqueen las filas en el mismo orden y no se interbloqueen.
+ *
+ * Los productos en venta relámpago no pasan por la base de datos: se descuentan
+ * de sus fracciones en memoria ({@link VentasRelampago}) y se devuelven a ellas
+ * si la transacción del pedido se deshace.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventarioService {
+
+    private static final String SQL_DESCONTAR =
+            "UPDATE productos SET cantidad_stock = cantidad_stock - ?, fecha_modificacion = ? "
+            + "WHERE id_producto = ? AND cantidad_stock >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductoRepository productoRepository;
+    private final CacheCatalogoService cacheCatalogo;
+    private final IndicesCatalogo indicesCatalogo;
+    private final VentasRelampago ventasRelampago;
+
+    /**
+     * Descuenta las cantidades del stock de cada producto. Debe ejecutarse dentro
+     * de la transacción del pedido: si a algún producto le falta stock se lanza la
+     * excepción y el rollback deshace también los descuentos ya aplicados
+     *
+     * @param cantidades Unidades a descontar por ID de producto
+     * @throws StockInsuficienteException con el detalle de cada producto sin stock suficiente
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void descontarStock(Map<Long, Integer> cantidades) {
+        descontarStock(cantidades, Map.of());
+    }
+
+    /**
+     * Descuenta las cantidades del stock dejando intactas las unidades reservadas
+     * por otros usuarios: cada producto debe conservar al menos esas unidades.
+     * Los productos en venta relámpago no admiten reservas y las ignoran
+     *
+     * @param cantidades Unidades a descontar por ID de producto
+     * @param reservadas Unidades que deben quedar en stock por ID de producto
+     * @throws StockInsuficienteException con el detalle de cada producto sin stock suficiente
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void descontarStock(Map<Long, Integer> cantidades, Map<Long, Integer> reservadas) {
+        if (cantidades.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> enBaseDeDatos = new TreeMap<>();
+        List<StockInsuficienteException.Faltante> faltantes = new ArrayList<>(descontarVentasRelampago(cantidades, enBaseDeDatos));
+        if (enBaseDeDatos.isEmpty()) {
+            if (!faltantes.isEmpty()) {
+                throw new StockInsuficienteException(faltantes);
+            }
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> ordenadas = new ArrayList<>(enBaseDeDatos.entrySet());
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+
+        int[][] resultados = jdbcTemplate.batchUpdate(SQL_DESCONTAR, ordenadas, ordenadas.size(), (ps, entrada) -> {
+            ps.setInt(1, entrada.getValue());
+            ps.setTimestamp(2, ahora);
+            ps.setLong(3, entrada.getKey());
+            ps.setInt(4, entrada.getValue() + reservadas.getOrDefault(entrada.getKey(), 0));
+        });
+
+        List<Long> sinStock = new ArrayList<>();
+        int indice = 0;
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                if (filas == 0) {
+                    sinStock.add(ordenadas.get(indice).getKey());
+                }
+                indice++;
+            }
+        }
+        if (!sinStock.isEmpty()) {
+            faltantes.addAll(detallarFaltantes(sinStock, cantidades, reservadas));
+        }
+        if (!faltantes.isEmpty()) {
+            throw new StockInsuficienteException(faltantes);
+        }
+
+        // Propagar el stock nuevo a la caché y los índices del catálogo (tras el commit)
+        for (Producto producto : productoRepository.findAllById(enBaseDeDatos.keySet())) {
+            indicesCatalogo.indexar(producto);
+            cacheCatalogo.invalidarProducto(producto.getId(), Collections.singletonList(producto.getIdCategoria()),
+                    Boolean.TRUE.equals(producto.getDestacado()));
+        }
+        log.debug("Stock descontado para {} productos", ordenadas.size());
+    }
+
+    /**
+     * Descuenta de las fracciones en memoria los productos en venta relámpago y
+     * deja los demás en el mapa indicado. Lo tomado se devuelve si la transacción
+     * del pedido termina en rollback; la caché y los índices del catálogo se
+     * actualizan al conciliar
+     *
+     * @return Faltantes de los productos en venta relámpago
+     */
+    private List<StockInsuficienteException.Faltante> descontarVentasRelampago(Map<Long, Integer> cantidades,
+                                                                              Map<Long, Integer> enBaseDeDatos) {
+        Map<Long, Integer> tomadas = new HashMap<>();
+        List<Long> sinStock = new ArrayList<>();
+        cantidades.forEach((idProducto, cantidad) -> {
+            switch (ventasRelampago.tomar(idProducto, cantidad)) {
+                case TOMADO -> tomadas.put(idProducto, cantidad);
+                case SIN_STOCK -> sinStock.add(idProducto);
+                case NO_GESTIONADO -> enBaseDeDatos.put(idProducto, cantidad);
+            }
+        });
+        if (!tomadas.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        tomadas.forEach(ventasRelampago::devolver);
+                    }
+                }
+            });
+        }
+        if (sinStock.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, ProductoResumenDto> productos = productoRepository.findResumenesByIdIn(sinStock).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, Function.identity()));
+        return sinStock.stream()
+                .map(id -> new StockInsuficienteException.Faltante(id,
+                        productos.containsKey(id) ? productos.get(id).getNombre() : null,
+                        cantidades.get(id),
+                        ventasRelampago.disponible(id)))
+                .collect(Collectors.toList());
+    }
+
+    private List<StockInsuficienteException.Faltante> detallarFaltantes(List<Long> ids, Map<Long, Integer> cantidades,
+                                                                        Map<Long, Integer> reservadas) {
+        Map<Long, ProductoResumenDto> productos = productoRepository.findResumenesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, Function.identity()));
+        return ids.stream()
+                .map(id -> {
+                    ProductoResumenDto producto = productos.get(id);
+                    return new StockInsuficienteException.Faltante(id,
+                            producto != null ? producto.getNombre() : null,
+                            cantidades.get(id),
+                            disponible(producto, reservadas.getOrDefault(id, 0)));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static int disponible(ProductoResumenDto producto, int reservadas) {
+        if (producto == null || producto.getCantidadStock() == null) {
+            return 0;
+        }
+        return Math.max(0, producto.getCantidadStock() - reservadas);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.repository.CarritoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Tareas programadas de mantenimiento de la tabla de carritos:
+ * - Purga: elimina los carritos vacíos inactivos y los carritos con items expirados
+ * - Abandono: publica un {@link CarritoAbandonadoEvento} por cada carrito con items
+ *   que pasó el tiempo de abandono desde la ejecución anterior
+ *
+ * Los carritos se recorren en lotes por keyset (fecha de modificación, id), cada
+ * lote en su propia transacción corta, así ninguna tarea carga la tabla en memoria
+ * ni mantiene bloqueos largos. La purga omite los carritos que otra transacción
+ * tiene bloqueados en ese momento.
+ *
+ * Métricas: carrito.mantenimiento.filas (contador), carrito.mantenimiento.duracion
+ * (tiempo por ejecución) y carrito.mantenimiento.filas-por-segundo (última ejecución),
+ * todas con la etiqueta tarea.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "carrito.mantenimiento", name = "habilitado", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class MantenimientoCarritos {
+
+    private static final String TAREA_PURGA = "purga";
+    private static final String TAREA_ABANDONO = "abandono";
+    private static final LocalDateTime INICIO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final CarritoRepository carritoRepository;
+    private final ContadorCarrito contadorCarrito;
+    private final ApplicationEventPublisher eventos;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${carrito.mantenimiento.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${carrito.mantenimiento.pausa-ms:100}")
+    private long pausaMs;
+
+    @Value("${carrito.mantenimiento.intervalo-ms:3600000}")
+    private long intervaloMs;
+
+    @Value("${carrito.mantenimiento.inactividad-vacios:7d}")
+    private Duration inactividadVacios;
+
+    @Value("${carrito.mantenimiento.expiracion:60d}")
+    private Duration expiracion;
+
+    @Value("${carrito.mantenimiento.abandono:24h}")
+    private Duration abandono;
+
+    private final Map<String, AtomicLong> filasPorSegundo = new ConcurrentHashMap<>();
+
+    // Fin de la ventana revisada en la ejecución anterior de la tarea de abandono
+    private LocalDateTime abandonoRevisadoHasta;
+
+    private record Posicion(LocalDateTime fecha, Long id) {
+    }
+
+    @Scheduled(initialDelayString = "${carrito.mantenimiento.retraso-inicial-ms:60000}",
+            fixedDelayString = "${carrito.mantenimiento.intervalo-ms:3600000}")
+    public void ejecutar() {
+        purgarCarritos();
+        publicarAbandonados();
+    }
+
+    /**
+     * Elimina los carritos vacíos sin modificar durante la inactividad configurada
+     * y los carritos con items sin modificar durante el tiempo de expiración
+     *
+     * @return Cantidad de carritos eliminados
+     */
+    public long purgarCarritos() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime limiteVacios = ahora.minus(inactividadVacios);
+        LocalDateTime limiteExpirados = ahora.minus(expiracion);
+
+        return recorrer(TAREA_PURGA, INICIO, posicion -> {
+            List<CarritoRepository.ResumenCarrito> eliminados = transactionTemplate.execute(estado ->
+                    carritoRepository.purgarLote(posicion.fecha(), posicion.id(), limiteVacios, limiteExpirados, tamanoLote));
+            // Un carrito nuevo del mismo usuario empieza en la versión 0
+            eliminados.forEach(carrito -> contadorCarrito.olvidar(carrito.getIdUsuario()));
+            return eliminados;
+        });
+    }
+
+    /**
+     * Publica un evento por cada carrito con items cuya última modificación cruzó el
+     * tiempo de abandono desde la ejecución anterior. La primera ejecución tras
+     * arrancar revisa un intervalo hacia atrás, para no repetir los eventos ya
+     * publicados antes de reiniciar
+     *
+     * @return Cantidad de eventos publicados
+     */
+    public synchronized long publicarAbandonados() {
+        LocalDateTime hasta = LocalDateTime.now().minus(abandono);
+        LocalDateTime desde = abandonoRevisadoHasta != null ? abandonoRevisadoHasta : hasta.minus(Duration.ofMillis(intervaloMs));
+        if (!desde.isBefore(hasta)) {
+            return 0;
+        }
+
+        long publicados = recorrer(TAREA_ABANDONO, desde, posicion -> {
+            List<CarritoRepository.ResumenCarrito> abandonados = transactionTemplate.execute(estado ->
+                    carritoRepository.findConItemsModificadosAntesDe(posicion.fecha(), posicion.id(), hasta, tamanoLote));
+            abandonados.forEach(carrito -> eventos.publishEvent(new CarritoAbandonadoEvento(carrito.getIdCarrito(),
+                    carrito.getIdUsuario(), carrito.getTotal(), carrito.getCantidadItems(), carrito.getFechaModificacion())));
+            return abandonados;
+        });
+        abandonoRevisadoHasta = hasta;
+        return publicados;
+    }
+
+    /**
+     * Procesa lotes hasta que uno venga incompleto, avanzando la posición del keyset
+     * al último carrito de cada lote, y registra las métricas de la tarea
+     */
+    private long recorrer(String tarea, LocalDateTime desde,
+                          Function<Posicion, List<CarritoRepository.ResumenCarrito>> procesarLote) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        long inicio = System.nanoTime();
+        Posicion posicion = new Posicion(desde, 0L);
+        long filas = 0;
+        int lotes = 0;
+
+        while (true) {
+            List<CarritoRepository.ResumenCarrito> lote = procesarLote.apply(posicion);
+            filas += lote.size();
+            lotes++;
+            meterRegistry.counter("carrito.mantenimiento.filas", "tarea", tarea).increment(lote.size());
+            if (lote.size() < tamanoLote) {
+                break;
+            }
+            CarritoRepository.ResumenCarrito ultimo = lote.stream()
+                    .max(Comparator.comparing(CarritoRepository.ResumenCarrito::getFechaModificacion)
+                            .thenComparing(CarritoRepository.ResumenCarrito::getIdCarrito))
+                    .orElseThrow();
+            posicion = new Posicion(ultimo.getFechaModificacion(), ultimo.getIdCarrito());
+            log.debug("Mantenimiento de carritos ({}): {} filas en {} lotes, posición {}", tarea, filas, lotes, posicion);
+            if (!pausar()) {
+                break;
+            }
+        }
+
+        muestra.stop(meterRegistry.timer("carrito.mantenimiento.duracion", "tarea", tarea));
+        long milisegundos = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        long porSegundo = filas * 1000 / milisegundos;
+        filasPorSegundo.computeIfAbsent(tarea, t -> meterRegistry.gauge("carrito.mantenimiento.filas-por-segundo",
+                Tags.of("tarea", t), new AtomicLong())).set(porSegundo);
+        if (filas > 0) {
+            log.info("Mantenimiento de carritos ({}): {} filas en {} lotes, {} ms ({} filas/s)",
+                    tarea, filas, lotes, milisegundos, porSegundo);
+        }
+        return filas;
+    }
+
+    // Pausa entre lotes para no competir con el tráfico normal; false si el hilo se interrumpió
+    private boolean pausar() {
+        if (pausaMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pausaMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
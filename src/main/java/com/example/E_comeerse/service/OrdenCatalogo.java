@@ -0,0 +1,59 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Claves de ordenamiento soportadas por el listado paginado del catálogo.
+ * Cada clave se combina siempre con el ID del producto como desempate,
+ * de forma que el par (clave, id) sea único y el keyset sea estable.
+ */
+public enum OrdenCatalogo {
+
+    PRECIO("precio", ProductoResumenDto::getPrecio, BigDecimal::new),
+    FECHA_CREACION("fechaCreacion", ProductoResumenDto::getFechaCreacion, LocalDateTime::parse),
+    NOMBRE("nombre", ProductoResumenDto::getNombre, Function.identity());
+
+    private final String propiedad;
+    private final Function<ProductoResumenDto, Object> extractor;
+    private final Function<String, Object> parser;
+
+    <T> OrdenCatalogo(String propiedad, Function<ProductoResumenDto, T> extractor, Function<String, T> parser) {
+        this.propiedad = propiedad;
+        this.extractor = extractor::apply;
+        this.parser = parser::apply;
+    }
+
+    public String getPropiedad() {
+        return propiedad;
+    }
+
+    Object valorDe(ProductoResumenDto producto) {
+        return extractor.apply(producto);
+    }
+
+    Object parsearValor(String valor) {
+        return parser.apply(valor);
+    }
+
+    /**
+     * Resuelve la clave de ordenamiento a partir del query param.
+     * Acepta el nombre de la propiedad (precio, fechaCreacion, nombre).
+     *
+     * @throws IllegalArgumentException si la clave no está soportada
+     */
+    public static OrdenCatalogo desdeParametro(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return FECHA_CREACION;
+        }
+        for (OrdenCatalogo orden : values()) {
+            if (orden.propiedad.equalsIgnoreCase(valor.trim()) || orden.name().equalsIgnoreCase(valor.trim())) {
+                return orden;
+            }
+        }
+        throw new IllegalArgumentException("Orden no soportado: " + valor + ". Use precio, fechaCreacion o nombre");
+    }
+}
@@ -2,8 +2,10 @@ package com.example.E_comeerse.service;
 
 import com.example.E_comeerse.dto.ActualizarEstadoPedidoDto;
 import com.example.E_comeerse.dto.PedidoDetalleDto;
+import com.example.E_comeerse.dto.VentasProductoDto;
 import com.example.E_comeerse.model.Pedido;
 import com.example.E_comeerse.model.Usuario;
+import com.example.E_comeerse.repository.PedidoItemRepository;
 import com.example.E_comeerse.repository.PedidoRepository;
 import com.example.E_comeerse.repository.UsuarioRepository;
 import com.example.E_comeerse.security.JwtTokenUtil;
@@ -12,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -22,9 +25,14 @@ import java.util.stream.Collectors;
 @Service
 public class PedidoService {
 
+    private static final LocalDate INICIO_VENTAS = LocalDate.of(1970, 1, 1);
+
     @Autowired
     private PedidoRepository pedidoRepository;
     
+    @Autowired
+    private PedidoItemRepository pedidoItemRepository;
+    
     @Autowired
     private UsuarioRepository usuarioRepository;
     
@@ -98,13 +106,13 @@ public class PedidoService {
     }
 
     /**
-     * Obtener detalle de un pedido
+     * Obtener detalle de un pedido con sus líneas
      */
     @Transactional(readOnly = true)
     public PedidoDetalleDto obtenerDetallePedido(Long id) {
         Pedido pedido = pedidoRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Pedido no encontrado: " + id));
-        return PedidoDetalleDto.fromEntity(pedido);
+        return PedidoDetalleDto.fromEntity(pedido, pedidoItemRepository.findByIdPedidoOrderByIdItemPedido(id));
     }
 
     /**
@@ -123,7 +131,21 @@ public class PedidoService {
         }
 
         Pedido pedidoActualizado = pedidoRepository.save(pedido);
-        return PedidoDetalleDto.fromEntity(pedidoActualizado);
+        return PedidoDetalleDto.fromEntity(pedidoActualizado, pedidoItemRepository.findByIdPedidoOrderByIdItemPedido(id));
+    }
+
+    /**
+     * Ventas por producto de los pedidos no cancelados entre las fechas (ambas incluidas);
+     * sin fechas se toma desde el primer pedido hasta hoy
+     */
+    @Transactional(readOnly = true)
+    public List<VentasProductoDto> obtenerVentasPorProducto(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        return pedidoItemRepository.sumarVentasPorProducto(
+                (desde != null ? desde : INICIO_VENTAS).atStartOfDay(),
+                (hasta != null ? hasta : LocalDate.now()).plusDays(1).atStartOfDay());
     }
 
     /**
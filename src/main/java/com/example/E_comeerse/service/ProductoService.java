@@ -1,5 +1,14 @@
 package com.example.E_comeerse.service;
 
+import com.example.E_comeerse.dto.ConsultaCatalogoDto;
+import com.example.E_comeerse.dto.ConsultaFacetasDto;
+import com.example.E_comeerse.dto.LoteProductosDto;
+import com.example.E_comeerse.dto.PaginaBusquedaDto;
+import com.example.E_comeerse.dto.PaginaCursorDto;
+import com.example.E_comeerse.dto.PaginaFacetadaDto;
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.SugerenciasDto;
 import com.example.E_comeerse.model.Producto;
 import java.util.List;
 import java.util.Optional;
@@ -11,21 +20,75 @@ import java.util.Optional;
 public interface ProductoService {
     List<Producto> listarProductos();
 
+    /**
+     * Lista el catálogo paginado por keyset con filtros y ordenamiento.
+     * El costo de cada página es constante sin importar su posición.
+     *
+     * @throws IllegalArgumentException si el orden, la dirección, el tamaño o el cursor son inválidos
+     */
+    PaginaCursorDto<ProductoResumenDto> listarProductosPaginados(ConsultaCatalogoDto consulta);
+
+    /**
+     * Filtra el catálogo por categoría, rango de precio, disponibilidad y destacado,
+     * devolviendo la página solicitada junto con los conteos de cada faceta
+     *
+     * @throws IllegalArgumentException si el orden, la dirección, la página, el tamaño o el rango de precio son inválidos
+     */
+    PaginaFacetadaDto<ProductoResumenDto> listarPorFacetas(ConsultaFacetasDto consulta);
+
     Producto guardarProducto(Producto producto);
 
     Optional<Producto> buscarPorId(Long id);
 
+    /**
+     * Modelo de lectura del detalle de un producto, con la descripción completa
+     */
+    Optional<ProductoDetalleDto> obtenerDetalle(Long id);
+
+    /**
+     * Resúmenes y stock actual de varios productos en el orden solicitado,
+     * resueltos desde la caché o con una sola consulta para los que falten
+     *
+     * @throws IllegalArgumentException si se piden demasiados IDs
+     */
+    LoteProductosDto buscarPorIds(List<Long> ids);
+
     Producto actualizarProducto(Long id, Producto producto);
 
+    /**
+     * Actualiza solo el stock de un producto
+     *
+     * @throws IllegalArgumentException si el producto no existe o el stock es negativo
+     */
+    Producto actualizarStock(Long id, Integer nuevoStock);
+
     void eliminarProducto(Long id);
 
-    List<Producto> buscarPorCategoria(Long idCategoria);
+    List<ProductoResumenDto> buscarPorCategoria(Long idCategoria);
+
+    /**
+     * Búsqueda de texto completo sobre nombre, descripción, categoría y código,
+     * resuelta desde el índice en memoria y ordenada por relevancia
+     *
+     * @param texto texto de la consulta
+     * @param pagina página solicitada (desde 0)
+     * @param tamano tamaño de página
+     * @throws IllegalArgumentException si la página o el tamaño son inválidos
+     */
+    PaginaBusquedaDto<ProductoResumenDto> buscarProductos(String texto, Integer pagina, Integer tamano);
 
-    List<Producto> buscarPorNombre(String nombre);
+    /**
+     * Sugerencias de autocompletado tolerantes a errores de escritura
+     *
+     * @param texto lo que el usuario lleva escrito
+     * @param limite cantidad máxima de sugerencias
+     * @throws IllegalArgumentException si el límite es inválido
+     */
+    SugerenciasDto sugerirProductos(String texto, Integer limite);
 
-    List<Producto> obtenerProductosDestacados();
+    List<ProductoResumenDto> obtenerProductosDestacados();
 
-    List<Producto> obtenerTop3Destacados();
+    List<ProductoResumenDto> obtenerTop3Destacados();
 
     Producto marcarComoDestacado(Long id, Boolean destacado);
 }
@@ -1,31 +1,161 @@
 package com.example.E_comeerse.service;
 
+import com.example.E_comeerse.config.CacheConfig;
+import com.example.E_comeerse.dto.ConsultaCatalogoDto;
+import com.example.E_comeerse.dto.ConsultaFacetasDto;
+import com.example.E_comeerse.dto.LoteProductosDto;
+import com.example.E_comeerse.dto.PaginaBusquedaDto;
+import com.example.E_comeerse.dto.PaginaCursorDto;
+import com.example.E_comeerse.dto.PaginaFacetadaDto;
+import com.example.E_comeerse.dto.ProductoDetalleDto;
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.SugerenciasDto;
 import com.example.E_comeerse.model.Producto;
 import com.example.E_comeerse.repository.ProductoRepository;
+import com.example.E_comeerse.repository.ProductoSpecifications;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Implementación de la interfaz ProductoService.
    */
+@Slf4j
 @Service
 public class ProductoServiceImpl implements ProductoService {
 
+    private static final int TAMANO_PAGINA_POR_DEFECTO = 24;
+    private static final int TAMANO_PAGINA_MAXIMO = 100;
+    private static final int LIMITE_SUGERENCIAS_POR_DEFECTO = 8;
+    private static final int LIMITE_SUGERENCIAS_MAXIMO = 20;
+    private static final int MAXIMO_IDS_POR_LOTE = 100;
+    private static final int TAMANO_LOTE_NORMALIZACION = 500;
+
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private CacheCatalogoService cacheCatalogo;
+
+    @Autowired
+    private IndicesCatalogo indicesCatalogo;
+
+    @Autowired
+    private IndiceBusquedaProductos indiceBusqueda;
+
+    @Autowired
+    private IndiceSugerencias indiceSugerencias;
+
+    @Autowired
+    private IndiceFacetas indiceFacetas;
+
+    @Autowired
+    private VentasRelampago ventasRelampago;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Override
     public List<Producto> listarProductos() {
         return productoRepository.findAll();
     }
 
+    @Override
+    public PaginaCursorDto<ProductoResumenDto> listarProductosPaginados(ConsultaCatalogoDto consulta) {
+        OrdenCatalogo orden = OrdenCatalogo.desdeParametro(consulta.getOrden());
+        Sort.Direction direccion = resolverDireccion(consulta.getDireccion());
+        int tamano = resolverTamano(consulta.getTamano());
+        Map<String, Object> despuesDe = CursorCatalogo.decodificar(consulta.getCursor(), orden, direccion);
+
+        // El ID como desempate garantiza un orden total y estable entre páginas
+        Sort sort = Sort.by(direccion, orden.getPropiedad()).and(Sort.by(direccion, "id"));
+
+        // Se pide un elemento de más para saber si hay una página siguiente
+        List<ProductoResumenDto> productos = productoRepository.buscarResumenesDespuesDe(
+                construirFiltro(consulta), sort, despuesDe, tamano + 1);
+        boolean hayMas = productos.size() > tamano;
+        if (hayMas) {
+            productos = productos.subList(0, tamano);
+        }
+        String siguienteCursor = hayMas
+                ? CursorCatalogo.codificar(orden, direccion, productos.get(productos.size() - 1))
+                : null;
+
+        return new PaginaCursorDto<>(productos, siguienteCursor, siguienteCursor != null, tamano);
+    }
+
+    @Override
+    public PaginaFacetadaDto<ProductoResumenDto> listarPorFacetas(ConsultaFacetasDto consulta) {
+        OrdenCatalogo orden = OrdenCatalogo.desdeParametro(consulta.getOrden());
+        if (orden == OrdenCatalogo.NOMBRE) {
+            throw new IllegalArgumentException("Orden no soportado en la navegación por facetas: nombre. Use precio o fechaCreacion");
+        }
+        Sort.Direction direccion = resolverDireccion(consulta.getDireccion());
+        int numeroPagina = consulta.getPagina() != null ? consulta.getPagina() : 0;
+        int tamanoPagina = resolverTamano(consulta.getTamano());
+        if (numeroPagina < 0) {
+            throw new IllegalArgumentException("La página no puede ser negativa");
+        }
+        validarRangoPrecio(consulta.getPrecioMin(), consulta.getPrecioMax());
+
+        if (!indiceFacetas.estaListo()) {
+            // Mientras el índice se construye al arrancar se responde desde la base de datos, sin conteos
+            Sort sort = Sort.by(direccion, orden.getPropiedad()).and(Sort.by(direccion, "id"));
+            Specification<Producto> filtro = construirFiltro(consulta);
+            List<ProductoResumenDto> productos = productoRepository.buscarResumenes(filtro,
+                    PageRequest.of(numeroPagina, tamanoPagina, sort));
+            long total = productoRepository.count(filtro);
+            return new PaginaFacetadaDto<>(productos, numeroPagina, tamanoPagina, total,
+                    (int) ((total + tamanoPagina - 1) / tamanoPagina), List.of(), List.of(), 0, 0);
+        }
+
+        IndiceFacetas.Filtro filtro = new IndiceFacetas.Filtro(consulta.getIdCategoria(), consulta.getCategoria(),
+                consulta.getPrecioMin(), consulta.getPrecioMax(), consulta.getEnStock(), consulta.getDestacado());
+        IndiceFacetas.ResultadoFacetas resultado = indiceFacetas.consultar(filtro, orden == OrdenCatalogo.PRECIO,
+                direccion.isAscending(), calcularDesde(numeroPagina, tamanoPagina), tamanoPagina);
+
+        List<PaginaFacetadaDto.ConteoCategoria> categorias = resultado.categorias().stream()
+                .map(c -> new PaginaFacetadaDto.ConteoCategoria(c.idCategoria(), c.categoria(), c.cantidad()))
+                .collect(Collectors.toList());
+        List<PaginaFacetadaDto.ConteoRangoPrecio> rangos = resultado.rangosPrecio().stream()
+                .map(r -> new PaginaFacetadaDto.ConteoRangoPrecio(r.desde(), r.hasta(), r.cantidad()))
+                .collect(Collectors.toList());
+        int totalPaginas = (resultado.total() + tamanoPagina - 1) / tamanoPagina;
+        return new PaginaFacetadaDto<>(cargarEnOrden(resultado.ids()), numeroPagina, tamanoPagina,
+                resultado.total(), totalPaginas, categorias, rangos, resultado.enStock(), resultado.destacados());
+    }
+
     @Override
     public Producto guardarProducto(Producto producto) {
         validarProducto(producto);
-        return productoRepository.save(producto);
+        producto.setUrlImagen(normalizarUrlImagen(producto.getUrlImagen()));
+        Producto guardado = productoRepository.save(producto);
+        indicesCatalogo.indexar(guardado);
+        cacheCatalogo.invalidarProducto(guardado.getId(), Collections.singletonList(guardado.getIdCategoria()),
+                Boolean.TRUE.equals(guardado.getDestacado()));
+        return guardado;
     }
 
     @Override
@@ -33,6 +163,12 @@ public class ProductoServiceImpl implements ProductoService {
         return productoRepository.findById(id);
     }
 
+    @Override
+    @Cacheable(value = CacheConfig.PRODUCTOS, key = "#id", unless = "#result == null")
+    public Optional<ProductoDetalleDto> obtenerDetalle(Long id) {
+        return productoRepository.findDetalleById(id);
+    }
+
     @Override
     public Producto actualizarProducto(Long id, Producto producto) {
         Optional<Producto> productoExistente = productoRepository.findById(id);
@@ -43,50 +179,181 @@ public class ProductoServiceImpl implements ProductoService {
         validarProducto(producto);
 
         Producto productoActualizar = productoExistente.get();
+        Long idCategoriaAnterior = productoActualizar.getIdCategoria();
+        boolean eraDestacado = Boolean.TRUE.equals(productoActualizar.getDestacado());
+        if (!Objects.equals(productoActualizar.getCantidadStock(), producto.getCantidadStock())) {
+            validarSinVentaRelampago(id);
+        }
+
         productoActualizar.setNombre(producto.getNombre());
         productoActualizar.setDescripcion(producto.getDescripcion());
         productoActualizar.setPrecio(producto.getPrecio());
         productoActualizar.setCantidadStock(producto.getCantidadStock());
         productoActualizar.setIdCategoria(producto.getIdCategoria());
         productoActualizar.setCodigoProducto(producto.getCodigoProducto());
-        productoActualizar.setUrlImagen(producto.getUrlImagen());
+        productoActualizar.setUrlImagen(normalizarUrlImagen(producto.getUrlImagen()));
         if (producto.getDestacado() != null) {
             productoActualizar.setDestacado(producto.getDestacado());
         }
 
-        return productoRepository.save(productoActualizar);
+        Producto actualizado = productoRepository.save(productoActualizar);
+        indicesCatalogo.indexar(actualizado);
+        cacheCatalogo.invalidarProducto(id, Arrays.asList(idCategoriaAnterior, actualizado.getIdCategoria()),
+                eraDestacado || Boolean.TRUE.equals(actualizado.getDestacado()));
+        return actualizado;
     }
 
     @Override
-    public void eliminarProducto(Long id) {
-        if (!productoRepository.existsById(id)) {
-            throw new IllegalArgumentException("Producto no encontrado con ID: " + id);
+    public Producto actualizarStock(Long id, Integer nuevoStock) {
+        if (nuevoStock == null || nuevoStock < 0) {
+            throw new IllegalArgumentException("El stock no puede ser negativo");
         }
+        validarSinVentaRelampago(id);
+
+        Producto producto = productoRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + id));
+        producto.setCantidadStock(nuevoStock);
+
+        Producto actualizado = productoRepository.save(producto);
+        indicesCatalogo.indexar(actualizado);
+        cacheCatalogo.invalidarProducto(id, Collections.singletonList(actualizado.getIdCategoria()),
+                Boolean.TRUE.equals(actualizado.getDestacado()));
+        return actualizado;
+    }
+
+    @Override
+    public void eliminarProducto(Long id) {
+        Producto producto = productoRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + id));
         productoRepository.deleteById(id);
+        indicesCatalogo.eliminar(id);
+        cacheCatalogo.invalidarProducto(id, Collections.singletonList(producto.getIdCategoria()),
+                Boolean.TRUE.equals(producto.getDestacado()));
+    }
+
+    @Override
+    public LoteProductosDto buscarPorIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new LoteProductosDto(List.of(), List.of());
+        }
+        if (ids.size() > MAXIMO_IDS_POR_LOTE) {
+            throw new IllegalArgumentException("No se pueden consultar más de " + MAXIMO_IDS_POR_LOTE + " productos a la vez");
+        }
+
+        Set<Long> solicitados = ids.stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, ProductoResumenDto> encontrados = new HashMap<>();
+        cacheCatalogo.obtenerDetallesEnCache(solicitados)
+                .forEach((id, detalle) -> encontrados.put(id, ProductoResumenDto.fromDetalle(detalle)));
+
+        List<Long> faltantes = solicitados.stream().filter(id -> !encontrados.containsKey(id)).toList();
+        if (!faltantes.isEmpty()) {
+            productoRepository.findResumenesByIdIn(faltantes)
+                    .forEach(resumen -> encontrados.put(resumen.getId(), resumen));
+        }
+
+        List<ProductoResumenDto> items = new ArrayList<>(solicitados.size());
+        List<Long> noEncontrados = new ArrayList<>();
+        for (Long id : solicitados) {
+            ProductoResumenDto resumen = encontrados.get(id);
+            if (resumen != null) {
+                items.add(resumen);
+            } else {
+                noEncontrados.add(id);
+            }
+        }
+        return new LoteProductosDto(items, noEncontrados);
     }
 
     @Override
-    public List<Producto> buscarPorCategoria(Long idCategoria) {
-        return productoRepository.findByIdCategoria(idCategoria);
+    @Cacheable(value = CacheConfig.PRODUCTOS_POR_CATEGORIA, key = "#idCategoria")
+    public List<ProductoResumenDto> buscarPorCategoria(Long idCategoria) {
+        return productoRepository.findResumenesByIdCategoria(idCategoria);
     }
 
     @Override
-    public List<Producto> buscarPorNombre(String nombre) {
-        if (nombre == null || nombre.trim().isEmpty()) {
+    public PaginaBusquedaDto<ProductoResumenDto> buscarProductos(String texto, Integer pagina, Integer tamano) {
+        int numeroPagina = pagina != null ? pagina : 0;
+        int tamanoPagina = resolverTamano(tamano);
+        if (numeroPagina < 0) {
+            throw new IllegalArgumentException("La página no puede ser negativa");
+        }
+        if (texto == null || texto.trim().isEmpty()) {
+            return new PaginaBusquedaDto<>(List.of(), numeroPagina, tamanoPagina, 0, 0, null);
+        }
+
+        int desde = calcularDesde(numeroPagina, tamanoPagina);
+        List<ProductoResumenDto> productos;
+        int total;
+        String consultaCorregida = null;
+        if (indiceBusqueda.estaListo()) {
+            IndiceBusquedaProductos.ResultadoBusqueda resultado = indiceBusqueda.buscar(texto, desde, tamanoPagina);
+            if (resultado.total() == 0 && indiceSugerencias.estaListo()) {
+                // Sin coincidencias se reintenta una vez con las palabras mal escritas corregidas
+                String corregida = indiceSugerencias.corregir(texto);
+                if (corregida != null) {
+                    resultado = indiceBusqueda.buscar(corregida, desde, tamanoPagina);
+                    if (resultado.total() > 0) {
+                        consultaCorregida = corregida;
+                    }
+                }
+            }
+            productos = cargarEnOrden(resultado.ids());
+            total = resultado.total();
+        } else {
+            // Mientras el índice se construye al arrancar se responde desde la base de datos
+            List<ProductoResumenDto> coincidencias = productoRepository.findResumenesByNombreContaining(texto.trim());
+            total = coincidencias.size();
+            productos = desde < total
+                    ? coincidencias.subList(desde, Math.min(desde + tamanoPagina, total))
+                    : List.of();
+        }
+
+        int totalPaginas = (total + tamanoPagina - 1) / tamanoPagina;
+        return new PaginaBusquedaDto<>(productos, numeroPagina, tamanoPagina, total, totalPaginas, consultaCorregida);
+    }
+
+    @Override
+    public SugerenciasDto sugerirProductos(String texto, Integer limite) {
+        int limiteSugerencias = limite != null ? limite : LIMITE_SUGERENCIAS_POR_DEFECTO;
+        if (limiteSugerencias < 1 || limiteSugerencias > LIMITE_SUGERENCIAS_MAXIMO) {
+            throw new IllegalArgumentException("El límite de sugerencias debe estar entre 1 y " + LIMITE_SUGERENCIAS_MAXIMO);
+        }
+        if (texto == null || texto.trim().isEmpty() || !indiceSugerencias.estaListo()) {
+            return new SugerenciasDto(texto, null, List.of());
+        }
+
+        IndiceSugerencias.ResultadoSugerencias resultado = indiceSugerencias.sugerir(texto, limiteSugerencias);
+        List<SugerenciasDto.Sugerencia> sugerencias = resultado.sugerencias().stream()
+                .map(s -> new SugerenciasDto.Sugerencia(s.idProducto(), s.nombre(), s.aproximada()))
+                .collect(Collectors.toList());
+        return new SugerenciasDto(texto, resultado.consultaCorregida(), sugerencias);
+    }
+
+    /**
+     * Carga los productos con una sola consulta respetando el orden de los IDs recibidos
+     */
+    private List<ProductoResumenDto> cargarEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
             return List.of();
         }
-        return productoRepository.findByNombreContainingIgnoreCase(nombre.trim());
+        Map<Long, ProductoResumenDto> porId = productoRepository.findResumenesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, Function.identity()));
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public List<Producto> obtenerProductosDestacados() {
-        return productoRepository.findProductosDestacados();
+    @Cacheable(CacheConfig.PRODUCTOS_DESTACADOS)
+    public List<ProductoResumenDto> obtenerProductosDestacados() {
+        return productoRepository.findResumenesDestacados(Pageable.unpaged());
     }
 
     @Override
-    public List<Producto> obtenerTop3Destacados() {
-        List<Producto> destacados = productoRepository.findTop3ByDestacadoTrueOrderByFechaCreacionDesc();
-        return destacados.size() > 3 ? destacados.subList(0, 3) : destacados;
+    @Cacheable(CacheConfig.PRODUCTOS_TOP3)
+    public List<ProductoResumenDto> obtenerTop3Destacados() {
+        return productoRepository.findResumenesDestacados(PageRequest.of(0, 3));
     }
 
     @Override
@@ -98,10 +365,174 @@ public class ProductoServiceImpl implements ProductoService {
 
         Producto producto = productoExistente.get();
         producto.setDestacado(destacado);
-        return productoRepository.save(producto);
+        Producto actualizado = productoRepository.save(producto);
+        indicesCatalogo.indexar(actualizado);
+        cacheCatalogo.invalidarProducto(id, Collections.singletonList(actualizado.getIdCategoria()), true);
+        return actualizado;
+    }
+
+    // En venta relámpago el stock se lleva en memoria y se concilia con la base de datos
+    private void validarSinVentaRelampago(Long id) {
+        if (ventasRelampago.gestiona(id)) {
+            throw new IllegalArgumentException(
+                    "El producto está en venta relámpago: desactive la venta relámpago antes de cambiar el stock");
+        }
+    }
+
+    private Specification<Producto> construirFiltro(ConsultaCatalogoDto consulta) {
+        Specification<Producto> filtro = ProductoSpecifications.todos();
+        if (consulta.getIdCategoria() != null) {
+            filtro = filtro.and(ProductoSpecifications.deCategoria(consulta.getIdCategoria()));
+        }
+        if (consulta.getCategoria() != null && !consulta.getCategoria().isBlank()) {
+            filtro = filtro.and(ProductoSpecifications.conNombreCategoria(consulta.getCategoria().trim()));
+        }
+        if (Boolean.TRUE.equals(consulta.getEnStock())) {
+            filtro = filtro.and(ProductoSpecifications.enStock());
+        } else if (Boolean.FALSE.equals(consulta.getEnStock())) {
+            filtro = filtro.and(ProductoSpecifications.sinStock());
+        }
+        return filtro;
+    }
+
+    private Specification<Producto> construirFiltro(ConsultaFacetasDto consulta) {
+        Specification<Producto> filtro = ProductoSpecifications.todos();
+        if (consulta.getIdCategoria() != null) {
+            filtro = filtro.and(ProductoSpecifications.deCategoria(consulta.getIdCategoria()));
+        }
+        if (consulta.getCategoria() != null && !consulta.getCategoria().isBlank()) {
+            filtro = filtro.and(ProductoSpecifications.conNombreCategoria(consulta.getCategoria().trim()));
+        }
+        if (consulta.getPrecioMin() != null) {
+            filtro = filtro.and(ProductoSpecifications.precioDesde(consulta.getPrecioMin()));
+        }
+        if (consulta.getPrecioMax() != null) {
+            filtro = filtro.and(ProductoSpecifications.precioHasta(consulta.getPrecioMax()));
+        }
+        if (Boolean.TRUE.equals(consulta.getEnStock())) {
+            filtro = filtro.and(ProductoSpecifications.enStock());
+        } else if (Boolean.FALSE.equals(consulta.getEnStock())) {
+            filtro = filtro.and(ProductoSpecifications.sinStock());
+        }
+        if (consulta.getDestacado() != null) {
+            filtro = filtro.and(ProductoSpecifications.destacado(consulta.getDestacado()));
+        }
+        return filtro;
+    }
+
+    private void validarRangoPrecio(BigDecimal precioMin, BigDecimal precioMax) {
+        if ((precioMin != null && precioMin.signum() < 0) || (precioMax != null && precioMax.signum() < 0)) {
+            throw new IllegalArgumentException("El rango de precio no puede ser negativo");
+        }
+        if (precioMin != null && precioMax != null && precioMin.compareTo(precioMax) > 0) {
+            throw new IllegalArgumentException("El precio mínimo no puede ser mayor al precio máximo");
+        }
+    }
+
+    private Sort.Direction resolverDireccion(String direccion) {
+        if (direccion == null || direccion.isBlank()) {
+            return Sort.Direction.DESC;
+        }
+        return Sort.Direction.fromOptionalString(direccion.trim())
+                .orElseThrow(() -> new IllegalArgumentException("Dirección no soportada: " + direccion + ". Use asc o desc"));
+    }
+
+    /**
+     * Posición del primer resultado de la página. Una página tan alta que la posición
+     * no cabe en un int se lleva al máximo, que queda después de todos los resultados
+     */
+    private static int calcularDesde(int numeroPagina, int tamanoPagina) {
+        return (int) Math.min((long) numeroPagina * tamanoPagina, Integer.MAX_VALUE);
+    }
+
+    private int resolverTamano(Integer tamano) {
+        if (tamano == null) {
+            return TAMANO_PAGINA_POR_DEFECTO;
+        }
+        if (tamano < 1 || tamano > TAMANO_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANO_PAGINA_MAXIMO);
+        }
+        return tamano;
+    }
+
+    /**
+     * Normaliza al escribir las URLs de imágenes subidas a la ruta relativa
+     * /uploads/productos/{archivo}; las URLs externas se guardan tal cual
+     */
+    static String normalizarUrlImagen(String urlImagen) {
+        if (urlImagen == null || urlImagen.isEmpty()) {
+            return urlImagen;
+        }
+        if (urlImagen.startsWith("http://localhost:8080/uploads/")) {
+            return urlImagen.replace("http://localhost:8080", "");
+        }
+        if (urlImagen.startsWith("http") || urlImagen.startsWith("/")) {
+            return urlImagen;
+        }
+        // Extraer solo el nombre del archivo si es una ruta compleja
+        String filename = urlImagen.contains("/")
+                ? urlImagen.substring(urlImagen.lastIndexOf("/") + 1)
+                : urlImagen;
+        return "/uploads/productos/" + filename;
+    }
+
+    /**
+     * Completa una sola vez la fecha de creación de los productos guardados sin ella
+     * y declara la columna NOT NULL, para que el keyset del catálogo no tenga claves nulas
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void completarFechasCreacion() {
+        try {
+            Integer completados = transactionTemplate.execute(estado -> {
+                int actualizados = productoRepository.completarFechasCreacionNulas();
+                productoRepository.exigirFechaCreacion();
+                return actualizados;
+            });
+            if (completados != null && completados > 0) {
+                log.info("Fecha de creación completada en {} productos", completados);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error completando las fechas de creación de los productos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Normaliza una sola vez las URLs de imagen guardadas antes de que se normalizaran al escribir.
+     * Recorre los productos en lotes por ID, cada lote en su propia transacción corta
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void normalizarUrlsImagenExistentes() {
+        try {
+            long desdeId = 0;
+            int normalizados = 0;
+            while (true) {
+                long inicioLote = desdeId;
+                List<Producto> lote = transactionTemplate.execute(estado -> {
+                    List<Producto> pendientes = productoRepository.findConUrlImagenSinNormalizar(inicioLote,
+                            PageRequest.of(0, TAMANO_LOTE_NORMALIZACION));
+                    pendientes.forEach(producto -> {
+                        producto.setUrlImagen(normalizarUrlImagen(producto.getUrlImagen()));
+                        cacheCatalogo.invalidarProducto(producto.getId(),
+                                Collections.singletonList(producto.getIdCategoria()),
+                                Boolean.TRUE.equals(producto.getDestacado()));
+                    });
+                    return productoRepository.saveAll(pendientes);
+                });
+                normalizados += lote.size();
+                if (lote.size() < TAMANO_LOTE_NORMALIZACION) {
+                    break;
+                }
+                desdeId = lote.get(lote.size() - 1).getId();
+            }
+            if (normalizados > 0) {
+                log.info("URLs de imagen normalizadas en {} productos", normalizados);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error normalizando las URLs de imagen existentes: {}", e.getMessage(), e);
+        }
     }
 
-    private void validarProducto(Producto producto) {
+    static void validarProducto(Producto producto) {
         if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del producto no puede estar vacío");
         }
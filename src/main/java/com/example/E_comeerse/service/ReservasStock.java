@@ -0,0 +1,405 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.ProductoResumenDto;
+import com.example.E_comeerse.dto.ReservaStockDto;
+import com.example.E_comeerse.exception.StockInsuficienteException;
+import com.example.E_comeerse.repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Reservas temporales de stock entre el inicio del checkout y la confirmación del pedido.
+ *
+ * Al iniciar el checkout se reservan las unidades del carrito del usuario por un
+ * tiempo limitado; mientras la reserva está activa esas unidades no cuentan como
+ * disponibles para los demás usuarios, ni al reservar ni al confirmar sus pedidos.
+ * Al confirmar el pedido, el descuento definitivo en la base de datos reemplaza a la
+ * reserva; si el usuario no confirma a tiempo la reserva vence y se libera sola.
+ *
+ * Todo se guarda en memoria de la instancia, sin bloquear filas de la base de datos:
+ * - Las unidades reservadas por producto se modifican bajo el bloqueo de su franja
+ *   (los productos se reparten entre un número fijo de franjas), tomadas en orden
+ *   para que dos reservas con productos en común no se interbloqueen
+ * - Mientras un pedido se confirma, sus unidades quedan apartadas como una reserva
+ *   más, así cuentan para los demás usuarios aunque el descuento en la base de datos
+ *   aún no sea visible. Los bloqueos solo protegen cambios en memoria: nunca se
+ *   mantienen durante una consulta a la base de datos
+ * - Cada franja cuenta los pedidos confirmados sobre sus productos; una reserva
+ *   cuyo stock se leyó antes de una confirmación vuelve a leerlo
+ * - Los vencimientos se programan en una rueda de tiempo: crear o liberar una
+ *   reserva es O(1) por producto y cada avance solo revisa una ranura
+ *
+ * Los productos en venta relámpago no se reservan: su stock se descuenta de
+ * fracciones en memoria sin bloqueos y apartar unidades anularía esa ventaja.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservasStock {
+
+    private static final int FRANJAS = 256;
+    private static final int RANURAS = 512;
+    private static final String METRICA = "carrito.reservas";
+
+    private final MeterRegistry meterRegistry;
+    private final VentasRelampago ventasRelampago;
+    private final ProductoRepository productoRepository;
+
+    @Value("${carrito.reserva.duracion:10m}")
+    private Duration duracion;
+
+    @Value("${carrito.reserva.resolucion-ms:1000}")
+    private long resolucionMs;
+
+    private final Lock[] franjas = crearFranjas();
+    // Pedidos confirmados por franja, se incrementa bajo el bloqueo de la franja
+    private final AtomicLongArray confirmaciones = new AtomicLongArray(FRANJAS);
+    private final Map<Long, Integer> reservadoPorProducto = new ConcurrentHashMap<>();
+    // Parte de reservadoPorProducto que corresponde a pedidos confirmándose
+    private final Map<Long, Integer> apartadoPorProducto = new ConcurrentHashMap<>();
+    private final Map<Long, Reserva> reservasPorUsuario = new ConcurrentHashMap<>();
+
+    // Rueda de tiempo: cada ranura guarda las reservas que vencen en un tick (módulo RANURAS)
+    private final List<Queue<Reserva>> ranuras = crearRanuras();
+    private volatile long tickActual;
+
+    private static final class Reserva {
+        private final Long idUsuario;
+        private final Map<Long, Integer> cantidades;
+        private final long expiraEn;
+        private final long tick;
+        // Unidades de un pedido que se está confirmando, en lugar de una reserva del checkout
+        private final boolean apartado;
+        private final AtomicBoolean activa = new AtomicBoolean(true);
+
+        private Reserva(Long idUsuario, Map<Long, Integer> cantidades, long expiraEn, long tick, boolean apartado) {
+            this.idUsuario = idUsuario;
+            this.cantidades = cantidades;
+            this.expiraEn = expiraEn;
+            this.tick = tick;
+            this.apartado = apartado;
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        tickActual = System.currentTimeMillis() / resolucionMs;
+        meterRegistry.gaugeMapSize(METRICA + ".activas", Tags.empty(), reservasPorUsuario);
+    }
+
+    /**
+     * Reserva las cantidades para el usuario, reemplazando su reserva anterior.
+     * Solo se reserva si todos los productos tienen unidades libres suficientes
+     * (stock menos lo reservado por otros usuarios). El stock se lee de la base
+     * de datos antes de bloquear las franjas; si entretanto se confirmó un pedido
+     * sobre alguno de los productos, se vuelve a leer. Los productos en venta
+     * relámpago se omiten
+     *
+     * @param idUsuario ID del usuario que inicia el checkout
+     * @param cantidades Unidades a reservar por ID de producto
+     * @param nombres Nombre por ID de producto, para el detalle de faltantes
+     * @return Reserva creada con su vencimiento
+     * @throws StockInsuficienteException si algún producto no tiene unidades libres suficientes
+     */
+    public ReservaStockDto reservar(Long idUsuario, Map<Long, Integer> cantidades,
+                                    Map<Long, String> nombres) {
+        Map<Long, Integer> reservables = cantidades.entrySet().stream()
+                .filter(entrada -> !ventasRelampago.gestiona(entrada.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        long expiraEn = System.currentTimeMillis() + duracion.toMillis();
+        Reserva reserva = new Reserva(idUsuario, Map.copyOf(reservables), expiraEn,
+                Math.max(expiraEn / resolucionMs, tickActual + 1), false);
+        Reserva anterior = reservasPorUsuario.get(idUsuario);
+
+        List<Lock> bloqueos;
+        Map<Long, Integer> stock;
+        while (true) {
+            long[] leidas = confirmacionesDe(reservables.keySet());
+            stock = leerStock(reservables.keySet());
+            bloqueos = bloquear(reservables.keySet());
+            if (Arrays.equals(leidas, confirmacionesDe(reservables.keySet()))) {
+                break;
+            }
+            bloqueos.forEach(Lock::unlock);
+        }
+        try {
+            List<StockInsuficienteException.Faltante> faltantes = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entrada : new TreeMap<>(reservables).entrySet()) {
+                Long idProducto = entrada.getKey();
+                int libre = stock.getOrDefault(idProducto, 0) - reservadoPorOtros(anterior, idProducto, true);
+                if (libre < entrada.getValue()) {
+                    faltantes.add(new StockInsuficienteException.Faltante(idProducto, nombres.get(idProducto),
+                            entrada.getValue(), Math.max(0, libre)));
+                }
+            }
+            if (!faltantes.isEmpty()) {
+                meterRegistry.counter(METRICA, "resultado", "rechazada").increment();
+                throw new StockInsuficienteException(faltantes);
+            }
+
+            reserva.cantidades.forEach((idProducto, cantidad) -> reservadoPorProducto.merge(idProducto, cantidad, Integer::sum));
+            Reserva reemplazada = reservasPorUsuario.put(idUsuario, reserva);
+            if (reemplazada != null) {
+                liberar(reemplazada);
+            }
+        } finally {
+            bloqueos.forEach(Lock::unlock);
+        }
+
+        ranuras.get((int) Math.floorMod(reserva.tick, (long) RANURAS)).add(reserva);
+        meterRegistry.counter(METRICA, "resultado", "creada").increment();
+        log.debug("Reserva de {} productos para el usuario {} hasta {}", reservables.size(), idUsuario, reserva.expiraEn);
+        return new ReservaStockDto(reserva.cantidades,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(expiraEn), ZoneId.systemDefault()));
+    }
+
+    /**
+     * Libera la reserva activa del usuario, si tiene una
+     */
+    public void liberar(Long idUsuario) {
+        Reserva reserva = reservasPorUsuario.get(idUsuario);
+        if (reserva != null && liberar(reserva)) {
+            meterRegistry.counter(METRICA, "resultado", "liberada").increment();
+        }
+    }
+
+    /**
+     * Unidades de cada producto reservadas por usuarios distintos del indicado,
+     * que no pueden venderse a este usuario
+     *
+     * @param idUsuario ID del usuario que compra
+     * @param idsProductos Productos consultados
+     * @return Unidades reservadas por otros por ID de producto; los productos sin reservas no aparecen
+     */
+    public Map<Long, Integer> reservadoPorOtros(Long idUsuario, Collection<Long> idsProductos) {
+        Reserva propia = reservasPorUsuario.get(idUsuario);
+        Map<Long, Integer> reservado = new HashMap<>();
+        for (Long idProducto : idsProductos) {
+            int cantidad = reservadoPorOtros(propia, idProducto, false);
+            if (cantidad > 0) {
+                reservado.put(idProducto, cantidad);
+            }
+        }
+        return reservado;
+    }
+
+    /**
+     * Aparta las unidades de un pedido mientras se confirma y devuelve las unidades
+     * reservadas por otros usuarios, que el pedido no puede descontar. Debe llamarse
+     * dentro de la transacción del pedido.
+     *
+     * El apartado reemplaza a la reserva del usuario y cubre tanto sus unidades como
+     * las del pedido: sigue contando para los demás usuarios hasta que la transacción
+     * termina. Tras el commit el descuento definitivo lo reemplaza; tras un rollback
+     * se restaura la reserva anterior si aún no venció. Las franjas solo se bloquean
+     * mientras se modifica el estado en memoria. Los productos en venta relámpago no
+     * se apartan
+     *
+     * @param idUsuario ID del usuario que compra
+     * @param cantidades Unidades del pedido por ID de producto
+     * @return Unidades reservadas por otros por ID de producto; los productos sin reservas no aparecen
+     */
+    public Map<Long, Integer> apartarParaPedido(Long idUsuario, Map<Long, Integer> cantidades) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El pedido debe descontarse dentro de una transacción");
+        }
+        Map<Long, Integer> apartables = cantidades.entrySet().stream()
+                .filter(entrada -> !ventasRelampago.gestiona(entrada.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        Reserva anterior = reservasPorUsuario.get(idUsuario);
+        Map<Long, Integer> unidades = new HashMap<>(apartables);
+        if (anterior != null) {
+            anterior.cantidades.forEach((idProducto, cantidad) -> unidades.merge(idProducto, cantidad, Math::max));
+        }
+        Reserva apartado = new Reserva(idUsuario, Map.copyOf(unidades), Long.MAX_VALUE, Long.MAX_VALUE, true);
+
+        Map<Long, Integer> reservado = new HashMap<>();
+        Reserva restaurable;
+        List<Lock> bloqueos = bloquear(unidades.keySet());
+        try {
+            for (Long idProducto : cantidades.keySet()) {
+                int cantidad = reservadoPorOtros(anterior, idProducto, false);
+                if (cantidad > 0) {
+                    reservado.put(idProducto, cantidad);
+                }
+            }
+            apartado.cantidades.forEach((idProducto, cantidad) -> {
+                reservadoPorProducto.merge(idProducto, cantidad, Integer::sum);
+                apartadoPorProducto.merge(idProducto, cantidad, Integer::sum);
+            });
+            Reserva reemplazada = reservasPorUsuario.put(idUsuario, apartado);
+            restaurable = reemplazada != null && liberar(reemplazada) ? reemplazada : null;
+        } finally {
+            bloqueos.forEach(Lock::unlock);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                cerrarApartado(apartado, apartables.keySet(), estado == STATUS_COMMITTED ? null : restaurable);
+            }
+        });
+        return reservado;
+    }
+
+    /**
+     * Avanza la rueda de tiempo hasta el tick actual y libera las reservas vencidas
+     * de cada ranura recorrida. Las reservas que vencen en una vuelta posterior de la
+     * rueda se dejan en su ranura, y las ya liberadas se descartan
+     */
+    @Scheduled(fixedRateString = "${carrito.reserva.resolucion-ms:1000}")
+    public void avanzar() {
+        long hasta = System.currentTimeMillis() / resolucionMs;
+        int vencidas = 0;
+        while (tickActual < hasta) {
+            long tick = tickActual + 1;
+            Iterator<Reserva> reservas = ranuras.get((int) Math.floorMod(tick, (long) RANURAS)).iterator();
+            while (reservas.hasNext()) {
+                Reserva reserva = reservas.next();
+                if (!reserva.activa.get()) {
+                    reservas.remove();
+                } else if (reserva.tick <= tick) {
+                    reservas.remove();
+                    if (liberar(reserva)) {
+                        vencidas++;
+                    }
+                }
+            }
+            tickActual = tick;
+        }
+        if (vencidas > 0) {
+            meterRegistry.counter(METRICA, "resultado", "vencida").increment(vencidas);
+            log.debug("{} reservas de stock vencidas", vencidas);
+        }
+    }
+
+    // Libera el apartado de un pedido terminado. Si se confirmó, cuenta la confirmación
+    // en las franjas de los productos descontados; si no, restaura la reserva anterior
+    private void cerrarApartado(Reserva apartado, Collection<Long> descontados, Reserva restaurable) {
+        List<Lock> bloqueos = bloquear(apartado.cantidades.keySet());
+        try {
+            if (restaurable == null) {
+                descontados.forEach(idProducto -> confirmaciones.incrementAndGet(franja(idProducto)));
+                if (liberar(apartado)) {
+                    meterRegistry.counter(METRICA, "resultado", "confirmada").increment();
+                }
+            } else if (liberar(apartado) && restaurable.expiraEn > System.currentTimeMillis()) {
+                restaurar(restaurable);
+            }
+        } finally {
+            bloqueos.forEach(Lock::unlock);
+        }
+    }
+
+    // Vuelve a activar una reserva reemplazada por un apartado, salvo que el usuario ya tenga otra
+    private void restaurar(Reserva reemplazada) {
+        Reserva reserva = new Reserva(reemplazada.idUsuario, reemplazada.cantidades, reemplazada.expiraEn,
+                Math.max(reemplazada.tick, tickActual + 1), false);
+        if (reservasPorUsuario.putIfAbsent(reserva.idUsuario, reserva) != null) {
+            return;
+        }
+        reserva.cantidades.forEach((idProducto, cantidad) -> reservadoPorProducto.merge(idProducto, cantidad, Integer::sum));
+        ranuras.get((int) Math.floorMod(reserva.tick, (long) RANURAS)).add(reserva);
+    }
+
+    // Descuenta una sola vez las unidades de la reserva; false si ya estaba liberada
+    private boolean liberar(Reserva reserva) {
+        if (!reserva.activa.compareAndSet(true, false)) {
+            return false;
+        }
+        reservasPorUsuario.remove(reserva.idUsuario, reserva);
+        // Liberar solo aumenta las unidades libres: no necesita el bloqueo de franja
+        reserva.cantidades.forEach((idProducto, cantidad) -> {
+            reservadoPorProducto.computeIfPresent(idProducto, (id, actual) -> actual - cantidad > 0 ? actual - cantidad : null);
+            if (reserva.apartado) {
+                apartadoPorProducto.computeIfPresent(idProducto, (id, actual) -> actual - cantidad > 0 ? actual - cantidad : null);
+            }
+        });
+        return true;
+    }
+
+    private Map<Long, Integer> leerStock(Collection<Long> idsProductos) {
+        if (idsProductos.isEmpty()) {
+            return Map.of();
+        }
+        return productoRepository.findResumenesByIdIn(new ArrayList<>(idsProductos)).stream()
+                .collect(Collectors.toMap(ProductoResumenDto::getId, ProductoResumenDto::getCantidadStock));
+    }
+
+    // Los apartados de pedidos solo cuentan al reservar: entre pedidos decide el descuento en la base de datos
+    private int reservadoPorOtros(Reserva propia, Long idProducto, boolean incluirApartados) {
+        int total = reservadoPorProducto.getOrDefault(idProducto, 0);
+        int reservadoPropio = propia != null && propia.activa.get() ? propia.cantidades.getOrDefault(idProducto, 0) : 0;
+        if (!incluirApartados) {
+            int apartadoPropio = propia != null && propia.apartado ? reservadoPropio : 0;
+            total -= apartadoPorProducto.getOrDefault(idProducto, 0) - apartadoPropio;
+        }
+        return Math.max(0, total - reservadoPropio);
+    }
+
+    private long[] confirmacionesDe(Collection<Long> idsProductos) {
+        return idsProductos.stream().mapToLong(idProducto -> confirmaciones.get(franja(idProducto))).toArray();
+    }
+
+    private static int franja(Long idProducto) {
+        return Math.floorMod(idProducto.hashCode(), FRANJAS);
+    }
+
+    // Bloquea las franjas de los productos en orden creciente de franja
+    private List<Lock> bloquear(Collection<Long> idsProductos) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        idsProductos.forEach(id -> indices.add(franja(id)));
+        List<Lock> bloqueos = new ArrayList<>(indices.size());
+        for (int indice : indices) {
+            franjas[indice].lock();
+            bloqueos.add(franjas[indice]);
+        }
+        return bloqueos;
+    }
+
+    private static Lock[] crearFranjas() {
+        Lock[] franjas = new Lock[FRANJAS];
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        return franjas;
+    }
+
+    private static List<Queue<Reserva>> crearRanuras() {
+        List<Queue<Reserva>> ranuras = new ArrayList<>(RANURAS);
+        for (int i = 0; i < RANURAS; i++) {
+            ranuras.add(new ConcurrentLinkedQueue<>());
+        }
+        return ranuras;
+    }
+}
@@ -0,0 +1,427 @@
+package com.example.E_comeerse.service;
+
+import com.example.E_comeerse.dto.VentaRelampagoDto;
+import com.example.E_comeerse.model.Producto;
+import com.example.E_comeerse.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Modo de venta relámpago por producto, activado desde el panel de administrador.
+ *
+ * Al activarlo, el stock del producto se reparte en fracciones en memoria y los
+ * pedidos descuentan de ellas con operaciones atómicas (compare-and-set), sin
+ * tocar la fila del producto: durante una venta con mucha concurrencia sobre un
+ * mismo producto los pedidos no se encolan en el bloqueo de esa fila.
+ * - Cada pedido descuenta de una fracción elegida al azar; si no le alcanza,
+ *   mueve la mitad de la fracción más grande a la suya y, como último recurso,
+ *   junta las unidades de todas las fracciones
+ * - Cada fracción ocupa su propia línea de caché, para que los hilos que
+ *   descuentan de fracciones distintas no se estorben
+ * - Una tarea periódica concilia las unidades vendidas con la columna
+ *   cantidad_stock, así el catálogo sigue mostrando el stock real
+ * - Al desactivarlo cada fracción queda cerrada con un valor centinela: las
+ *   unidades que un pedido intente devolver a una fracción cerrada vuelven a la
+ *   base de datos, y ningún pedido puede volver a tomar de ella
+ *
+ * Las fracciones son locales a cada instancia: con varias instancias el modo solo
+ * es correcto si todo el tráfico de checkout va a la instancia que lo activó.
+ * El modo debe activarse antes de que empiece la venta: un pedido que ya estaba
+ * descontando de la base de datos en el instante de la activación se contaría dos veces.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VentasRelampago {
+
+    // Posiciones del arreglo por fracción: 8 longs = 64 bytes, una línea de caché
+    private static final int SEPARACION = 8;
+
+    // Valor de una fracción drenada al desactivar el modo; no admite ni entregar ni recibir unidades
+    private static final long CERRADA = Long.MIN_VALUE;
+
+    private static final String SQL_BLOQUEAR =
+            "SELECT cantidad_stock FROM productos WHERE id_producto = ? FOR UPDATE";
+    private static final String SQL_AJUSTAR =
+            "UPDATE productos SET cantidad_stock = cantidad_stock - ?, fecha_modificacion = ? WHERE id_producto = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductoRepository productoRepository;
+    private final CacheCatalogoService cacheCatalogo;
+    private final IndicesCatalogo indicesCatalogo;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${carrito.venta-relampago.fracciones:0}")
+    private int fraccionesPorDefecto;
+
+    private final Map<Long, StockFraccionado> activos = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transaccionPropia;
+
+    /**
+     * Resultado de descontar unidades de las fracciones de un producto
+     */
+    public enum ResultadoToma {
+        TOMADO,
+        SIN_STOCK,
+        // El producto no está en venta relámpago (o se desactivó): su stock se descuenta en la base de datos
+        NO_GESTIONADO
+    }
+
+    /**
+     * Stock de un producto repartido en fracciones. Las unidades solo se mueven
+     * entre fracciones o salen de ellas con compare-and-set, nunca quedan negativas;
+     * una fracción solo es negativa cuando está cerrada
+     */
+    static final class StockFraccionado {
+        private final Long idProducto;
+        private final int fracciones;
+        private final AtomicLongArray unidades;
+        // Unidades repartidas al activar
+        private final long asignado;
+        // Unidades vendidas ya descontadas de cantidad_stock; se modifica bajo el monitor del objeto
+        private long conciliado;
+        // Unidades que llegaron a una fracción ya cerrada y deben volver a la base de datos
+        private final AtomicLong sobrantes = new AtomicLong();
+        private volatile boolean activo = true;
+
+        StockFraccionado(Long idProducto, int fracciones, long stock) {
+            this.idProducto = idProducto;
+            this.fracciones = fracciones;
+            this.unidades = new AtomicLongArray(fracciones * SEPARACION);
+            this.asignado = stock;
+            for (int i = 0; i < fracciones; i++) {
+                unidades.set(i * SEPARACION, stock / fracciones + (i < stock % fracciones ? 1 : 0));
+            }
+        }
+
+        /**
+         * Descuenta las unidades si las fracciones suman suficientes
+         *
+         * @return false si no hay unidades suficientes; en ese caso no se descuenta nada
+         */
+        boolean tomar(long cantidad) {
+            int propia = ThreadLocalRandom.current().nextInt(fracciones);
+            if (tomarDe(propia, cantidad) || (rebalancear(propia, cantidad) && tomarDe(propia, cantidad))) {
+                return true;
+            }
+            return juntar(propia, cantidad);
+        }
+
+        void devolver(long cantidad) {
+            depositar(ThreadLocalRandom.current().nextInt(fracciones), cantidad);
+        }
+
+        long disponible() {
+            long total = 0;
+            for (int i = 0; i < fracciones; i++) {
+                total += Math.max(0, unidades.get(i * SEPARACION));
+            }
+            return total;
+        }
+
+        // Cierra las fracciones al desactivar y devuelve las unidades que quedaban
+        long drenar() {
+            long total = 0;
+            for (int i = 0; i < fracciones; i++) {
+                total += Math.max(0, unidades.getAndSet(i * SEPARACION, CERRADA));
+            }
+            return total;
+        }
+
+        // Suma unidades a la fracción; si ya está cerrada las deja en sobrantes y devuelve false
+        private boolean depositar(int fraccion, long cantidad) {
+            int posicion = fraccion * SEPARACION;
+            long actual;
+            do {
+                actual = unidades.get(posicion);
+                if (actual == CERRADA) {
+                    sobrantes.addAndGet(cantidad);
+                    return false;
+                }
+            } while (!unidades.compareAndSet(posicion, actual, actual + cantidad));
+            return true;
+        }
+
+        private boolean tomarDe(int fraccion, long cantidad) {
+            int posicion = fraccion * SEPARACION;
+            long actual;
+            do {
+                actual = unidades.get(posicion);
+                if (actual < cantidad) {
+                    return false;
+                }
+            } while (!unidades.compareAndSet(posicion, actual, actual - cantidad));
+            return true;
+        }
+
+        // Mueve la mitad de la fracción más grande a la fracción indicada; false si no alcanzaría
+        private boolean rebalancear(int destino, long cantidad) {
+            int mayor = destino;
+            long maximo = -1;
+            for (int i = 0; i < fracciones; i++) {
+                long valor = unidades.get(i * SEPARACION);
+                if (i != destino && valor > maximo) {
+                    mayor = i;
+                    maximo = valor;
+                }
+            }
+            if (mayor == destino || unidades.get(destino * SEPARACION) + maximo < cantidad) {
+                return false;
+            }
+            int posicion = mayor * SEPARACION;
+            long actual;
+            long movidas;
+            do {
+                actual = unidades.get(posicion);
+                if (actual <= 0) {
+                    return false;
+                }
+                movidas = Math.max((actual + 1) / 2, Math.min(actual, cantidad));
+            } while (!unidades.compareAndSet(posicion, actual, actual - movidas));
+            return depositar(destino, movidas);
+        }
+
+        // Junta unidades de todas las fracciones; si no alcanzan, devuelve lo juntado
+        private boolean juntar(int propia, long cantidad) {
+            long restante = cantidad;
+            for (int i = 0; i < fracciones && restante > 0; i++) {
+                int posicion = ((propia + i) % fracciones) * SEPARACION;
+                long actual;
+                long tomadas;
+                do {
+                    actual = unidades.get(posicion);
+                    tomadas = Math.min(Math.max(0, actual), restante);
+                } while (tomadas > 0 && !unidades.compareAndSet(posicion, actual, actual - tomadas));
+                restante -= tomadas;
+            }
+            if (restante > 0) {
+                depositar(propia, cantidad - restante);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        // Los ajustes de stock van en una transacción propia: también se aplican desde la
+        // transacción de un pedido o al terminarla, y no deben depender de su resultado
+        transaccionPropia = new TransactionTemplate(transactionManager);
+        transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Activa el modo para el producto repartiendo su stock actual en fracciones.
+     * La fila se bloquea mientras se lee el stock, para esperar a los pedidos que
+     * la estén modificando en ese momento
+     *
+     * @param idProducto ID del producto
+     * @param fracciones Cantidad de fracciones; si es null se usa la configurada
+     * @return Estado del modo para el producto
+     */
+    public VentaRelampagoDto activar(Long idProducto, Integer fracciones) {
+        int cantidad = fracciones != null ? fracciones
+                : fraccionesPorDefecto > 0 ? fraccionesPorDefecto : Runtime.getRuntime().availableProcessors();
+        if (cantidad < 1 || cantidad > 1024) {
+            throw new IllegalArgumentException("La cantidad de fracciones debe estar entre 1 y 1024");
+        }
+        if (activos.containsKey(idProducto)) {
+            throw new IllegalArgumentException("La venta relámpago ya está activa para el producto " + idProducto);
+        }
+
+        StockFraccionado stock = transaccionPropia.execute(estado -> {
+            List<Integer> filas = jdbcTemplate.queryForList(SQL_BLOQUEAR, Integer.class, idProducto);
+            if (filas.isEmpty()) {
+                throw new IllegalArgumentException("Producto no encontrado con ID: " + idProducto);
+            }
+            StockFraccionado nuevo = new StockFraccionado(idProducto, cantidad, Math.max(0, filas.get(0)));
+            if (activos.putIfAbsent(idProducto, nuevo) != null) {
+                throw new IllegalArgumentException("La venta relámpago ya está activa para el producto " + idProducto);
+            }
+            return nuevo;
+        });
+        log.info("Venta relámpago activada para el producto {}: {} unidades en {} fracciones",
+                idProducto, stock.asignado, cantidad);
+        return convertirADto(stock);
+    }
+
+    /**
+     * Desactiva el modo para el producto: cierra las fracciones y concilia las
+     * unidades vendidas, desde entonces el stock vuelve a descontarse en la base de datos.
+     * El producto se quita de los activos después de conciliar, para que ningún pedido
+     * descuente de la base de datos antes de que la conciliación se confirme
+     *
+     * @param idProducto ID del producto
+     * @return Estado final del modo para el producto
+     */
+    public VentaRelampagoDto desactivar(Long idProducto) {
+        StockFraccionado stock = activos.get(idProducto);
+        if (stock == null) {
+            throw new IllegalArgumentException("La venta relámpago no está activa para el producto " + idProducto);
+        }
+        VentaRelampagoDto estado;
+        synchronized (stock) {
+            if (!stock.activo) {
+                throw new IllegalArgumentException("La venta relámpago no está activa para el producto " + idProducto);
+            }
+            stock.activo = false;
+            try {
+                long restante = stock.drenar();
+                ajustar(idProducto, stock.asignado - restante - stock.conciliado);
+                stock.conciliado = stock.asignado - restante;
+                estado = new VentaRelampagoDto(idProducto, stock.fracciones, restante, 0L);
+            } finally {
+                activos.remove(idProducto, stock);
+            }
+        }
+        devolverSobrantes(stock);
+        log.info("Venta relámpago desactivada para el producto {}: {} unidades vendidas",
+                idProducto, stock.conciliado);
+        return estado;
+    }
+
+    /**
+     * Estado del modo para cada producto en venta relámpago
+     */
+    public List<VentaRelampagoDto> listar() {
+        return activos.values().stream()
+                .sorted(Comparator.comparing(stock -> stock.idProducto))
+                .map(this::convertirADto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Indica si el stock del producto se descuenta de las fracciones en memoria
+     */
+    public boolean gestiona(Long idProducto) {
+        return activos.containsKey(idProducto);
+    }
+
+    /**
+     * Indica si hay algún producto en venta relámpago
+     */
+    public boolean hayActivas() {
+        return !activos.isEmpty();
+    }
+
+    /**
+     * Descuenta unidades de las fracciones del producto. Si el modo se está
+     * desactivando, espera a que termine la conciliación y responde
+     * {@link ResultadoToma#NO_GESTIONADO}: el pedido debe descontar de la base de datos
+     *
+     * @return Resultado del descuento
+     */
+    public ResultadoToma tomar(Long idProducto, int cantidad) {
+        StockFraccionado stock = activos.get(idProducto);
+        if (stock == null) {
+            return ResultadoToma.NO_GESTIONADO;
+        }
+        boolean tomado = stock.tomar(cantidad);
+        devolverSobrantes(stock);
+        if (tomado) {
+            return ResultadoToma.TOMADO;
+        }
+        synchronized (stock) {
+            return stock.activo ? ResultadoToma.SIN_STOCK : ResultadoToma.NO_GESTIONADO;
+        }
+    }
+
+    /**
+     * Devuelve unidades tomadas por un pedido que no se confirmó. Si el modo se
+     * desactivó entretanto, las unidades vuelven directamente a la base de datos
+     */
+    public void devolver(Long idProducto, int cantidad) {
+        StockFraccionado stock = activos.get(idProducto);
+        if (stock != null) {
+            synchronized (stock) {
+                if (stock.activo) {
+                    stock.devolver(cantidad);
+                    return;
+                }
+            }
+        }
+        ajustar(idProducto, -cantidad);
+    }
+
+    /**
+     * Unidades disponibles del producto en sus fracciones, 0 si no está en venta relámpago
+     */
+    public int disponible(Long idProducto) {
+        StockFraccionado stock = activos.get(idProducto);
+        return stock != null ? (int) stock.disponible() : 0;
+    }
+
+    /**
+     * Descuenta de cantidad_stock las unidades vendidas desde la conciliación anterior
+     * (o devuelve las de pedidos deshechos) y propaga el stock a la caché y los índices
+     */
+    @Scheduled(fixedDelayString = "${carrito.venta-relampago.conciliacion-ms:1000}")
+    public void conciliar() {
+        for (StockFraccionado stock : activos.values()) {
+            synchronized (stock) {
+                if (!stock.activo) {
+                    continue;
+                }
+                long vendido = stock.asignado - stock.disponible();
+                long diferencia = vendido - stock.conciliado;
+                if (diferencia != 0) {
+                    ajustar(stock.idProducto, diferencia);
+                    stock.conciliado = vendido;
+                }
+            }
+        }
+    }
+
+    // Devuelve a la base de datos las unidades que llegaron a fracciones ya cerradas
+    private void devolverSobrantes(StockFraccionado stock) {
+        long sobrantes = stock.sobrantes.getAndSet(0);
+        if (sobrantes > 0) {
+            ajustar(stock.idProducto, -sobrantes);
+        }
+    }
+
+    // Aplica la diferencia en una transacción corta y actualiza el catálogo tras el commit
+    private void ajustar(Long idProducto, long diferencia) {
+        if (diferencia == 0) {
+            return;
+        }
+        transaccionPropia.executeWithoutResult(estado -> {
+            jdbcTemplate.update(SQL_AJUSTAR, diferencia, Timestamp.valueOf(LocalDateTime.now()), idProducto);
+            productoRepository.findById(idProducto).ifPresent(this::propagar);
+        });
+        log.debug("Venta relámpago del producto {}: {} unidades conciliadas", idProducto, diferencia);
+    }
+
+    private void propagar(Producto producto) {
+        indicesCatalogo.indexar(producto);
+        cacheCatalogo.invalidarProducto(producto.getId(), Collections.singletonList(producto.getIdCategoria()),
+                Boolean.TRUE.equals(producto.getDestacado()));
+    }
+
+    private VentaRelampagoDto convertirADto(StockFraccionado stock) {
+        long disponible = stock.disponible();
+        return new VentaRelampagoDto(stock.idProducto, stock.fracciones, disponible,
+                stock.asignado - disponible - stock.conciliado);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.E_comeerse.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión del catálogo (productos y categorías) para las peticiones GET condicionales.
+ * Cada escritura incrementa el contador; el ETag combina el instante de arranque
+ * con el contador, para que una versión emitida antes de reiniciar no coincida
+ * con una posterior. El contador vive en memoria, por lo que cada instancia
+ * emite sus propios ETags.
+ */
+@Component
+public class VersionCatalogo {
+
+    private final long inicio = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Instant ultimaModificacion = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    /**
+     * Registra un cambio en el catálogo
+     */
+    public void incrementar() {
+        version.incrementAndGet();
+        ultimaModificacion = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    /**
+     * ETag fuerte de la versión actual
+     */
+    public String etag() {
+        return "\"" + Long.toString(inicio, 36) + "-" + version.get() + "\"";
+    }
+
+    public Instant ultimaModificacion() {
+        return ultimaModificacion;
+    }
+}
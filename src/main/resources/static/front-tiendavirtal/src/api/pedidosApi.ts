@@ -10,7 +10,8 @@ import type {
   PedidoDetalle, 
   ActualizarEstadoPedido, 
   FiltrosPedidos,
-  EstadisticasPedidos 
+  EstadisticasPedidos,
+  VentasProducto
 } from '../types/pedido';
 
 /**
@@ -156,3 +157,37 @@ export async function obtenerMisPedidos(): Promise<PedidoDetalle[]> {
 
   return response.json();
 }
+
+/**
+ * Obtener ventas por producto en un período (fechas YYYY-MM-DD, ambas opcionales)
+ */
+export async function obtenerVentasPorProducto(desde?: string, hasta?: string): Promise<VentasProducto[]> {
+  const token = await ensureValidToken();
+  
+  if (!token) {
+    throw new Error('Error de autenticación. Por favor, inicia sesión nuevamente.');
+  }
+
+  const params = new URLSearchParams();
+  if (desde) {
+    params.append('desde', desde);
+  }
+  if (hasta) {
+    params.append('hasta', hasta);
+  }
+
+  const url = `${API_BASE_URL}/pedidos/admin/ventas-por-producto${params.toString() ? '?' + params.toString() : ''}`;
+  const response = await fetch(url, {
+    headers: {
+      'Authorization': `Bearer ${token}`,
+      'Content-Type': 'application/json',
+    },
+    credentials: 'include',
+  });
+
+  if (!response.ok) {
+    throw new Error('Error al obtener ventas por producto');
+  }
+
+  return response.json();
+}
@@ -8,6 +8,7 @@
 import React, { useState } from 'react';
 import { Link } from 'react-router-dom';
 import { usePedidos, useActualizarEstadoPedido, useEstadisticasPedidos } from '../../../hooks/usePedidos';
+import { obtenerDetallePedido } from '../../../api/pedidosApi';
 import type { PedidoDetalle, FiltrosPedidos, EstadoPedido, EstadoPago } from '../../../types/pedido';
 import { 
   ESTADO_PEDIDO_COLORS, 
@@ -47,6 +48,10 @@ export const OrderManagement: React.FC<OrderManagementProps> = ({ className = ""
   const handleVerDetalle = (pedido: PedidoDetalle) => {
     setPedidoSeleccionado(pedido);
     setMostrarModal(true);
+    // El listado no trae las líneas del pedido: se cargan al abrir el detalle
+    obtenerDetallePedido(pedido.id)
+      .then(detalle => setPedidoSeleccionado(actual => actual && actual.id === detalle.id ? detalle : actual))
+      .catch(error => console.error('Error al obtener las líneas del pedido:', error));
   };
 
   const handleActualizarEstado = async (estadoPedido: EstadoPedido, estadoPago: EstadoPago) => {
@@ -413,6 +418,34 @@ export const OrderManagement: React.FC<OrderManagementProps> = ({ className = ""
               </div>
             </div>
 
+            {pedidoSeleccionado.items && pedidoSeleccionado.items.length > 0 && (
+              <div style={{ marginBottom: '1.5rem' }}>
+                <h3 style={{ fontSize: '1.125rem', fontWeight: '600', color: '#374151', marginBottom: '0.75rem' }}>
+                  Productos
+                </h3>
+                <table style={{ width: '100%', fontSize: '0.875rem', borderCollapse: 'collapse' }}>
+                  <thead>
+                    <tr style={{ color: '#6B7280', textAlign: 'left' }}>
+                      <th style={{ padding: '0.25rem 0' }}>Producto</th>
+                      <th style={{ padding: '0.25rem 0', textAlign: 'right' }}>Cantidad</th>
+                      <th style={{ padding: '0.25rem 0', textAlign: 'right' }}>Precio</th>
+                      <th style={{ padding: '0.25rem 0', textAlign: 'right' }}>Subtotal</th>
+                    </tr>
+                  </thead>
+                  <tbody>
+                    {pedidoSeleccionado.items.map(item => (
+                      <tr key={item.idProducto} style={{ borderTop: '1px solid #E5E7EB' }}>
+                        <td style={{ padding: '0.25rem 0' }}>{item.nombreProducto}</td>
+                        <td style={{ padding: '0.25rem 0', textAlign: 'right' }}>{item.cantidad}</td>
+                        <td style={{ padding: '0.25rem 0', textAlign: 'right' }}>{formatearPrecio(item.precioUnitario)}</td>
+                        <td style={{ padding: '0.25rem 0', textAlign: 'right', fontWeight: '500' }}>{formatearPrecio(item.subtotal)}</td>
+                      </tr>
+                    ))}
+                  </tbody>
+                </table>
+              </div>
+            )}
+
             <div style={{ marginBottom: '1.5rem' }}>
               <h3 style={{ fontSize: '1.125rem', fontWeight: '600', color: '#374151', marginBottom: '0.75rem' }}>
                 Actualizar Estados
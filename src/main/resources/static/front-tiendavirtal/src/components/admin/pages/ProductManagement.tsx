@@ -93,7 +93,9 @@ export const ProductManagement: React.FC<ProductManagementProps> = ({ className
   };
 
   // Abrir modal para editar
-  const handleEditarProducto = (producto: Producto) => {
+  const handleEditarProducto = async (resumen: Producto) => {
+    // El listado solo trae un extracto de la descripción; el formulario necesita el detalle completo
+    const producto = resumen.id ? await productosAPI.obtenerPorId(resumen.id) : resumen;
     setEditingProduct(producto);
     // Si el producto no tiene categoría, asignar una por defecto
     setFormData({
@@ -302,7 +304,7 @@ export const ProductManagement: React.FC<ProductManagementProps> = ({ className
                     </td>
                     <td className="px-6 py-4">
                       <div className="text-sm font-medium text-gray-900">{producto.nombre}</div>
-                      <div className="text-sm text-gray-500 truncate max-w-xs">{producto.descripcion}</div>
+                      <div className="text-sm text-gray-500 truncate max-w-xs">{producto.descripcionCorta}</div>
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap">
                       {producto.categoria ? (
@@ -8,7 +8,7 @@
 import React, { useState, useEffect } from 'react';
 import { Link } from 'react-router-dom';
 import type { HeaderProps, UserProfile } from '../../types';
-import { useCart } from '../../hooks/useCart';
+import { useCartCount } from '../../hooks/useCartCount';
 import { useConfiguracionGlobal } from '../../context/ConfiguracionContext';
 
 /**
@@ -34,7 +34,7 @@ const CartIcon: React.FC<{ className?: string }> = ({ className = "w-6 h-6" }) =
  * Componente del botón de carrito con contador
  */
 const CartButton: React.FC = () => {
-  const { itemCount } = useCart();
+  const itemCount = useCartCount();
 
   return (
     <Link 
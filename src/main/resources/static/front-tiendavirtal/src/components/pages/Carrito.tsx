@@ -9,6 +9,7 @@ import React, { useState } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { ShoppingCart, AlertCircle, CheckCircle } from 'lucide-react';
 import { useCart } from '../../hooks/useCart';
+import { cartAPI } from '../../lib/cartApi';
 import { CartItem } from '../cart/CartItem';
 import { CartSummary } from '../cart/CartSummary';
 import { CartEmpty } from '../cart/CartEmpty';
@@ -65,11 +66,27 @@ export const Carrito: React.FC<CarritoProps> = ({ className = "" }) => {
   const [factura, setFactura] = useState<Factura | null>(null);
 
   /**
-   * Abrir modal de facturación
+   * Reservar el stock del carrito y abrir modal de facturación
    */
-  const handleCheckout = () => {
+  const handleCheckout = async () => {
     setCheckoutMessage(null);
-    setShowBillingForm(true);
+    try {
+      await cartAPI.reservarStock();
+      setShowBillingForm(true);
+    } catch (error) {
+      setCheckoutMessage({
+        type: 'error',
+        text: error instanceof Error ? error.message : 'No hay stock suficiente para el carrito',
+      });
+    }
+  };
+
+  /**
+   * Cerrar modal de facturación liberando la reserva de stock
+   */
+  const handleCloseBillingForm = () => {
+    setShowBillingForm(false);
+    cartAPI.liberarReserva().catch(() => undefined);
   };
 
   /**
@@ -254,7 +271,7 @@ export const Carrito: React.FC<CarritoProps> = ({ className = "" }) => {
       {/* Modal de Facturación */}
       <FacturacionFormModal
         isOpen={showBillingForm}
-        onClose={() => setShowBillingForm(false)}
+        onClose={handleCloseBillingForm}
         onSubmit={handleBillingSubmit}
         isProcessing={isUpdating}
       />
@@ -433,7 +433,7 @@ export const Home: React.FC<HomeProps> = ({ className = "" }) => {
                     </div>
                     
                     <p className="text-gray-600 mb-4 line-clamp-2 text-sm leading-relaxed">
-                      {producto.descripcion}
+                      {producto.descripcionCorta}
                     </p>
                     
                     {/* Precio con precio anterior tachado */}
@@ -8,6 +8,7 @@
 import React, { useState } from 'react';
 import { Link } from 'react-router-dom';
 import { useMutation } from '@tanstack/react-query';
+import { TOKEN_CARRITO_INVITADO } from '../../lib/cartApi';
 
 export interface LoginProps {
   className?: string;
@@ -25,7 +26,12 @@ export const Login: React.FC<LoginProps> = ({ className = "" }) => {
       const response = await fetch(`${API_BASE_URL}/auth/login`, {
         method: "POST",
         headers: { "Content-Type": "application/json" },
-        body: JSON.stringify({ nombreUsuario, contrasena }),
+        // El carrito de invitado, si existe, se fusiona con el del usuario al iniciar sesión
+        body: JSON.stringify({
+          nombreUsuario,
+          contrasena,
+          tokenCarritoInvitado: localStorage.getItem(TOKEN_CARRITO_INVITADO) ?? undefined,
+        }),
       });
 
       if (!response.ok) {
@@ -40,6 +46,7 @@ export const Login: React.FC<LoginProps> = ({ className = "" }) => {
       // El backend devuelve accessToken en lugar de token
       localStorage.setItem("token", data.accessToken);
       localStorage.setItem("refreshToken", data.refreshToken);
+      localStorage.removeItem(TOKEN_CARRITO_INVITADO);
       
       // También guardamos la información del usuario
       if (data.user) {
@@ -13,6 +13,7 @@ import { ShoppingCart, Check } from 'lucide-react';
 import { productosAPI, type Producto } from '../../lib/api';
 import { resolveImageUrl } from '../../lib/utils';
 import { useCart } from '../../hooks/useCart';
+import { carritoInvitadoAPI } from '../../lib/cartApi';
 
 /**
  * Props del componente Productos
@@ -74,7 +75,7 @@ export const Productos: React.FC<ProductosProps> = ({ className = "" }) => {
   // Filtrar productos por búsqueda y categoría
   const productosFiltrados = productos?.filter((producto: Producto) => {
     const matchesSearch = producto.nombre.toLowerCase().includes(searchTerm.toLowerCase()) ||
-      producto.descripcion.toLowerCase().includes(searchTerm.toLowerCase());
+      (producto.descripcionCorta ?? '').toLowerCase().includes(searchTerm.toLowerCase());
     
     const matchesCategory = selectedCategory === 'todas' || producto.categoria === selectedCategory;
     
@@ -94,10 +95,15 @@ export const Productos: React.FC<ProductosProps> = ({ className = "" }) => {
     try {
       setIsAddingToCart(producto.id);
       
-      await addToCart(producto.id, 1);
+      if (localStorage.getItem('token')) {
+        await addToCart(producto.id, 1);
 
-      // Actualizar contador del carrito
-      await refreshItemCount();
+        // Actualizar contador del carrito
+        await refreshItemCount();
+      } else {
+        // Sin sesión: carrito de invitado, se fusiona al iniciar sesión
+        await carritoInvitadoAPI.addProduct({ idProducto: producto.id, cantidad: 1 });
+      }
 
       // Marcar producto como agregado
       setAddedProducts(prev => new Set(prev).add(producto.id!));
@@ -113,7 +119,7 @@ export const Productos: React.FC<ProductosProps> = ({ className = "" }) => {
 
     } catch (error) {
       console.error('Error al agregar al carrito:', error);
-      alert('Error al agregar el producto al carrito. Por favor, inicia sesión.');
+      alert(error instanceof Error ? error.message : 'Error al agregar el producto al carrito');
     } finally {
       setIsAddingToCart(null);
     }
@@ -294,7 +300,7 @@ export const Productos: React.FC<ProductosProps> = ({ className = "" }) => {
                     </h3>
                     
                     <p className="text-gray-600 text-sm mb-4 line-clamp-2 flex-grow">
-                      {producto.descripcion}
+                      {producto.descripcionCorta}
                     </p>
                     
                     <div className="space-y-3">
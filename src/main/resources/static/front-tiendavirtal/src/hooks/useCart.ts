@@ -5,9 +5,9 @@
  * @created 2025-10-13
  */
 
-import { useState, useCallback, useEffect } from 'react';
-import { cartAPI } from '../lib/cartApi';
-import type { Cart, DatosFacturacion, Factura } from '../types/cart';
+import { useState, useCallback, useEffect, useRef } from 'react';
+import { cartAPI, aplicarDelta } from '../lib/cartApi';
+import type { Cart, CartDelta, DatosFacturacion, Factura, OperacionCarrito } from '../types/cart';
 
 /**
  * Estado del carrito
@@ -40,13 +40,32 @@ export const useCart = () => {
     isUpdating: false,
   });
 
+  // Copia local del carrito para aplicar los deltas sin esperar un re-render
+  const cartRef = useRef<Cart | null>(null);
+
   /**
    * Actualizar el estado del carrito
    */
   const updateState = useCallback((updates: Partial<UseCartState>) => {
+    if (updates.cart !== undefined) {
+      cartRef.current = updates.cart;
+    }
     setState(prev => ({ ...prev, ...updates }));
   }, []);
 
+  /**
+   * Aplicar un delta a la copia local; si está desactualizada se pide el carrito completo
+   */
+  const applyDelta = useCallback(async (delta: CartDelta): Promise<Cart> => {
+    const updatedCart = aplicarDelta(cartRef.current, delta) ?? await cartAPI.obtenerCarrito();
+    updateState({
+      cart: updatedCart,
+      itemCount: updatedCart.cantidadItems || 0,
+      isUpdating: false,
+    });
+    return updatedCart;
+  }, [updateState]);
+
   /**
    * Obtener el carrito del servidor
    */
@@ -87,13 +106,8 @@ export const useCart = () => {
   const addToCart = useCallback(async (idProducto: number, cantidad: number = 1) => {
     try {
       updateState({ isUpdating: true, error: null });
-      const updatedCart = await cartAPI.agregarProducto({ idProducto, cantidad });
-      updateState({
-        cart: updatedCart,
-        itemCount: updatedCart.cantidadItems || 0,
-        isUpdating: false,
-      });
-      return updatedCart;
+      const delta = await cartAPI.agregarProductoDelta({ idProducto, cantidad });
+      return await applyDelta(delta);
     } catch (error) {
       const errorMsg = error instanceof Error ? error.message : 'Error al agregar producto';
       updateState({
@@ -102,7 +116,7 @@ export const useCart = () => {
       });
       throw error;
     }
-  }, [updateState]);
+  }, [applyDelta, updateState]);
 
   /**
    * Actualizar cantidad de un producto
@@ -110,13 +124,8 @@ export const useCart = () => {
   const updateQuantity = useCallback(async (idProducto: number, cantidad: number) => {
     try {
       updateState({ isUpdating: true, error: null });
-      const updatedCart = await cartAPI.actualizarCantidad(idProducto, { cantidad });
-      updateState({
-        cart: updatedCart,
-        itemCount: updatedCart.cantidadItems || 0,
-        isUpdating: false,
-      });
-      return updatedCart;
+      const delta = await cartAPI.actualizarCantidadDelta(idProducto, { cantidad });
+      return await applyDelta(delta);
     } catch (error) {
       const errorMsg = error instanceof Error ? error.message : 'Error al actualizar cantidad';
       updateState({
@@ -125,7 +134,7 @@ export const useCart = () => {
       });
       throw error;
     }
-  }, [updateState]);
+  }, [applyDelta, updateState]);
 
   /**
    * Eliminar producto del carrito
@@ -133,15 +142,33 @@ export const useCart = () => {
   const removeFromCart = useCallback(async (idProducto: number) => {
     try {
       updateState({ isUpdating: true, error: null });
-      const updatedCart = await cartAPI.eliminarProducto(idProducto);
+      const delta = await cartAPI.eliminarProductoDelta(idProducto);
+      return await applyDelta(delta);
+    } catch (error) {
+      const errorMsg = error instanceof Error ? error.message : 'Error al eliminar producto';
+      updateState({
+        error: errorMsg,
+        isUpdating: false,
+      });
+      throw error;
+    }
+  }, [applyDelta, updateState]);
+
+  /**
+   * Aplicar varias operaciones en una sola petición (repetir pedido, paquetes)
+   */
+  const applyOperations = useCallback(async (operaciones: OperacionCarrito[]) => {
+    try {
+      updateState({ isUpdating: true, error: null });
+      const resultado = await cartAPI.aplicarOperaciones(operaciones);
       updateState({
-        cart: updatedCart,
-        itemCount: updatedCart.cantidadItems || 0,
+        cart: resultado.carrito,
+        itemCount: resultado.carrito.cantidadItems || 0,
         isUpdating: false,
       });
-      return updatedCart;
+      return resultado;
     } catch (error) {
-      const errorMsg = error instanceof Error ? error.message : 'Error al eliminar producto';
+      const errorMsg = error instanceof Error ? error.message : 'Error al actualizar el carrito';
       updateState({
         error: errorMsg,
         isUpdating: false,
@@ -259,6 +286,7 @@ export const useCart = () => {
     addToCart,
     updateQuantity,
     removeFromCart,
+    applyOperations,
     clearCart,
     verifyStock,
     checkout,
@@ -0,0 +1,56 @@
+/**
+ * @fileoverview Hook del contador de items del carrito
+ * @description Mantiene la cantidad de items suscrita a los eventos del servidor
+ * @author E-commerce Team
+ * @created 2025-10-13
+ */
+
+import { useEffect, useState } from 'react';
+import { cartAPI } from '../lib/cartApi';
+
+// Espera máxima entre reintentos de conexión
+const ESPERA_MAXIMA_MS = 30000;
+
+/**
+ * Hook para el indicador del carrito en el encabezado
+ * 
+ * Características:
+ * - Recibe la cantidad al conectar y en cada cambio, sin consultas periódicas
+ * - No carga el carrito completo
+ * - Se reconecta al cerrarse la conexión, con espera creciente si falla
+ * 
+ * @returns {number} Cantidad de items en el carrito
+ */
+export const useCartCount = (): number => {
+  const [count, setCount] = useState(0);
+
+  useEffect(() => {
+    const controller = new AbortController();
+    let reintento: ReturnType<typeof setTimeout> | undefined;
+    let fallos = 0;
+
+    const conectar = async () => {
+      try {
+        await cartAPI.suscribirCantidadItems(setCount, controller.signal);
+        // El servidor cerró la suscripción al vencer: reconectar enseguida
+        fallos = 0;
+      } catch {
+        fallos++;
+      }
+
+      if (!controller.signal.aborted) {
+        const espera = fallos > 0 ? Math.min(ESPERA_MAXIMA_MS, 1000 * 2 ** fallos) : 0;
+        reintento = setTimeout(conectar, espera);
+      }
+    };
+
+    conectar();
+
+    return () => {
+      controller.abort();
+      clearTimeout(reintento);
+    };
+  }, []);
+
+  return count;
+};
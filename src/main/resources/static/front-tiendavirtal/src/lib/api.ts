@@ -15,7 +15,9 @@ const API_BASE_URL = `${import.meta.env.VITE_API_URL || 'http://localhost:8080'}
 export interface Producto {
   id?: number;
   nombre: string;
-  descripcion: string;
+  // Solo en el detalle; los listados traen descripcionCorta
+  descripcion?: string;
+  descripcionCorta?: string;
   precio: number;
   cantidadStock: number;
   idCategoria?: number;
@@ -27,6 +29,98 @@ export interface Producto {
   fechaModificacion?: string;
 }
 
+/**
+ * Página de resultados paginada por cursor
+ */
+export interface PaginaCursor<T> {
+  items: T[];
+  siguienteCursor: string | null;
+  hayMas: boolean;
+  tamanoPagina: number;
+}
+
+/**
+ * Página de resultados de búsqueda ordenados por relevancia
+ */
+export interface PaginaBusqueda<T> {
+  items: T[];
+  pagina: number;
+  tamanoPagina: number;
+  totalResultados: number;
+  totalPaginas: number;
+  consultaCorregida?: string | null;
+}
+
+/**
+ * Productos consultados por ID, en el orden solicitado
+ */
+export interface LoteProductos {
+  items: Producto[];
+  idsNoEncontrados: number[];
+}
+
+/**
+ * Sugerencias de autocompletado del buscador
+ */
+export interface Sugerencias {
+  consulta: string;
+  consultaCorregida?: string | null;
+  sugerencias: { idProducto: number; nombre: string; aproximada: boolean }[];
+}
+
+/**
+ * Resultado de la importación masiva de productos (CSV o NDJSON)
+ */
+export interface ResultadoImportacion {
+  formato: string;
+  filasLeidas: number;
+  filasImportadas: number;
+  filasConError: number;
+  errores: { fila: number; codigoProducto?: string | null; mensaje: string }[];
+  erroresTruncados: boolean;
+  duracionMs: number;
+  filasPorSegundo: number;
+}
+
+/**
+ * Parámetros del listado paginado del catálogo
+ */
+export interface ConsultaCatalogo {
+  tamano?: number;
+  cursor?: string;
+  orden?: 'precio' | 'fechaCreacion' | 'nombre';
+  direccion?: 'asc' | 'desc';
+  idCategoria?: number;
+  categoria?: string;
+  enStock?: boolean;
+}
+
+/**
+ * Parámetros de la navegación por facetas
+ */
+export interface ConsultaFacetas {
+  idCategoria?: number;
+  categoria?: string;
+  precioMin?: number;
+  precioMax?: number;
+  enStock?: boolean;
+  destacado?: boolean;
+  orden?: 'precio' | 'fechaCreacion';
+  direccion?: 'asc' | 'desc';
+  pagina?: number;
+  tamano?: number;
+}
+
+/**
+ * Página del catálogo filtrada por facetas con sus conteos
+ */
+export interface PaginaFacetada<T> extends PaginaBusqueda<T> {
+  categorias: { idCategoria: number; categoria: string; cantidad: number }[];
+  rangosPrecio: { desde: number; hasta: number | null; cantidad: number }[];
+  enStock: number;
+  destacados: number;
+}
+
 /**
  * Obtener token de autenticación (con refresh automático)
  */
@@ -120,10 +214,40 @@ export const filesAPI = {
  */
 export const productosAPI = {
   /**
-   * Obtener todos los productos
+   * Obtener una página del catálogo
    */
-  obtenerTodos: async (): Promise<Producto[]> => {
-    const response = await fetch(`${API_BASE_URL}/productos`, {
+  obtenerPagina: async (consulta: ConsultaCatalogo = {}): Promise<PaginaCursor<Producto>> => {
+    const params = new URLSearchParams();
+    Object.entries(consulta).forEach(([clave, valor]) => {
+      if (valor !== undefined && valor !== null && valor !== '') {
+        params.append(clave, String(valor));
+      }
+    });
+
+    const response = await fetch(`${API_BASE_URL}/productos?${params.toString()}`, {
+      method: 'GET',
+      headers: await getHeaders(false),
+    });
+
+    if (!response.ok) {
+      throw new Error('Error al obtener productos');
+    }
+
+    return response.json();
+  },
+
+  /**
+   * Obtener una página del catálogo filtrada por facetas, con los conteos de cada faceta
+   */
+  obtenerFacetas: async (consulta: ConsultaFacetas = {}): Promise<PaginaFacetada<Producto>> => {
+    const params = new URLSearchParams();
+    Object.entries(consulta).forEach(([clave, valor]) => {
+      if (valor !== undefined && valor !== null && valor !== '') {
+        params.append(clave, String(valor));
+      }
+    });
+
+    const response = await fetch(`${API_BASE_URL}/productos/facetas?${params.toString()}`, {
       method: 'GET',
       headers: await getHeaders(false),
     });
@@ -135,6 +259,22 @@ export const productosAPI = {
     return response.json();
   },
 
+  /**
+   * Obtener todos los productos recorriendo las páginas del catálogo
+   */
+  obtenerTodos: async (): Promise<Producto[]> => {
+    const productos: Producto[] = [];
+    let cursor: string | undefined;
+
+    do {
+      const pagina = await productosAPI.obtenerPagina({ tamano: 100, cursor });
+      productos.push(...pagina.items);
+      cursor = pagina.siguienteCursor ?? undefined;
+    } while (cursor);
+
+    return productos;
+  },
+
   /**
    * Obtener producto por ID
    */
@@ -151,6 +291,22 @@ export const productosAPI = {
     return response.json();
   },
 
+  /**
+   * Obtener varios productos por ID en una sola petición (con su stock actual)
+   */
+  obtenerPorIds: async (ids: number[]): Promise<LoteProductos> => {
+    const response = await fetch(`${API_BASE_URL}/productos/lote?ids=${ids.join(',')}`, {
+      method: 'GET',
+      headers: await getHeaders(false),
+    });
+
+    if (!response.ok) {
+      throw new Error('Error al obtener productos');
+    }
+
+    return response.json();
+  },
+
   /**
    * Crear nuevo producto
    */
@@ -264,6 +420,42 @@ export const productosAPI = {
       throw new Error('Error al buscar productos');
     }
 
+    const resultados: PaginaBusqueda<Producto> = await response.json();
+    return resultados.items;
+  },
+
+  /**
+   * Importar productos desde un archivo CSV o NDJSON (solo administradores)
+   */
+  importarProductos: async (archivo: File): Promise<ResultadoImportacion> => {
+    const formData = new FormData();
+    formData.append('archivo', archivo);
+
+    const token = await ensureValidToken();
+    const response = await fetch(`${API_BASE_URL}/admin/productos/importar`, {
+      method: 'POST',
+      headers: token ? { Authorization: `Bearer ${token}` } : {},
+      body: formData,
+    });
+
+    if (!response.ok) {
+      const error = await response.json().catch(() => null);
+      throw new Error(error?.message || 'Error al importar productos');
+    }
+
+    return response.json();
+  },
+
+  obtenerSugerencias: async (texto: string, limite = 8): Promise<Sugerencias> => {
+    const response = await fetch(`${API_BASE_URL}/productos/sugerencias?q=${encodeURIComponent(texto)}&limite=${limite}`, {
+      method: 'GET',
+      headers: await getHeaders(false),
+    });
+
+    if (!response.ok) {
+      throw new Error('Error al obtener sugerencias');
+    }
+
     return response.json();
   },
 };
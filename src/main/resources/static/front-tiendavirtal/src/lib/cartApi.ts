@@ -8,13 +8,18 @@
 import { ensureValidToken } from './tokenRefresh';
 import type {
   Cart,
+  CartDelta,
+  CarritoInvitado,
   AgregarProductoRequest,
   ActualizarCantidadRequest,
   CheckoutResponse,
+  ReservaStock,
   VerificarStockResponse,
   CantidadItemsResponse,
   CheckoutRequest,
-  Factura
+  Factura,
+  OperacionCarrito,
+  ResultadoOperacionesCarrito
 } from '../types/cart';
 
 const API_BASE_URL = `${import.meta.env.VITE_API_URL || 'http://localhost:8080'}/api`;
@@ -91,6 +96,53 @@ export const cartAPI = {
     }
   },
 
+  /**
+   * Suscribirse a la cantidad de items del carrito (Server-Sent Events).
+   * Llama a onCantidad con la cantidad actual y con cada cambio; la promesa
+   * termina cuando el servidor cierra la conexión o se aborta la señal
+   */
+  suscribirCantidadItems: async (
+    onCantidad: (cantidad: number) => void,
+    signal: AbortSignal
+  ): Promise<void> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/cantidad/eventos`, {
+      method: 'GET',
+      headers,
+      credentials: 'include',
+      signal,
+    });
+
+    if (!response.ok || !response.body) {
+      throw new Error(`Error HTTP ${response.status}`);
+    }
+
+    // Se lee con fetch y no con EventSource porque hace falta enviar el token
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) {
+        return;
+      }
+      buffer += value;
+
+      let fin = buffer.indexOf('\n\n');
+      while (fin >= 0) {
+        const datos = buffer.slice(0, fin)
+          .split('\n')
+          .filter(linea => linea.startsWith('data:'))
+          .map(linea => linea.slice(5))
+          .join('\n');
+        if (datos) {
+          onCantidad((JSON.parse(datos) as CantidadItemsResponse).cantidad);
+        }
+        buffer = buffer.slice(fin + 2);
+        fin = buffer.indexOf('\n\n');
+      }
+    }
+  },
+
   /**
    * Agregar un producto al carrito
    */
@@ -152,6 +204,68 @@ export const cartAPI = {
     return handleResponse<Cart>(response);
   },
 
+  /**
+   * Agregar un producto y recibir solo los cambios del carrito
+   */
+  agregarProductoDelta: async (request: AgregarProductoRequest): Promise<CartDelta> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/agregar?delta=true`, {
+      method: 'POST',
+      headers,
+      credentials: 'include',
+      body: JSON.stringify(request),
+    });
+
+    return handleResponse<CartDelta>(response);
+  },
+
+  /**
+   * Actualizar la cantidad de un producto y recibir solo los cambios del carrito
+   */
+  actualizarCantidadDelta: async (
+    idProducto: number,
+    request: ActualizarCantidadRequest
+  ): Promise<CartDelta> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/producto/${idProducto}?delta=true`, {
+      method: 'PUT',
+      headers,
+      credentials: 'include',
+      body: JSON.stringify(request),
+    });
+
+    return handleResponse<CartDelta>(response);
+  },
+
+  /**
+   * Eliminar un producto y recibir solo los cambios del carrito
+   */
+  eliminarProductoDelta: async (idProducto: number): Promise<CartDelta> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/producto/${idProducto}?delta=true`, {
+      method: 'DELETE',
+      headers,
+      credentials: 'include',
+    });
+
+    return handleResponse<CartDelta>(response);
+  },
+
+  /**
+   * Aplicar varias operaciones al carrito en una sola petición
+   */
+  aplicarOperaciones: async (operaciones: OperacionCarrito[]): Promise<ResultadoOperacionesCarrito> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/operaciones`, {
+      method: 'POST',
+      headers,
+      credentials: 'include',
+      body: JSON.stringify({ operaciones }),
+    });
+
+    return handleResponse<ResultadoOperacionesCarrito>(response);
+  },
+
   /**
    * Verificar stock disponible para el carrito
    */
@@ -167,6 +281,32 @@ export const cartAPI = {
     return data.stockDisponible;
   },
 
+  /**
+   * Reservar el stock del carrito al iniciar el checkout
+   */
+  reservarStock: async (): Promise<ReservaStock> => {
+    const headers = await getAuthHeaders();
+    const response = await fetch(`${API_BASE_URL}/carrito/checkout/reserva`, {
+      method: 'POST',
+      headers,
+      credentials: 'include',
+    });
+
+    return handleResponse<ReservaStock>(response);
+  },
+
+  /**
+   * Liberar la reserva de stock al abandonar el checkout
+   */
+  liberarReserva: async (): Promise<void> => {
+    const headers = await getAuthHeaders();
+    await fetch(`${API_BASE_URL}/carrito/checkout/reserva`, {
+      method: 'DELETE',
+      headers,
+      credentials: 'include',
+    });
+  },
+
   /**
    * Realizar el checkout (convertir carrito a pedido) - DEPRECATED
    * @deprecated Usar checkoutConFactura en su lugar
@@ -199,6 +339,138 @@ export const cartAPI = {
   },
 };
 
+/**
+ * Clave de localStorage con el token del carrito de invitado
+ */
+export const TOKEN_CARRITO_INVITADO = 'carritoInvitado';
+
+/**
+ * Headers del carrito de invitado, con su token si ya existe
+ */
+const getGuestHeaders = (): HeadersInit => {
+  const token = localStorage.getItem(TOKEN_CARRITO_INVITADO);
+  return {
+    'Content-Type': 'application/json',
+    ...(token ? { 'X-Carrito-Invitado': token } : {}),
+  };
+};
+
+/**
+ * Guardar el token devuelto por el backend (es nuevo si el anterior expiró)
+ */
+const handleGuestResponse = async (response: Response): Promise<CarritoInvitado> => {
+  const data = await handleResponse<CarritoInvitado>(response);
+  if (data.token) {
+    localStorage.setItem(TOKEN_CARRITO_INVITADO, data.token);
+  }
+  return data;
+};
+
+/**
+ * Servicios del carrito de invitado (sin sesión). El carrito se guarda en el
+ * servidor solo en memoria y se fusiona con el del usuario al iniciar sesión
+ */
+export const carritoInvitadoAPI = {
+  /**
+   * Obtener el carrito de invitado, vacío si no existe
+   */
+  getCart: async (): Promise<CarritoInvitado> => {
+    const response = await fetch(`${API_BASE_URL}/public/carrito`, {
+      method: 'GET',
+      headers: getGuestHeaders(),
+    });
+
+    return handleGuestResponse(response);
+  },
+
+  /**
+   * Agregar producto al carrito de invitado
+   */
+  addProduct: async (request: AgregarProductoRequest): Promise<CarritoInvitado> => {
+    const response = await fetch(`${API_BASE_URL}/public/carrito/agregar`, {
+      method: 'POST',
+      headers: getGuestHeaders(),
+      body: JSON.stringify(request),
+    });
+
+    return handleGuestResponse(response);
+  },
+
+  /**
+   * Actualizar cantidad de un producto del carrito de invitado
+   */
+  updateQuantity: async (idProducto: number, request: ActualizarCantidadRequest): Promise<CarritoInvitado> => {
+    const response = await fetch(`${API_BASE_URL}/public/carrito/producto/${idProducto}`, {
+      method: 'PUT',
+      headers: getGuestHeaders(),
+      body: JSON.stringify(request),
+    });
+
+    return handleGuestResponse(response);
+  },
+
+  /**
+   * Eliminar producto del carrito de invitado
+   */
+  removeProduct: async (idProducto: number): Promise<CarritoInvitado> => {
+    const response = await fetch(`${API_BASE_URL}/public/carrito/producto/${idProducto}`, {
+      method: 'DELETE',
+      headers: getGuestHeaders(),
+    });
+
+    return handleGuestResponse(response);
+  },
+
+  /**
+   * Vaciar el carrito de invitado
+   */
+  clearCart: async (): Promise<CarritoInvitado> => {
+    const response = await fetch(`${API_BASE_URL}/public/carrito/vaciar`, {
+      method: 'DELETE',
+      headers: getGuestHeaders(),
+    });
+
+    return handleGuestResponse(response);
+  },
+};
+
+/**
+ * Aplicar los cambios recibidos sobre la copia local del carrito.
+ * Devuelve null si la copia local está desactualizada (la versión recibida
+ * no es la siguiente); en ese caso hay que volver a pedir el carrito completo
+ */
+export const aplicarDelta = (cart: Cart | null, delta: CartDelta): Cart | null => {
+  if (!cart || cart.idCarrito !== delta.idCarrito || delta.version !== cart.version + 1) {
+    return null;
+  }
+
+  const eliminados = new Set(delta.idsProductosEliminados);
+  const modificados = new Map(delta.itemsModificados.map(item => [item.idProducto, item]));
+  const items = delta.vaciado
+    ? []
+    : cart.items
+        .filter(item => !eliminados.has(item.idProducto))
+        .map(item => modificados.get(item.idProducto) ?? item);
+
+  if (!delta.vaciado) {
+    const existentes = new Set(items.map(item => item.idProducto));
+    delta.itemsModificados
+      .filter(item => !existentes.has(item.idProducto))
+      .forEach(item => items.push(item));
+  }
+
+  return {
+    ...cart,
+    items,
+    version: delta.version,
+    subtotal: delta.subtotal,
+    descuentoTotal: delta.descuentoTotal,
+    impuestos: delta.impuestos,
+    total: delta.total,
+    cantidadItems: delta.cantidadItems,
+  };
+};
+
 /**
  * Hook personalizado para usar la API del carrito (opcional)
  * Exportar para uso directo en componentes
@@ -207,9 +479,14 @@ export const useCartAPI = () => {
   return {
     obtenerCarrito: cartAPI.obtenerCarrito,
     obtenerCantidadItems: cartAPI.obtenerCantidadItems,
+    suscribirCantidadItems: cartAPI.suscribirCantidadItems,
     agregarProducto: cartAPI.agregarProducto,
     actualizarCantidad: cartAPI.actualizarCantidad,
     eliminarProducto: cartAPI.eliminarProducto,
+    agregarProductoDelta: cartAPI.agregarProductoDelta,
+    actualizarCantidadDelta: cartAPI.actualizarCantidadDelta,
+    eliminarProductoDelta: cartAPI.eliminarProductoDelta,
+    aplicarOperaciones: cartAPI.aplicarOperaciones,
     vaciarCarrito: cartAPI.vaciarCarrito,
     verificarStock: cartAPI.verificarStock,
     checkout: cartAPI.checkout,
@@ -38,6 +38,34 @@ export interface Cart {
   cantidadItems: number;
   fechaCreacion: string;
   fechaModificacion: string;
+  version: number;
+}
+
+/**
+ * Carrito de visitante sin sesión junto con el token que lo identifica.
+ * El token se envía en la cabecera X-Carrito-Invitado y al iniciar sesión
+ */
+export interface CarritoInvitado {
+  token: string | null;
+  carrito: Cart;
+}
+
+/**
+ * Cambios de una modificación del carrito (respuesta con delta=true).
+ * Si la versión recibida no es la versión local más uno, la copia local
+ * está desactualizada y hay que volver a pedir el carrito completo
+ */
+export interface CartDelta {
+  idCarrito: number;
+  version: number;
+  itemsModificados: CartItem[];
+  idsProductosEliminados: number[];
+  vaciado: boolean;
+  subtotal: number;
+  descuentoTotal: number;
+  impuestos: number;
+  total: number;
+  cantidadItems: number;
 }
 
 /**
@@ -55,6 +83,36 @@ export interface ActualizarCantidadRequest {
   cantidad: number;
 }
 
+/**
+ * Operación dentro de una petición de varias operaciones al carrito
+ */
+export interface OperacionCarrito {
+  tipo: 'AGREGAR' | 'ACTUALIZAR' | 'ELIMINAR';
+  idProducto: number;
+  cantidad?: number;
+}
+
+/**
+ * Resultado de una operación; las fallidas no impiden aplicar las demás
+ */
+export interface ResultadoOperacion {
+  indice: number;
+  tipo: OperacionCarrito['tipo'];
+  idProducto: number;
+  exito: boolean;
+  mensaje: string | null;
+}
+
+/**
+ * Response de aplicar varias operaciones al carrito
+ */
+export interface ResultadoOperacionesCarrito {
+  resultados: ResultadoOperacion[];
+  operacionesAplicadas: number;
+  operacionesFallidas: number;
+  carrito: Cart;
+}
+
 /**
  * Response del checkout
  */
@@ -63,6 +121,14 @@ export interface CheckoutResponse {
   mensaje: string;
 }
 
+/**
+ * Reserva temporal de stock creada al iniciar el checkout
+ */
+export interface ReservaStock {
+  cantidades: Record<number, number>;
+  expiraEn: string;
+}
+
 /**
  * Response de verificación de stock
  */
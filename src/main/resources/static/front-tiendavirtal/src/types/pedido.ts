@@ -28,6 +28,26 @@ export interface PedidoDetalle {
   subtotal: number;
   descuentos: number;
   impuestos: number;
+
+  // Líneas compradas (solo en el detalle de un pedido)
+  items?: PedidoItem[];
+}
+
+export interface PedidoItem {
+  idProducto: number;
+  nombreProducto: string;
+  cantidad: number;
+  precioUnitario: number;
+  descuento: number;
+  subtotal: number;
+}
+
+export interface VentasProducto {
+  idProducto: number;
+  nombreProducto: string;
+  unidadesVendidas: number;
+  totalVendido: number;
+  pedidos: number;
 }
 
 export type EstadoPedido = 
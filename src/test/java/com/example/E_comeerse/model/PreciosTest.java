@@ -0,0 +1,90 @@
+package com.example.E_comeerse.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reglas de redondeo y descuento de {@link Precios}. Las mismas reglas se
+ * repiten en SQL en CarritoRepository.recalcularTotales y
+ * CarritoItemRepository.agregarOIncrementar: si cambian aquí, deben cambiar allí
+ */
+class PreciosTest {
+
+    @Test
+    void descuentoPorcentualRedondeaLaMitadDeCentavoHaciaArriba() {
+        // 10% de 1.05 = 0.105 -> 0.11
+        Precios.Linea linea = Precios.linea(105, 1, 1000, 0);
+
+        assertThat(linea.bruto()).isEqualTo(105);
+        assertThat(linea.descuento()).isEqualTo(11);
+        assertThat(linea.neto()).isEqualTo(94);
+    }
+
+    @Test
+    void descuentoPorcentualSeCalculaSobreElBrutoDeLaLinea() {
+        // 12.5% de 3 x 3.35 = 1.25625 -> 1.26
+        Precios.Linea linea = Precios.linea(335, 3, 1250, 0);
+
+        assertThat(linea.bruto()).isEqualTo(1005);
+        assertThat(linea.descuento()).isEqualTo(126);
+        assertThat(linea.cantidad()).isEqualTo(3);
+    }
+
+    @Test
+    void descuentoFijoSoloSeUsaSinPorcentaje() {
+        assertThat(Precios.linea(1000, 2, 0, 300).descuento()).isEqualTo(300);
+        assertThat(Precios.linea(1000, 2, 500, 300).descuento()).isEqualTo(100);
+    }
+
+    @Test
+    void impuestosRedondeanLaMitadDeCentavoHaciaArriba() {
+        // 19% de 0.50 = 0.095 -> 0.10
+        Precios.Totales totales = Precios.totales(150, 100, 4);
+
+        assertThat(totales.impuestos()).isEqualTo(10);
+        assertThat(totales.total()).isEqualTo(60);
+        assertThat(totales.cantidadItems()).isEqualTo(4);
+    }
+
+    @Test
+    void impuestosNegativosRedondeanLejosDeCeroComoRoundEnSql() {
+        // 19% de -0.50 = -0.095 -> -0.10
+        assertThat(Precios.totales(0, 50, 0).impuestos()).isEqualTo(-10);
+    }
+
+    @Test
+    void totalesAcumulanLineasConDescuentoPorcentualYFijo() {
+        Precios.Linea porcentual = Precios.linea(1999, 3, 1500, 0);
+        Precios.Linea fija = Precios.linea(4550, 1, 0, 550);
+
+        Precios.Totales totales = Precios.totales(porcentual.bruto() + fija.bruto(),
+                porcentual.descuento() + fija.descuento(), porcentual.cantidad() + fija.cantidad());
+
+        // 15% de 59.97 = 8.9955 -> 9.00; base 105.47 - 14.50 = 90.97; 19% = 17.2843 -> 17.28
+        assertThat(totales.subtotal()).isEqualTo(10547);
+        assertThat(totales.descuento()).isEqualTo(1450);
+        assertThat(totales.impuestos()).isEqualTo(1728);
+        assertThat(totales.total()).isEqualTo(10825);
+        assertThat(Precios.subtotalDesdeTotal(totales.total(), totales.impuestos(), totales.descuento()))
+                .isEqualTo(totales.subtotal());
+    }
+
+    @Test
+    void conversionesDecimalesRedondeanAlCentavo() {
+        assertThat(Precios.aCentavos(new BigDecimal("10.005"))).isEqualTo(1001);
+        assertThat(Precios.aCentavos(new BigDecimal("10.004"))).isEqualTo(1000);
+        assertThat(Precios.aCentavos(null)).isZero();
+        assertThat(Precios.aPuntosBasicos(new BigDecimal("12.5"))).isEqualTo(1250);
+        assertThat(Precios.aDecimal(1001)).isEqualByComparingTo("10.01");
+    }
+
+    @Test
+    void importeDesbordadoLanzaExcepcion() {
+        assertThatThrownBy(() -> Precios.linea(Long.MAX_VALUE, 2, 0, 0))
+                .isInstanceOf(ArithmeticException.class);
+    }
+}